@@ -2,116 +2,574 @@ package it.unipmn.compilatore;
 
 import it.unipmn.compilatore.scanner.Scanner;
 import it.unipmn.compilatore.parser.Parser;
+import it.unipmn.compilatore.token.TokenBuffer;
+import it.unipmn.compilatore.trace.Trace;
+import it.unipmn.compilatore.ast.HashConsFactory;
+import it.unipmn.compilatore.ast.NodeDecSt;
 import it.unipmn.compilatore.ast.NodeProgram;
+import it.unipmn.compilatore.visitor.ParallelTypeChecker;
+import it.unipmn.compilatore.visitor.PrecomputeVisitor;
 import it.unipmn.compilatore.visitor.TypeCheckVisitor;
 import it.unipmn.compilatore.visitor.CodeGeneratorVisitor;
+import it.unipmn.compilatore.visitor.ConstantFoldingVisitor;
+import it.unipmn.compilatore.visitor.DeadStoreEliminator;
+import it.unipmn.compilatore.visitor.PeepholeOptimizer;
 import it.unipmn.compilatore.visitor.PrintASTVisitor;
 import it.unipmn.compilatore.exceptions.LexicalException;
 import it.unipmn.compilatore.exceptions.SyntacticException;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Classe principale che coordina l'intera pipeline di compilazione.
  * <p>
  * Unisce tutte le fasi del compilatore: legge il file sorgente,
  * costruisce l'albero sintattico (AST) tramite Scanner e Parser,
- * controlla i tipi con il TypeChecker e infine genera il codice
- * target per la calcolatrice dc scrivendolo in un file di output.
+ * controlla i tipi con il TypeChecker, calcola in anticipo le operazioni
+ * tra costanti, elimina gli assegnamenti inutili e infine genera il codice
+ * target per la calcolatrice dc, ripulito da un ottimizzatore peephole,
+ * scrivendolo in un file di output.
+ * </p>
+ * <p>
+ * Oltre al main da riga di comando, espone i metodi compile() che lavorano
+ * interamente in memoria: ricevono il sorgente come testo, Reader o ByteBuffer
+ * e restituiscono il codice dc come stringa, senza passare dal file system.
+ * Per programmi grandi le varianti con un Writer, un OutputStream o un canale
+ * (ad esempio un FileChannel) scrivono il codice mentre viene generato, così
+ * non viene mai tenuto tutto in memoria.
  * </p>
  */
 public class Compiler {
 
+    // Traccia condivisa da tutte le fasi delle compilazioni in memoria
+    private final Trace trace;
+    // Regole dell'ottimizzatore peephole applicate al codice generato
+    private Set<PeepholeOptimizer.Rule> peepholeRules;
+    // Se true il parser condivide le sottoespressioni identiche con una HashConsFactory
+    private boolean hashConsing;
+
+    /**
+     * Crea un compilatore senza traccia: nessuna fase annota le proprie operazioni.
+     */
+    public Compiler() {
+        this(Trace.disabled());
+    }
+
+    /**
+     * Crea un compilatore che annota le operazioni di tutte le fasi sulla traccia indicata.
+     * @param trace La traccia condivisa da Scanner, Parser e visitatori.
+     */
+    public Compiler(Trace trace) {
+        this.trace = trace;
+        this.peepholeRules = EnumSet.allOf(PeepholeOptimizer.Rule.class);
+    }
+
+    /**
+     * Sceglie le regole dell'ottimizzatore peephole; con un insieme vuoto il codice resta com'è generato.
+     * @param rules Le regole da applicare, di default tutte.
+     */
+    public void setPeepholeRules(Set<PeepholeOptimizer.Rule> rules) {
+        this.peepholeRules = EnumSet.noneOf(PeepholeOptimizer.Rule.class);
+        this.peepholeRules.addAll(rules);
+    }
+
+    /**
+     * Attiva la condivisione delle sottoespressioni identiche durante il parsing (hash-consing).
+     * Il programma occupa meno memoria ma il codice generato non cambia, e il controllo dei tipi
+     * resta sequenziale. Non ha effetto sulla compilazione a flusso, che non conserva le istruzioni.
+     * @param hashConsing true per costruire le espressioni con una HashConsFactory.
+     */
+    public void setHashConsing(boolean hashConsing) {
+        this.hashConsing = hashConsing;
+    }
+
+    /**
+     * Compila un programma contenuto in una stringa o in un altro CharSequence.
+     * @param source Il testo sorgente.
+     * @return Il codice dc generato.
+     * @throws LexicalException Se il sorgente contiene errori lessicali.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo.
+     */
+    public String compile(CharSequence source) throws LexicalException, SyntacticException {
+        return compile(traced(Scanner.fromText(source)));
+    }
+
+    /**
+     * Compila un programma letto da un Reader, che viene chiuso al termine.
+     * @param source Il Reader che fornisce il testo sorgente.
+     * @return Il codice dc generato.
+     * @throws LexicalException Se il sorgente contiene errori lessicali.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo.
+     */
+    public String compile(Reader source) throws LexicalException, SyntacticException {
+        return compile(traced(Scanner.fromReader(source)));
+    }
+
+    /**
+     * Compila un programma ASCII contenuto in un ByteBuffer.
+     * @param source Il buffer con il testo sorgente, letto dalla posizione al limite.
+     * @return Il codice dc generato.
+     * @throws LexicalException Se il sorgente contiene errori lessicali.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo.
+     */
+    public String compile(ByteBuffer source) throws LexicalException, SyntacticException {
+        return compile(traced(Scanner.fromBuffer(source)));
+    }
+
+    /**
+     * Esegue l'intera pipeline (parsing, controllo tipi, generazione) sullo scanner indicato.
+     * I token vengono prima raccolti in forma compatta con tokenize(), così il parser
+     * lavora su vettori primitivi invece che su un oggetto Token per occorrenza.
+     * Lo scanner viene chiuso al termine, anche in caso di errore.
+     * @param scanner Lo scanner già collegato alla sorgente.
+     * @return Il codice dc generato.
+     * @throws LexicalException Se il sorgente contiene errori lessicali.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo.
+     */
+    public String compile(Scanner scanner) throws LexicalException, SyntacticException {
+        try {
+            return compile(scanner.tokenize());
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /**
+     * Esegue parsing, controllo tipi, ottimizzazioni e generazione su token già riconosciuti,
+     * ad esempio quelli prodotti da un ParallelLexer su un sorgente molto grande.
+     * @param tokens I token del programma, terminati dal token EOF.
+     * @return Il codice dc generato.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo.
+     */
+    public String compile(TokenBuffer tokens) throws SyntacticException {
+        return generate(tokens, null).getCode();
+    }
+
+    /**
+     * Compila il programma dello scanner scrivendo il codice dc su out mentre viene generato.
+     * Lo scanner viene chiuso al termine, anche in caso di errore; out viene svuotato ma non chiuso.
+     * @param scanner Lo scanner già collegato alla sorgente.
+     * @param out La destinazione del codice dc, preferibilmente bufferizzata.
+     * @throws LexicalException Se il sorgente contiene errori lessicali.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo.
+     * @throws IOException Se la scrittura del codice fallisce.
+     */
+    public void compile(Scanner scanner, Writer out) throws LexicalException, SyntacticException, IOException {
+        try {
+            compile(scanner.tokenize(), out);
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /**
+     * Compila il programma dello scanner scrivendo il codice dc, in ASCII, su uno stream
+     * (ad esempio System.out, per passarlo direttamente a dc). Lo stream viene svuotato ma non chiuso.
+     * @param scanner Lo scanner già collegato alla sorgente.
+     * @param out Lo stream di destinazione.
+     * @throws LexicalException Se il sorgente contiene errori lessicali.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo.
+     * @throws IOException Se la scrittura del codice fallisce.
+     */
+    public void compile(Scanner scanner, OutputStream out) throws LexicalException, SyntacticException, IOException {
+        compile(scanner, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Compila il programma dello scanner scrivendo il codice dc, in ASCII, su un canale
+     * come un FileChannel. Il canale non viene chiuso.
+     * @param scanner Lo scanner già collegato alla sorgente.
+     * @param out Il canale di destinazione.
+     * @throws LexicalException Se il sorgente contiene errori lessicali.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo.
+     * @throws IOException Se la scrittura del codice fallisce.
+     */
+    public void compile(Scanner scanner, WritableByteChannel out) throws LexicalException, SyntacticException, IOException {
+        // Il Writer del canale codifica e scrive attraverso un proprio buffer
+        compile(scanner, Channels.newWriter(out, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Esegue parsing, controllo tipi, ottimizzazioni e generazione su token già riconosciuti,
+     * scrivendo il codice dc su out a pezzi mentre viene generato.
+     * @param tokens I token del programma, terminati dal token EOF.
+     * @param out La destinazione del codice dc, che viene svuotata ma non chiusa.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo.
+     * @throws IOException Se la scrittura del codice fallisce.
+     */
+    public void compile(TokenBuffer tokens, Writer out) throws SyntacticException, IOException {
+        try {
+            generate(tokens, out);
+        } catch (UncheckedIOException e) {
+            // Il generatore è un visitatore e non può sollevare direttamente IOException
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Esegue l'intera pipeline sui token e restituisce il generatore, che ha già scritto
+     * il codice su out oppure, se out è null, lo tiene in memoria.
+     */
+    private CodeGeneratorVisitor generate(TokenBuffer tokens, Writer out) {
+        NodeProgram program = parser(tokens).parse();
+        new ParallelTypeChecker(trace).check(program);
+        program.accept(new ConstantFoldingVisitor(trace));
+        new DeadStoreEliminator(trace).eliminate(program);
+        CodeGeneratorVisitor codeGen = new CodeGeneratorVisitor(trace);
+        codeGen.setPeephole(peephole(peepholeRules, trace));
+        codeGen.setOutput(out);
+        program.accept(codeGen);
+        return codeGen;
+    }
+
+    /**
+     * Crea il parser sui token, con la condivisione delle sottoespressioni se è attiva.
+     */
+    private Parser parser(TokenBuffer tokens) {
+        Parser parser = new Parser(tokens, trace);
+        if (hashConsing) {
+            parser.setHashConsing(new HashConsFactory());
+        }
+        return parser;
+    }
+
+    /**
+     * Esegue il programma durante la compilazione e produce un programma dc minimo
+     * che stampa soltanto i valori calcolati.
+     * @param source Il testo sorgente.
+     * @return Il codice dc che stampa gli stessi valori del programma compilato.
+     * @throws LexicalException Se il sorgente contiene errori lessicali.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo, o se
+     *         l'esecuzione incontra un errore che dc segnalerebbe (divisione per zero,
+     *         variabile mai assegnata).
+     */
+    public String precompute(CharSequence source) throws LexicalException, SyntacticException {
+        return precomputed(traced(Scanner.fromText(source))).getCode();
+    }
+
+    /**
+     * Esegue il programma durante la compilazione e restituisce direttamente ciò che stamperebbe dc.
+     * @param source Il testo sorgente.
+     * @return L'uscita del programma.
+     * @throws LexicalException Se il sorgente contiene errori lessicali.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo, o se
+     *         l'esecuzione incontra un errore che dc segnalerebbe.
+     */
+    public String evaluate(CharSequence source) throws LexicalException, SyntacticException {
+        return precomputed(traced(Scanner.fromText(source))).getOutput();
+    }
+
+    /**
+     * Esegue parsing, controllo tipi ed esecuzione anticipata sullo scanner indicato, che viene chiuso al termine.
+     * @param scanner Lo scanner già collegato alla sorgente.
+     * @return Il visitatore con i valori stampati dal programma.
+     */
+    private PrecomputeVisitor precomputed(Scanner scanner) {
+        try {
+            NodeProgram program = parser(scanner.tokenize()).parse();
+            new ParallelTypeChecker(trace).check(program);
+            PrecomputeVisitor precompute = new PrecomputeVisitor(trace);
+            program.accept(precompute);
+            return precompute;
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /**
+     * Compila il programma a flusso, un'istruzione alla volta.
+     * <p>
+     * Ogni istruzione viene letta, controllata, tradotta e scritta su out prima di leggere
+     * la successiva, poi viene scartata: non vengono mai costruiti né l'intero NodeProgram
+     * né l'intero codice dc, quindi la memoria resta pressoché costante anche per programmi
+     * molto lunghi (cresce solo con il numero di variabili distinte).
+     * Le ottimizzazioni che devono conoscere le istruzioni successive, come l'eliminazione
+     * degli assegnamenti inutili, non vengono applicate.
+     * Lo scanner viene chiuso al termine, anche in caso di errore; out viene svuotato ma non chiuso.
+     * </p>
+     * @param scanner Lo scanner già collegato alla sorgente.
+     * @param out La destinazione del codice dc, preferibilmente bufferizzata.
+     * @throws LexicalException Se il sorgente contiene errori lessicali.
+     * @throws SyntacticException Se il sorgente contiene errori sintattici o di tipo.
+     * @throws IOException Se la scrittura del codice fallisce.
+     */
+    public void compileStreaming(Scanner scanner, Writer out)
+            throws LexicalException, SyntacticException, IOException {
+        try {
+            // Il parser legge i token uno alla volta dallo scanner, senza raccoglierli
+            Parser parser = new Parser(scanner);
+            TypeCheckVisitor typeChecker = new TypeCheckVisitor(trace);
+            ConstantFoldingVisitor folder = new ConstantFoldingVisitor(trace);
+            CodeGeneratorVisitor codeGen = new CodeGeneratorVisitor(trace);
+            codeGen.setPeephole(peephole(peepholeRules, trace));
+            codeGen.beginProgram();
+
+            NodeDecSt statement;
+            while ((statement = parser.parseNext()) != null) {
+                // Controllo e traduco l'istruzione, poi ne scrivo subito il codice
+                statement.accept(typeChecker);
+                statement.accept(folder);
+                statement.accept(codeGen);
+                codeGen.flushCode(out);
+            }
+            if (trace.enabled(Trace.Level.PHASE)) {
+                trace.append("Constant folding: ").append(folder.getFolded()).append(" operazioni calcolate in anticipo.\n");
+            }
+            codeGen.endProgram(out);
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /**
+     * Crea l'ottimizzatore peephole con le regole indicate.
+     * @return L'ottimizzatore, oppure null se nessuna regola è abilitata.
+     */
+    private static PeepholeOptimizer peephole(Set<PeepholeOptimizer.Rule> rules, Trace trace) {
+        return rules.isEmpty() ? null : new PeepholeOptimizer(rules, trace);
+    }
+
+    /**
+     * Collega uno scanner appena creato alla traccia del compilatore.
+     * @param scanner Lo scanner da collegare.
+     * @return Lo stesso scanner.
+     */
+    private Scanner traced(Scanner scanner) {
+        scanner.setTrace(trace);
+        return scanner;
+    }
+
     public static void main(String[] args) {
         // Recupero il nome del file da riga di comando, oppure uso un default
-        String fileName = (args.length > 0) ? args[0] : "programma.txt";
-        
-        // Dichiaro le variabili fuori dal try per poter accedere ai log anche nel catch
+        String fileName = "programma.txt";
+        // Con l'opzione --mmap il sorgente viene mappato in memoria invece che letto a blocchi
+        boolean memoryMapped = false;
+        // Con l'opzione --stream ogni istruzione viene tradotta e scritta appena letta
+        boolean streaming = false;
+        // Con l'opzione --recover il parser segnala tutti gli errori sintattici in un solo passaggio
+        boolean recover = false;
+        // Con l'opzione --share le sottoespressioni identiche diventano un solo nodo dell'AST
+        boolean share = false;
+        // Con --precompute il programma viene eseguito dal compilatore: out.dc stampa solo i risultati,
+        // con --precompute=text i risultati vengono scritti come testo (default out.txt)
+        String precompute = null;
+        // Con --output=PERCORSO scelgo dove scrivere il codice dc (default out.dc), o il testo di
+        // --precompute=text; con "-" lo scrivo sullo standard output, per passarlo direttamente a dc,
+        // e i messaggi vanno sullo standard error
+        String outputFile = null;
+        // Con --peephole=off|all|regola,regola scelgo le regole dell'ottimizzatore peephole
+        Set<PeepholeOptimizer.Rule> peepholeRules = EnumSet.allOf(PeepholeOptimizer.Rule.class);
+        // Con --trace=LIVELLO scelgo il dettaglio della traccia, con --trace-file=PERCORSO la scrivo su file
+        Trace.Level traceLevel = Trace.Level.PHASE;
+        String traceFile = null;
+        for (String arg : args) {
+            if (arg.equals("--mmap")) {
+                memoryMapped = true;
+            } else if (arg.equals("--stream")) {
+                streaming = true;
+            } else if (arg.equals("--recover")) {
+                recover = true;
+            } else if (arg.equals("--share")) {
+                share = true;
+            } else if (arg.equals("--precompute")) {
+                precompute = "dc";
+            } else if (arg.equals("--precompute=text")) {
+                precompute = "text";
+            } else if (arg.startsWith("--output=")) {
+                outputFile = arg.substring("--output=".length());
+            } else if (arg.startsWith("--peephole=")) {
+                peepholeRules = PeepholeOptimizer.parseRules(arg.substring("--peephole=".length()));
+            } else if (arg.startsWith("--trace=")) {
+                traceLevel = Trace.parseLevel(arg.substring("--trace=".length()));
+            } else if (arg.startsWith("--trace-file=")) {
+                traceFile = arg.substring("--trace-file=".length());
+            } else {
+                fileName = arg;
+            }
+        }
+
+        if (outputFile == null) {
+            outputFile = "text".equals(precompute) ? "out.txt" : "out.dc";
+        }
+        String outputName = outputFile.equals("-") ? "standard output" : outputFile;
+        PrintStream console = outputFile.equals("-") ? System.err : System.out;
+
+        // Dichiaro le variabili fuori dal try per poter accedere alla traccia anche nel catch
+        Trace trace = Trace.disabled();
         Scanner scanner = null;
-        Parser parser = null;
 
         try {
-            System.out.println("Inizio compilazione: " + fileName);
+            // Una traccia su file viene scritta man mano, senza restare in memoria
+            trace = (traceFile != null) ? Trace.toFile(Path.of(traceFile), traceLevel)
+                                        : Trace.inMemory(traceLevel);
+
+            console.println("Inizio compilazione: " + fileName);
 
-            // Inizializzo lo scanner per leggere i token dal file
-            scanner = new Scanner(fileName);
+            // Inizializzo lo scanner per leggere i token dal file e lo collego alla traccia
+            scanner = new Scanner(fileName, memoryMapped);
+            scanner.setTrace(trace);
+
+            if (streaming) {
+                // In modalità a flusso l'AST completo non esiste: ogni istruzione finisce subito nell'output
+                try (Writer writer = openOutput(outputFile)) {
+                    Compiler compiler = new Compiler(trace);
+                    compiler.setPeepholeRules(peepholeRules);
+                    compiler.compileStreaming(scanner, writer);
+                }
+                printTrace(trace, console);
+                console.println("Compilazione a flusso terminata. Output in " + outputName);
+                return;
+            }
             
-            // Inizializzo il parser collegandolo allo scanner
-            parser = new Parser(scanner);
+            // L'AST completo verrà costruito comunque: raccolgo prima i token in forma compatta,
+            // così il parser avanza un cursore invece di chiedere allo scanner un oggetto Token alla volta
+            Parser parser = new Parser(scanner.tokenize(), trace);
+            if (share) {
+                parser.setHashConsing(new HashConsFactory());
+            }
             
             // Eseguo il parsing per ottenere l'albero sintattico (AST)
-            NodeProgram program = parser.parse();
+            NodeProgram program;
+            if (recover) {
+                program = parser.parseWithRecovery();
+                if (!parser.getErrors().isEmpty()) {
+                    // Segnalo tutti gli errori trovati; l'albero parziale non va tradotto
+                    for (SyntacticException error : parser.getErrors()) {
+                        System.err.println("ERRORE DI COMPILAZIONE: " + error.getMessage());
+                    }
+                    System.err.println(parser.getErrors().size() + " errori sintattici.");
+                    printTrace(trace, console);
+                    return;
+                }
+            } else {
+                program = parser.parse();
+            }
 
-            System.out.println("Parsing completato.");
-            
-            // Stampo i log delle prime fasi per debug
-            System.out.println("\n--- LOG SCANNER ---");
-            System.out.println(scanner.getLog());
-            System.out.println("-------------------");
-            
-            System.out.println("\n--- LOG PARSER ---");
-            System.out.println(parser.getLog());
-            System.out.println("------------------");
+            console.println("Parsing completato.");
 
-            // Preparo il visitatore semantico per la verifica dei tipi
-            TypeCheckVisitor typeChecker = new TypeCheckVisitor();
-            // Visito l'albero per validare i tipi e inserire cast impliciti se necessari
-            program.accept(typeChecker);
+            // Valido i tipi e inserisco i cast impliciti, in parallelo se il programma è grande
+            new ParallelTypeChecker(trace).check(program);
 
-            // Stampo il log dettagliato del TypeChecker
-            System.out.println("\n--- LOG TYPE CHECKER ---");
-            System.out.println(typeChecker.getLog());
-            System.out.println("------------------------");
+            console.println("Controllo tipi completato.");
 
-            System.out.println("Controllo tipi completato.");
+            if (precompute != null) {
+                // Eseguo il programma qui: dc non deve più calcolare nulla
+                PrecomputeVisitor evaluator = new PrecomputeVisitor(trace);
+                program.accept(evaluator);
+                try (Writer writer = openOutput(outputFile)) {
+                    writer.write(precompute.equals("text") ? evaluator.getOutput() : evaluator.getCode());
+                }
+                printTrace(trace, console);
+                console.println("Esecuzione anticipata terminata. Output in " + outputName);
+                return;
+            }
 
             // --- FASE DI DEBUG ATTIVO AST ---
-            // Inizializzo il visitatore che stampa l'albero
-            PrintASTVisitor printVisitor = new PrintASTVisitor();
-            // Visito l'albero modificato dal TypeChecker per generare la stringa
-            program.accept(printVisitor);
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                // Inizializzo il visitatore che stampa l'albero
+                PrintASTVisitor printVisitor = new PrintASTVisitor();
+                // Visito l'albero modificato dal TypeChecker per generare la stringa
+                program.accept(printVisitor);
+
+                // Aggiungo alla traccia come il compilatore vede il codice internamente (inclusi i cast)
+                trace.append("\n--- VISUALIZZAZIONE AST (Dopo Type Check) ---\n");
+                trace.append(printVisitor.getOutput());
+                trace.append("\n---------------------------------------------\n");
+            }
 
-            // Visualizzo a video come il compilatore vede il codice internamente (inclusi i cast)
-            System.out.println("\n--- VISUALIZZAZIONE AST (Dopo Type Check) ---");
-            System.out.println(printVisitor.getOutput());
-            System.out.println("---------------------------------------------");
+            // Sostituisco le operazioni tra costanti con il loro risultato, calcolato come farebbe dc
+            program.accept(new ConstantFoldingVisitor(trace));
+            // Elimino gli assegnamenti il cui valore non viene mai letto e le variabili inutilizzate
+            new DeadStoreEliminator(trace).eliminate(program);
 
             // Inizializzo il visitatore per la generazione del codice target
-            CodeGeneratorVisitor codeGen = new CodeGeneratorVisitor();
-            // Visito l'albero per produrre le istruzioni 'dc'
-            program.accept(codeGen);
-
-            // Stampo il log dettagliato della generazione codice
-            System.out.println("\n--- LOG CODE GENERATOR ---");
-            System.out.println(codeGen.getLog());
-            System.out.println("--------------------------");
-
-            // Apro il file di output per salvare il risultato della compilazione
-            try (FileWriter writer = new FileWriter("out.dc")) {
-                // Scrivo il codice generato nel file
-                writer.write(codeGen.getCode());
+            CodeGeneratorVisitor codeGen = new CodeGeneratorVisitor(trace);
+            // Il codice viene ripulito dall'ottimizzatore peephole prima di essere scritto
+            codeGen.setPeephole(peephole(peepholeRules, trace));
+            // Apro l'output e visito l'albero: le istruzioni 'dc' vengono scritte a pezzi mentre le genero,
+            // senza accumulare tutto il codice in memoria
+            try (Writer writer = openOutput(outputFile)) {
+                codeGen.setOutput(writer);
+                program.accept(codeGen);
             }
 
-            System.out.println("Compilazione terminata. Output in out.dc");
+            printTrace(trace, console);
+            console.println("Compilazione terminata. Output in " + outputName);
 
         } catch (LexicalException | SyntacticException e) {
             // Gestisco errori legati al codice sorgente (lessicali o sintattici)
             System.err.println("ERRORE DI COMPILAZIONE: " + e.getMessage());
             
-            // Se ho i log parziali dello scanner o del parser, li stampo per aiutare a capire dove si è rotto
-            if (scanner != null) {
-                System.out.println("\n--- LOG SCANNER (Errore) ---");
-                System.out.println(scanner.getLog());
-            }
-            if (parser != null) {
-                System.out.println("\n--- LOG PARSER (Errore) ---");
-                System.out.println(parser.getLog());
-            }
+            // Stampo la traccia parziale per aiutare a capire dove si è rotto
+            printTrace(trace, console);
             
         } catch (IOException e) {
             // Gestisco errori legati al file system (file non trovato, permessi, ecc.)
             System.err.println("Errore I/O: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            // Errore di scrittura durante la generazione del codice
+            System.err.println("Errore I/O: " + e.getCause().getMessage());
+        } finally {
+            if (scanner != null) {
+                scanner.close();
+            }
+            try {
+                trace.close();
+            } catch (IOException e) {
+                System.err.println("Errore nella chiusura della traccia: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Apre la destinazione del codice dc (o del testo di --precompute=text): un file, scritto attraverso un FileChannel, oppure lo
+     * standard output se il percorso è "-". Chiudere il Writer dello standard output lo svuota
+     * soltanto, senza chiudere System.out.
+     * @param path Il percorso del file, oppure "-".
+     * @return Il Writer su cui scrivere il codice.
+     * @throws IOException Se il file non può essere creato.
+     */
+    private static Writer openOutput(String path) throws IOException {
+        if (path.equals("-")) {
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII)) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+        FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return Channels.newWriter(channel, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Stampa la traccia, se è stata tenuta in memoria.
+     * @param trace La traccia della compilazione.
+     * @param console Lo stream dei messaggi: lo standard error se il codice va sullo standard output.
+     */
+    private static void printTrace(Trace trace, PrintStream console) {
+        String text = trace.toString();
+        if (!text.isEmpty()) {
+            console.println("\n--- TRACCIA ---");
+            console.println(text);
+            console.println("---------------");
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,464 @@
+package it.unipmn.compilatore.ast;
+
+import it.unipmn.compilatore.token.IdentifierTable;
+import it.unipmn.compilatore.visitor.IArenaVisitor;
+import it.unipmn.compilatore.visitor.IVisitor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rappresentazione compatta dell'AST, alternativa alle classi Node*.
+ * <p>
+ * Invece di un oggetto per nodo, ogni nodo è un indice intero in vettori primitivi
+ * paralleli: il tipo di nodo, un valore ausiliario (ordinale di LangOper o di LangType),
+ * i due figli, un valore (id del nome o indice del letterale) e la riga.
+ * Il NodeId non è un nodo a sé: il suo nome viene internato e il suo id salvato
+ * direttamente nel nodo che lo usa, quindi una variabile letta in un'espressione occupa
+ * un solo nodo invece di NodeDeref, NodeId e String.
+ * </p>
+ * <p>
+ * L'arena si riempie con i metodi add* oppure copiando istruzioni già costruite con add(NodeDecSt),
+ * ad esempio una alla volta da Parser.parseNext(). Si visita con un IArenaVisitor, oppure
+ * scorrendo direttamente gli indici da 0 a size().
+ * </p>
+ */
+public final class AstArena {
+
+    /**
+     * Tipi di nodo memorizzati nell'arena.
+     */
+    public enum Kind {
+        DECL,    // dichiarazione: valore = nome, sinistro = inizializzazione (-1 se assente), aux = tipo
+        ASSIGN,  // assegnamento: valore = nome, sinistro = espressione
+        PRINT,   // stampa: valore = nome
+        BINOP,   // operazione binaria: sinistro e destro = operandi, aux = operatore
+        COST,    // costante: valore = indice del letterale, aux = tipo
+        DEREF,   // lettura di una variabile: valore = nome
+        CONVERT  // conversione di tipo: sinistro = espressione, aux = tipo di destinazione
+    }
+
+    // Copie locali dei valori delle enumerazioni per convertire gli ordinali senza allocazioni
+    private static final Kind[] KINDS = Kind.values();
+    private static final LangOper[] OPERS = LangOper.values();
+    private static final LangType[] TYPES = LangType.values();
+
+    private byte[] kinds;
+    private byte[] aux;
+    private int[] lefts;
+    private int[] rights;
+    private int[] values;
+    private int[] righe;
+    private int size;
+
+    // Radici delle istruzioni, nell'ordine del programma
+    private int[] statements;
+    private int statementCount;
+
+    // Nomi delle variabili e testo delle costanti, condivisi tra tutti i nodi che li usano
+    private final IdentifierTable names;
+    private String[] literals;
+    private int literalCount;
+    private final Map<String, Integer> literalIds;
+
+    /**
+     * Costruttore di un'arena vuota.
+     */
+    public AstArena() {
+        this.kinds = new byte[256];
+        this.aux = new byte[256];
+        this.lefts = new int[256];
+        this.rights = new int[256];
+        this.values = new int[256];
+        this.righe = new int[256];
+        this.statements = new int[64];
+        this.names = new IdentifierTable();
+        this.literals = new String[64];
+        this.literalIds = new HashMap<>();
+    }
+
+    /**
+     * Costruisce l'arena equivalente a un programma già costruito a oggetti.
+     * @param program Il programma da copiare.
+     * @return L'arena con le stesse istruzioni.
+     */
+    public static AstArena of(NodeProgram program) {
+        AstArena arena = new AstArena();
+        for (NodeDecSt stmt : program.getStatements()) {
+            arena.add(stmt);
+        }
+        return arena;
+    }
+
+    /**
+     * Copia nell'arena un'istruzione costruita a oggetti, con tutte le sue espressioni.
+     * @param stmt L'istruzione da copiare.
+     * @return L'indice del nodo radice dell'istruzione.
+     */
+    public int add(NodeDecSt stmt) {
+        Copier copier = new Copier();
+        stmt.accept(copier);
+        return copier.last;
+    }
+
+    /**
+     * Aggiunge una dichiarazione in coda al programma.
+     * @param name Il nome della variabile.
+     * @param type Il tipo dichiarato.
+     * @param init L'indice dell'espressione di inizializzazione, oppure -1.
+     * @param riga La riga della dichiarazione.
+     * @return L'indice del nuovo nodo.
+     */
+    public int addDecl(String name, LangType type, int init, int riga) {
+        return addStatement(node(Kind.DECL, type.ordinal(), init, -1, names.intern(name), riga));
+    }
+
+    /**
+     * Aggiunge un assegnamento in coda al programma.
+     * @param name Il nome della variabile assegnata.
+     * @param expr L'indice dell'espressione assegnata.
+     * @param riga La riga dell'assegnamento.
+     * @return L'indice del nuovo nodo.
+     */
+    public int addAssign(String name, int expr, int riga) {
+        return addStatement(node(Kind.ASSIGN, 0, expr, -1, names.intern(name), riga));
+    }
+
+    /**
+     * Aggiunge una stampa in coda al programma.
+     * @param name Il nome della variabile da stampare.
+     * @param riga La riga della stampa.
+     * @return L'indice del nuovo nodo.
+     */
+    public int addPrint(String name, int riga) {
+        return addStatement(node(Kind.PRINT, 0, -1, -1, names.intern(name), riga));
+    }
+
+    /**
+     * Aggiunge un'operazione binaria tra due espressioni già presenti nell'arena.
+     * @param op L'operatore.
+     * @param left L'indice dell'operando sinistro.
+     * @param right L'indice dell'operando destro.
+     * @param riga La riga dell'operatore.
+     * @return L'indice del nuovo nodo.
+     */
+    public int addBinOp(LangOper op, int left, int right, int riga) {
+        return node(Kind.BINOP, op.ordinal(), left, right, -1, riga);
+    }
+
+    /**
+     * Aggiunge una costante numerica. Costanti con lo stesso testo condividono la stringa.
+     * @param type Il tipo della costante.
+     * @param value Il testo della costante.
+     * @param riga La riga della costante.
+     * @return L'indice del nuovo nodo.
+     */
+    public int addCost(LangType type, String value, int riga) {
+        Integer id = literalIds.get(value);
+        if (id == null) {
+            if (literalCount == literals.length) {
+                literals = Arrays.copyOf(literals, literalCount * 2);
+            }
+            id = literalCount;
+            literals[literalCount++] = value;
+            literalIds.put(value, id);
+        }
+        return node(Kind.COST, type.ordinal(), -1, -1, id, riga);
+    }
+
+    /**
+     * Aggiunge la lettura di una variabile.
+     * @param name Il nome della variabile.
+     * @param riga La riga in cui compare.
+     * @return L'indice del nuovo nodo.
+     */
+    public int addDeref(String name, int riga) {
+        return node(Kind.DEREF, 0, -1, -1, names.intern(name), riga);
+    }
+
+    /**
+     * Aggiunge una conversione di tipo attorno a un'espressione già presente nell'arena.
+     * @param expr L'indice dell'espressione da convertire.
+     * @param targetType Il tipo di destinazione.
+     * @return L'indice del nuovo nodo.
+     */
+    public int addConvert(int expr, LangType targetType) {
+        return node(Kind.CONVERT, targetType.ordinal(), expr, -1, -1, righe[expr]);
+    }
+
+    /**
+     * Riduce i vettori alla dimensione effettivamente usata, liberando lo spazio lasciato
+     * dai raddoppi. Conviene chiamarlo quando l'arena è completa.
+     */
+    public void trimToSize() {
+        kinds = Arrays.copyOf(kinds, size);
+        aux = Arrays.copyOf(aux, size);
+        lefts = Arrays.copyOf(lefts, size);
+        rights = Arrays.copyOf(rights, size);
+        values = Arrays.copyOf(values, size);
+        righe = Arrays.copyOf(righe, size);
+        statements = Arrays.copyOf(statements, statementCount);
+    }
+
+    /**
+     * Visita l'intero programma contenuto nell'arena.
+     * @param visitor Il visitor in esecuzione.
+     */
+    public void accept(IArenaVisitor visitor) {
+        visitor.visitProgram(this);
+    }
+
+    /**
+     * Visita il nodo indicato, chiamando il metodo del visitor corrispondente al suo tipo.
+     * @param node L'indice del nodo.
+     * @param visitor Il visitor in esecuzione.
+     */
+    public void accept(int node, IArenaVisitor visitor) {
+        switch (KINDS[kinds[node]]) {
+            case DECL:
+                visitor.visitDecl(this, node);
+                break;
+            case ASSIGN:
+                visitor.visitAssign(this, node);
+                break;
+            case PRINT:
+                visitor.visitPrint(this, node);
+                break;
+            case BINOP:
+                visitor.visitBinOp(this, node);
+                break;
+            case COST:
+                visitor.visitCost(this, node);
+                break;
+            case DEREF:
+                visitor.visitDeref(this, node);
+                break;
+            case CONVERT:
+                visitor.visitConvert(this, node);
+                break;
+        }
+    }
+
+    /**
+     * Restituisce il numero totale di nodi nell'arena.
+     * @return Il numero di nodi.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce il numero di istruzioni del programma.
+     * @return Il numero di istruzioni.
+     */
+    public int statementCount() {
+        return statementCount;
+    }
+
+    /**
+     * Restituisce il nodo radice dell'istruzione in posizione k.
+     * @param k La posizione dell'istruzione nel programma.
+     * @return L'indice del nodo.
+     */
+    public int statement(int k) {
+        return statements[k];
+    }
+
+    /**
+     * Restituisce il tipo del nodo.
+     * @param node L'indice del nodo.
+     * @return Il tipo di nodo.
+     */
+    public Kind kind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    /**
+     * Restituisce la riga del nodo.
+     * @param node L'indice del nodo.
+     * @return Il numero di riga.
+     */
+    public int riga(int node) {
+        return righe[node];
+    }
+
+    /**
+     * Restituisce il primo figlio: l'operando sinistro, l'espressione assegnata o convertita,
+     * oppure l'inizializzazione di una dichiarazione.
+     * @param node L'indice del nodo.
+     * @return L'indice del figlio, oppure -1.
+     */
+    public int left(int node) {
+        return lefts[node];
+    }
+
+    /**
+     * Restituisce l'operando destro di un'operazione binaria.
+     * @param node L'indice del nodo.
+     * @return L'indice del figlio, oppure -1.
+     */
+    public int right(int node) {
+        return rights[node];
+    }
+
+    /**
+     * Restituisce l'operatore di un nodo BINOP.
+     * @param node L'indice del nodo.
+     * @return L'operatore.
+     */
+    public LangOper op(int node) {
+        return OPERS[aux[node]];
+    }
+
+    /**
+     * Restituisce il tipo di un nodo DECL o COST, oppure il tipo di destinazione di un CONVERT.
+     * @param node L'indice del nodo.
+     * @return Il tipo.
+     */
+    public LangType type(int node) {
+        return TYPES[aux[node]];
+    }
+
+    /**
+     * Restituisce l'id internato del nome usato da un nodo DECL, ASSIGN, PRINT o DEREF.
+     * @param node L'indice del nodo.
+     * @return L'id del nome nella tabella dell'arena.
+     */
+    public int nameId(int node) {
+        return values[node];
+    }
+
+    /**
+     * Restituisce il nome usato da un nodo DECL, ASSIGN, PRINT o DEREF.
+     * @param node L'indice del nodo.
+     * @return L'unica istanza String del nome.
+     */
+    public String name(int node) {
+        return names.name(values[node]);
+    }
+
+    /**
+     * Restituisce il testo di un nodo COST.
+     * @param node L'indice del nodo.
+     * @return Il valore testuale della costante.
+     */
+    public String value(int node) {
+        return literals[values[node]];
+    }
+
+    /**
+     * Restituisce la tabella dei nomi a cui si riferiscono gli id di nameId().
+     * @return La tabella degli identificatori dell'arena.
+     */
+    public IdentifierTable getNames() {
+        return names;
+    }
+
+    /**
+     * Registra un nodo come radice della prossima istruzione del programma.
+     */
+    private int addStatement(int node) {
+        if (statementCount == statements.length) {
+            statements = Arrays.copyOf(statements, Math.max(statementCount * 2, 16));
+        }
+        statements[statementCount++] = node;
+        return node;
+    }
+
+    /**
+     * Scrive un nuovo nodo in coda a tutti i vettori.
+     */
+    private int node(Kind kind, int auxValue, int left, int right, int value, int riga) {
+        if (size == kinds.length) {
+            grow();
+        }
+        kinds[size] = (byte) kind.ordinal();
+        aux[size] = (byte) auxValue;
+        lefts[size] = left;
+        rights[size] = right;
+        values[size] = value;
+        righe[size] = riga;
+        return size++;
+    }
+
+    /**
+     * Raddoppia la capacità di tutti i vettori dei nodi.
+     */
+    private void grow() {
+        int capacity = Math.max(kinds.length * 2, 16);
+        kinds = Arrays.copyOf(kinds, capacity);
+        aux = Arrays.copyOf(aux, capacity);
+        lefts = Arrays.copyOf(lefts, capacity);
+        rights = Arrays.copyOf(rights, capacity);
+        values = Arrays.copyOf(values, capacity);
+        righe = Arrays.copyOf(righe, capacity);
+    }
+
+    /**
+     * Visitor che copia nell'arena i nodi a oggetti, dai figli verso la radice.
+     * Dopo ogni visita, last contiene l'indice del nodo appena creato.
+     */
+    private final class Copier implements IVisitor {
+
+        private int last;
+
+        @Override
+        public void visit(NodeProgram node) {
+            for (NodeDecSt stmt : node.getStatements()) {
+                stmt.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(NodeDecl node) {
+            int init = -1;
+            if (node.getInit() != null) {
+                node.getInit().accept(this);
+                init = last;
+            }
+            last = addDecl(node.getId().getName(), node.getType(), init, node.getRiga());
+        }
+
+        @Override
+        public void visit(NodeAssign node) {
+            node.getExpr().accept(this);
+            last = addAssign(node.getId().getName(), last, node.getRiga());
+        }
+
+        @Override
+        public void visit(NodePrint node) {
+            last = addPrint(node.getId().getName(), node.getRiga());
+        }
+
+        @Override
+        public void visit(NodeBinOp node) {
+            node.getLeft().accept(this);
+            int left = last;
+            node.getRight().accept(this);
+            last = addBinOp(node.getOp(), left, last, node.getRiga());
+        }
+
+        @Override
+        public void visit(NodeCost node) {
+            last = addCost(node.getType(), node.getValue(), node.getRiga());
+        }
+
+        @Override
+        public void visit(NodeId node) {
+            // Un identificatore isolato in un'espressione equivale alla lettura della variabile
+            last = addDeref(node.getName(), node.getRiga());
+        }
+
+        @Override
+        public void visit(NodeConvert node) {
+            node.getExpr().accept(this);
+            last = addConvert(last, node.getTargetType());
+        }
+
+        @Override
+        public void visit(NodeDeref node) {
+            last = addDeref(node.getId().getName(), node.getRiga());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package it.unipmn.compilatore.ast;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Fabbrica di nodi espressione con condivisione delle sottoespressioni identiche (hash-consing).
+ * <p>
+ * Ogni richiesta di un nodo viene confrontata con quelli già creati: se esiste un nodo con la
+ * stessa struttura, viene restituito lo stesso oggetto invece di crearne uno nuovo. Poiché i
+ * figli sono a loro volta già condivisi, due operazioni binarie sono uguali quando hanno lo
+ * stesso operatore e gli stessi figli per identità, quindi il confronto costa O(1) per nodo.
+ * L'albero diventa così un grafo aciclico (DAG), e due occorrenze della stessa espressione
+ * sono riconoscibili con un semplice confronto ==.
+ * </p>
+ * <p>
+ * La condivisione vale all'interno di un blocco di istruzioni senza salti, cioè l'intero
+ * programma del nostro linguaggio. Le espressioni non hanno effetti collaterali, ma il valore
+ * di una variabile cambia quando viene assegnata: per questo il chiamante segnala ogni
+ * assegnamento con assigned(), e da quel momento le letture della variabile producono nodi
+ * nuovi, diversi da quelli costruiti prima. Un nodo condiviso conserva la riga della sua
+ * prima occorrenza.
+ * </p>
+ * <p>
+ * La condivisione riduce i nodi in memoria e le visite ripetute (CommonSubexpressions salta un
+ * nodo già numerato), ma non cambia il codice dc: il generatore riusa i valori calcolati grazie
+ * alla numerazione dei valori di CommonSubexpressions, che trova le stesse ripetizioni anche in
+ * un albero senza condivisione. Il parser segna il programma con NodeProgram.setShared(), così
+ * ParallelTypeChecker lo controlla in sequenza invece di dividerlo tra più thread.
+ * </p>
+ */
+public final class HashConsFactory {
+
+    // Nodi già creati, indicizzati per struttura
+    private final Map<Key, NodeExpr> nodes;
+    // Per ogni variabile, quante volte è stata assegnata: entra nella chiave delle sue letture
+    private final Map<String, Integer> versions;
+    // Chiave riusata per le ricerche, così una ricerca riuscita non alloca nulla
+    private final Key probe;
+    private int requests;
+
+    /**
+     * Costruttore di una fabbrica vuota.
+     */
+    public HashConsFactory() {
+        this.nodes = new HashMap<>();
+        this.versions = new HashMap<>();
+        this.probe = new Key();
+    }
+
+    /**
+     * Restituisce la costante con il tipo e il testo indicati.
+     * @param type Il tipo della costante.
+     * @param value Il testo della costante.
+     * @param riga La riga, usata solo se il nodo viene creato adesso.
+     * @return Il nodo NodeCost condiviso.
+     */
+    public NodeExpr cost(LangType type, String value, int riga) {
+        NodeExpr node = find(1, type, value, null);
+        if (node == null) {
+            node = remember(new NodeCost(type, value, riga));
+        }
+        return node;
+    }
+
+    /**
+     * Restituisce la lettura della variabile indicata, valida fino al suo prossimo assegnamento.
+     * @param id L'identificatore della variabile letta.
+     * @return Il nodo NodeDeref condiviso.
+     */
+    public NodeExpr deref(NodeId id) {
+        NodeExpr node = find(2, id.getName(), versions.get(id.getName()), null);
+        if (node == null) {
+            node = remember(new NodeDeref(id.getRiga(), id));
+        }
+        return node;
+    }
+
+    /**
+     * Restituisce l'operazione binaria tra due nodi già ottenuti da questa fabbrica.
+     * @param op L'operatore.
+     * @param left L'operando sinistro.
+     * @param right L'operando destro.
+     * @param riga La riga dell'operatore, usata solo se il nodo viene creato adesso.
+     * @return Il nodo NodeBinOp condiviso.
+     */
+    public NodeExpr binOp(LangOper op, NodeExpr left, NodeExpr right, int riga) {
+        NodeExpr node = find(3, op, left, right);
+        if (node == null) {
+            node = remember(new NodeBinOp(op, left, right, riga));
+        }
+        return node;
+    }
+
+    /**
+     * Segnala che la variabile è stata assegnata (o dichiarata): le letture successive
+     * non devono più essere condivise con quelle precedenti.
+     * @param name Il nome della variabile.
+     */
+    public void assigned(String name) {
+        versions.merge(name, 1, Integer::sum);
+    }
+
+    /**
+     * Dimentica tutti i nodi creati, ad esempio all'inizio di un nuovo blocco.
+     */
+    public void clear() {
+        nodes.clear();
+        versions.clear();
+    }
+
+    /**
+     * Restituisce quanti nodi distinti sono stati creati.
+     * @return Il numero di nodi condivisi.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Restituisce quanti nodi sono stati richiesti in totale, condivisi o no.
+     * @return Il numero di richieste.
+     */
+    public int requests() {
+        return requests;
+    }
+
+    /**
+     * Cerca un nodo già creato con la struttura indicata.
+     */
+    private NodeExpr find(int kind, Object a, Object b, Object c) {
+        requests++;
+        probe.set(kind, a, b, c);
+        return nodes.get(probe);
+    }
+
+    /**
+     * Registra un nodo appena creato con la chiave dell'ultima ricerca.
+     */
+    private NodeExpr remember(NodeExpr node) {
+        nodes.put(probe.copy(), node);
+        return node;
+    }
+
+    /**
+     * Chiave strutturale di un nodo: il tipo di nodo e fino a tre componenti.
+     * Stringhe ed enumerazioni si confrontano per valore; i nodi figli, che non
+     * ridefiniscono equals, per identità.
+     */
+    private static final class Key {
+
+        private int kind;
+        private Object a;
+        private Object b;
+        private Object c;
+        private int hash;
+
+        void set(int kind, Object a, Object b, Object c) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.hash = 31 * (31 * (31 * kind + Objects.hashCode(a)) + Objects.hashCode(b)) + Objects.hashCode(c);
+        }
+
+        Key copy() {
+            Key key = new Key();
+            key.kind = kind;
+            key.a = a;
+            key.b = b;
+            key.c = c;
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return kind == k.kind && Objects.equals(a, k.a) && Objects.equals(b, k.b) && Objects.equals(c, k.c);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -6,10 +6,29 @@ package it.unipmn.compilatore.ast;
  * Disaccoppia l'AST dai Token dello scanner. Ogni operazione matematica
  * (somma, sottrazione, ecc.) viene rappresentata da uno di questi valori.
  * </p>
+ * <p>
+ * Ogni operatore riporta il proprio livello di precedenza: è la tabella da cui il
+ * Parser decide come raggruppare gli operandi. Tutti gli operatori sono associativi a sinistra.
+ * </p>
  */
 public enum LangOper {
-    PLUS,   // +
-    MINUS,  // -
-    TIMES,  // *
-    DIVIDE  // /
-}
\ No newline at end of file
+    PLUS(1),   // +
+    MINUS(1),  // -
+    TIMES(2),  // *
+    DIVIDE(2); // /
+
+    // Livello di precedenza: un valore più alto lega più strettamente gli operandi
+    private final int precedence;
+
+    LangOper(int precedence) {
+        this.precedence = precedence;
+    }
+
+    /**
+     * Restituisce il livello di precedenza dell'operatore.
+     * @return 1 per somma e sottrazione, 2 per moltiplicazione e divisione.
+     */
+    public int getPrecedence() {
+        return precedence;
+    }
+}
@@ -15,6 +15,8 @@ public class NodeBinOp extends NodeExpr {
     private NodeExpr left;
     // L'espressione che si trova a destra dell'operatore
     private NodeExpr right;
+    // Il tipo del risultato, fissato dal controllo dei tipi (null se l'albero non è stato controllato)
+    private LangType type;
 
     /**
      * Costruttore per il nodo di operazione binaria.
@@ -73,6 +75,22 @@ public class NodeBinOp extends NodeExpr {
         this.right = right;
     }
 
+    /**
+     * Restituisce il tipo del risultato dell'operazione.
+     * @return Il tipo calcolato dal controllo dei tipi, oppure null se il nodo non è stato controllato.
+     */
+    public LangType getType() {
+        return type;
+    }
+
+    /**
+     * Imposta il tipo del risultato dell'operazione.
+     * @param type Il tipo calcolato dal controllo dei tipi.
+     */
+    public void setType(LangType type) {
+        this.type = type;
+    }
+
     /**
      * Permette al visitor di ispezionare questo nodo dell'albero.
      * @param visitor Il visitor in esecuzione.
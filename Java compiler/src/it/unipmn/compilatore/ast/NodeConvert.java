@@ -11,7 +11,7 @@ import it.unipmn.compilatore.visitor.IVisitor;
 public class NodeConvert extends NodeExpr {
     
     // L'espressione originale che deve essere convertita di tipo
-    private final NodeExpr expr;
+    private NodeExpr expr;
     // Il nuovo tipo che l'espressione deve assumere al termine della conversione
     private final LangType targetType;
 
@@ -36,6 +36,14 @@ public class NodeConvert extends NodeExpr {
         return expr;
     }
 
+    /**
+     * Sostituisce l'espressione racchiusa, ad esempio con la sua versione semplificata.
+     * @param expr La nuova espressione da convertire.
+     */
+    public void setExpr(NodeExpr expr) {
+        this.expr = expr;
+    }
+
     /**
      * Restituisce il tipo di destinazione della conversione.
      * @return Il tipo LangType (es. FLOAT).
@@ -1,6 +1,7 @@
 package it.unipmn.compilatore.ast;
 
 import it.unipmn.compilatore.exceptions.SyntacticException;
+import it.unipmn.compilatore.symboltable.Symbol;
 import it.unipmn.compilatore.visitor.IVisitor;
 
 /**
@@ -13,6 +14,10 @@ public class NodeId extends NodeExpr {
 
     // Il nome testuale della variabile
     private final String name;
+    // L'id intero assegnato al nome dallo Scanner (-1 se il nodo è stato creato senza)
+    private final int symbolId;
+    // Il simbolo a cui il controllo dei tipi ha legato questo nome (null prima del controllo)
+    private Symbol symbol;
 
     /**
      * Costruttore per il nodo identificatore.
@@ -20,6 +25,16 @@ public class NodeId extends NodeExpr {
      * @param riga Il numero di riga in cui compare la variabile.
      */
     public NodeId(String name, int riga) {
+        this(name, riga, -1);
+    }
+
+    /**
+     * Costruttore per il nodo identificatore con l'id internato del nome.
+     * @param name Il nome della variabile letto dallo scanner.
+     * @param riga Il numero di riga in cui compare la variabile.
+     * @param symbolId L'id intero assegnato al nome dalla IdentifierTable, oppure -1.
+     */
+    public NodeId(String name, int riga, int symbolId) {
         // Passo il numero di riga alla superclasse NodeExpr per salvarlo
         super(riga);
         
@@ -29,6 +44,7 @@ public class NodeId extends NodeExpr {
         }
         
         this.name = name;
+        this.symbolId = symbolId;
     }
 
     /**
@@ -39,6 +55,31 @@ public class NodeId extends NodeExpr {
         return name;
     }
 
+    /**
+     * Restituisce l'id intero del nome, usato dalla Symbol Table per evitare l'hashing delle stringhe.
+     * @return L'id dell'identificatore, oppure -1 se non è disponibile.
+     */
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    /**
+     * Restituisce il simbolo della variabile, risolto una sola volta dal controllo dei tipi:
+     * le fasi successive lo leggono da qui senza consultare nessuna tabella.
+     * @return Il simbolo legato al nome, oppure null se il nodo non è ancora stato risolto.
+     */
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Lega il nome al simbolo della variabile a cui si riferisce.
+     * @param symbol Il simbolo risolto.
+     */
+    public void bind(Symbol symbol) {
+        this.symbol = symbol;
+    }
+
     /**
      * Fornisce una rappresentazione testuale del nodo, utile per la stampa e il debug.
      */
@@ -14,6 +14,8 @@ public class NodeProgram extends NodeAST {
 
     // Lista che memorizza tutte le istruzioni e dichiarazioni in ordine di lettura
     private final List<NodeDecSt> statements;
+    // true se le espressioni sono state costruite da una HashConsFactory e possono essere condivise
+    private boolean shared;
 
     /**
      * Costruttore per il nodo principale del programma.
@@ -46,6 +48,23 @@ public class NodeProgram extends NodeAST {
         return statements;
     }
 
+    /**
+     * Segnala che le espressioni del programma formano un DAG: lo stesso nodo può comparire
+     * in più istruzioni, quindi non va modificato da due visite in parallelo.
+     * @param shared true se il parser ha usato una HashConsFactory.
+     */
+    public void setShared(boolean shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Indica se le espressioni del programma possono essere condivise da più istruzioni.
+     * @return true se il programma è un DAG costruito con la condivisione attiva.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
     /**
      * Fornisce una rappresentazione testuale dell'intero programma.
      * Molto utile per capire se l'albero è stato costruito correttamente durante le fasi di debug.
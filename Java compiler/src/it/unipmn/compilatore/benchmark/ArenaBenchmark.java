@@ -0,0 +1,210 @@
+package it.unipmn.compilatore.benchmark;
+
+import it.unipmn.compilatore.ast.*;
+import it.unipmn.compilatore.parser.Parser;
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.token.TokenBuffer;
+import it.unipmn.compilatore.visitor.IArenaVisitor;
+import it.unipmn.compilatore.visitor.IVisitor;
+
+/**
+ * Benchmark di memoria e velocità di visita dell'AST a oggetti rispetto all'AstArena.
+ * <p>
+ * Tokenizza una volta un programma generato in memoria, poi costruisce il NodeProgram
+ * completo e, separatamente, un'AstArena riempita istruzione per istruzione con
+ * Parser.parseNext() (così l'albero a oggetti non esiste mai per intero) e poi compattata.
+ * Per ciascuno riporta lo heap trattenuto dopo una garbage collection e il tempo migliore di una
+ * visita che conta i nodi e somma le righe; per l'arena misura anche la scansione
+ * lineare dei vettori, che non segue nessun riferimento.
+ * Uso: {@code java ... ArenaBenchmark [dimensioneMB] [ripetizioni]}
+ * </p>
+ */
+public final class ArenaBenchmark {
+
+    private ArenaBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        long mb = args.length > 0 ? Long.parseLong(args[0]) : 16;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        TokenBuffer tokens = Scanner.fromText(SourceGenerator.program(mb * 1024 * 1024)).tokenize();
+
+        long base = usedHeap();
+        NodeProgram program = new Parser(tokens).parse();
+        long treeBytes = usedHeap() - base;
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            NodeCounter counter = new NodeCounter();
+            program.accept(counter);
+            best = Math.min(best, System.nanoTime() - start);
+            checksum = counter.sum;
+        }
+        report("AST a oggetti, IVisitor", treeBytes, best, checksum);
+        program = null;
+
+        base = usedHeap();
+        AstArena arena = new AstArena();
+        Parser parser = new Parser(tokens);
+        NodeDecSt stmt;
+        while ((stmt = parser.parseNext()) != null) {
+            arena.add(stmt);
+        }
+        arena.trimToSize();
+        long arenaBytes = usedHeap() - base;
+        best = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            ArenaCounter counter = new ArenaCounter();
+            arena.accept(counter);
+            best = Math.min(best, System.nanoTime() - start);
+            checksum = counter.sum;
+        }
+        report("AstArena, IArenaVisitor", arenaBytes, best, checksum);
+
+        best = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < arena.size(); i++) {
+                sum += arena.riga(i);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            checksum = sum;
+        }
+        report("AstArena, scansione lineare", arenaBytes, best, checksum);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static void report(String label, long bytes, long nanos, long checksum) {
+        System.out.printf("%-30s heap %8.1f MB  visita %8.1f ms  (somma righe %d)%n",
+                label, bytes / (1024.0 * 1024.0), nanos / 1e6, checksum);
+    }
+
+    /**
+     * Visita l'AST a oggetti sommando la riga di ogni nodo espressione o istruzione.
+     */
+    private static final class NodeCounter implements IVisitor {
+
+        private long sum;
+
+        @Override
+        public void visit(NodeProgram node) {
+            for (NodeDecSt stmt : node.getStatements()) {
+                stmt.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(NodeDecl node) {
+            sum += node.getRiga();
+            if (node.getInit() != null) {
+                node.getInit().accept(this);
+            }
+        }
+
+        @Override
+        public void visit(NodeAssign node) {
+            sum += node.getRiga();
+            node.getExpr().accept(this);
+        }
+
+        @Override
+        public void visit(NodePrint node) {
+            sum += node.getRiga();
+        }
+
+        @Override
+        public void visit(NodeBinOp node) {
+            sum += node.getRiga();
+            node.getLeft().accept(this);
+            node.getRight().accept(this);
+        }
+
+        @Override
+        public void visit(NodeCost node) {
+            sum += node.getRiga();
+        }
+
+        @Override
+        public void visit(NodeId node) {
+            sum += node.getRiga();
+        }
+
+        @Override
+        public void visit(NodeConvert node) {
+            sum += node.getRiga();
+            node.getExpr().accept(this);
+        }
+
+        @Override
+        public void visit(NodeDeref node) {
+            sum += node.getRiga();
+        }
+    }
+
+    /**
+     * La stessa visita di NodeCounter, sull'arena.
+     */
+    private static final class ArenaCounter implements IArenaVisitor {
+
+        private long sum;
+
+        @Override
+        public void visitProgram(AstArena ast) {
+            for (int k = 0; k < ast.statementCount(); k++) {
+                ast.accept(ast.statement(k), this);
+            }
+        }
+
+        @Override
+        public void visitDecl(AstArena ast, int node) {
+            sum += ast.riga(node);
+            if (ast.left(node) >= 0) {
+                ast.accept(ast.left(node), this);
+            }
+        }
+
+        @Override
+        public void visitAssign(AstArena ast, int node) {
+            sum += ast.riga(node);
+            ast.accept(ast.left(node), this);
+        }
+
+        @Override
+        public void visitPrint(AstArena ast, int node) {
+            sum += ast.riga(node);
+        }
+
+        @Override
+        public void visitBinOp(AstArena ast, int node) {
+            sum += ast.riga(node);
+            ast.accept(ast.left(node), this);
+            ast.accept(ast.right(node), this);
+        }
+
+        @Override
+        public void visitCost(AstArena ast, int node) {
+            sum += ast.riga(node);
+        }
+
+        @Override
+        public void visitDeref(AstArena ast, int node) {
+            sum += ast.riga(node);
+        }
+
+        @Override
+        public void visitConvert(AstArena ast, int node) {
+            sum += ast.riga(node);
+            ast.accept(ast.left(node), this);
+        }
+    }
+}
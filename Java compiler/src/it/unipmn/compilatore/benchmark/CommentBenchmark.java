@@ -0,0 +1,61 @@
+package it.unipmn.compilatore.benchmark;
+
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.token.TokenBuffer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Benchmark della scansione di sorgenti ricchi di commenti.
+ * <p>
+ * Genera in memoria un programma con una grande intestazione a blocco e commenti
+ * su ogni riga, poi lo tokenizza dalle tre sorgenti principali (testo, Reader a blocchi,
+ * ByteBuffer) riportando il throughput migliore. Per confronto misura anche lo stesso
+ * programma senza commenti: la differenza è il costo del salto dei commenti.
+ * Uso: {@code java ... CommentBenchmark [dimensioneMB] [ripetizioni] [intestazioneKB]}
+ * </p>
+ */
+public final class CommentBenchmark {
+
+    private CommentBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        long mb = args.length > 0 ? Long.parseLong(args[0]) : 16;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int headerKb = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+
+        String plain = SourceGenerator.program(mb * 1024 * 1024);
+        String commented = SourceGenerator.commentedProgram(mb * 1024 * 1024, headerKb * 1024);
+        ByteBuffer bytes = ByteBuffer.wrap(commented.getBytes(StandardCharsets.US_ASCII));
+
+        report("senza commenti (testo)", plain, rounds, () -> Scanner.fromText(plain));
+        report("con commenti (testo)", commented, rounds, () -> Scanner.fromText(commented));
+        report("con commenti (Reader)", commented, rounds, () -> Scanner.fromReader(new StringReader(commented)));
+        report("con commenti (ByteBuffer)", commented, rounds, () -> Scanner.fromBuffer(bytes.duplicate()));
+    }
+
+    private static void report(String name, String source, int rounds, ScannerFactory factory) {
+        double sizeMb = source.length() / (1024.0 * 1024.0);
+        long best = Long.MAX_VALUE;
+        int tokens = 0;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            TokenBuffer buffer = factory.create().tokenize();
+            best = Math.min(best, System.nanoTime() - start);
+            tokens = buffer.size();
+        }
+        System.out.printf("%-28s %7.1f MB: %8.1f ms, %7.1f MB/s (%d token)%n",
+                name, sizeMb, best / 1e6, sizeMb / (best / 1e9), tokens);
+    }
+
+    /**
+     * Crea un nuovo scanner sulla sorgente da misurare.
+     */
+    private interface ScannerFactory {
+        Scanner create();
+    }
+}
@@ -0,0 +1,102 @@
+package it.unipmn.compilatore.benchmark;
+
+import it.unipmn.compilatore.Compiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Benchmark del tempo di esecuzione in dc del codice generato, al variare della precisione.
+ * <p>
+ * Genera un programma di soli int e uno di soli float, ricchi di moltiplicazioni e divisioni,
+ * e li compila. Ogni programma viene eseguito da dc in due versioni: quella generata, che
+ * usa 0 k per gli int e imposta la precisione dei float solo dove serve, e quella con
+ * un'unica precisione globale "20 k" all'inizio e nessun altro cambio, come faceva il
+ * generatore prima. Con la precisione globale anche gli int portano 20 cifre decimali,
+ * quindi i conti sono più lenti (e le divisioni tra int non troncano).
+ * Serve il comando dc nel PATH; se manca il benchmark lo segnala e termina.
+ * Uso: {@code java ... DcRuntimeBenchmark [istruzioni] [ripetizioni]}
+ * </p>
+ */
+public final class DcRuntimeBenchmark {
+
+    // Numero di variabili distinte usate dai programmi generati
+    private static final int VARIABILI = 10;
+
+    private DcRuntimeBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (boolean floats : new boolean[] {false, true}) {
+            String code = new Compiler().compile(program(statements, floats));
+            // La stessa traduzione con la precisione fissata una volta per tutto il programma
+            String global = "20 k\n" + code.replaceAll("\\d+ k ", "");
+
+            String name = floats ? "float" : "int  ";
+            long typed = run(code, runs);
+            if (typed < 0) {
+                System.out.println("dc non trovato nel PATH: benchmark non eseguito.");
+                return;
+            }
+            long fixed = run(global, runs);
+            System.out.printf("%s %6d istruzioni: precisione per tipo %8.1f ms, 20 k globale %8.1f ms%n",
+                    name, statements, typed / 1e6, fixed / 1e6);
+        }
+    }
+
+    /**
+     * Genera un programma di sole operazioni int o sole operazioni float, con una stampa ogni cento istruzioni.
+     * Ogni assegnamento riduce il valore prima di aggiungere una costante, così i numeri restano piccoli.
+     */
+    private static String program(int statements, boolean floats) {
+        String type = floats ? "float" : "int";
+        StringBuilder sb = new StringBuilder();
+        for (int v = 0; v < VARIABILI; v++) {
+            sb.append(type).append(" v").append(v).append(" = ").append(floats ? v + 1 + ".25" : v + 1).append(";\n");
+        }
+        for (int i = 0; i < statements; i++) {
+            int a = i % VARIABILI;
+            int b = (i * 3 + 1) % VARIABILI;
+            int c = (i * 7 + 2) % VARIABILI;
+            sb.append("v").append(a).append(" = (v").append(b).append(" * ").append(floats ? "1.5" : "3")
+              .append(" + v").append(c).append(") / ").append(floats ? "3.25 + 2.5" : "5 + 7").append(";\n");
+            if (i % 100 == 0) {
+                sb.append("print v").append(a).append(";\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Esegue il codice con dc più volte, scartando l'uscita.
+     * @return Il tempo migliore in nanosecondi, oppure -1 se dc non è disponibile.
+     */
+    private static long run(String code, int runs) throws IOException, InterruptedException {
+        Path file = Files.createTempFile("dc-bench", ".dc");
+        try {
+            Files.writeString(file, code);
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < runs; r++) {
+                ProcessBuilder builder = new ProcessBuilder("dc", file.toString())
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.DISCARD);
+                long start = System.nanoTime();
+                Process process;
+                try {
+                    process = builder.start();
+                } catch (IOException e) {
+                    return -1;
+                }
+                process.waitFor();
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            return best;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
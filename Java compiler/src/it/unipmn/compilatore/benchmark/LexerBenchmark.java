@@ -0,0 +1,39 @@
+package it.unipmn.compilatore.benchmark;
+
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.token.TokenBuffer;
+
+/**
+ * Microbenchmark del solo motore lessicale, senza I/O.
+ * <p>
+ * Il sorgente viene generato in memoria e tokenizzato più volte con tokenize(),
+ * così la misura riflette solo il ciclo interno dello scanner (classificazione dei
+ * caratteri, riconoscimento delle parole chiave, costruzione dei token compatti).
+ * Uso: {@code java ... LexerBenchmark [dimensioneMB] [ripetizioni]}
+ * </p>
+ */
+public final class LexerBenchmark {
+
+    private LexerBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        long mb = args.length > 0 ? Long.parseLong(args[0]) : 16;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String source = SourceGenerator.program(mb * 1024 * 1024);
+        double sizeMb = source.length() / (1024.0 * 1024.0);
+
+        long best = Long.MAX_VALUE;
+        int tokens = 0;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            TokenBuffer buffer = Scanner.fromText(source).tokenize();
+            long elapsed = System.nanoTime() - start;
+            tokens = buffer.size();
+            best = Math.min(best, elapsed);
+            System.out.printf("giro %2d: %8.1f ms%n", r, elapsed / 1e6);
+        }
+        System.out.printf("migliore: %.1f ms, %.1f ns/token, %.1f MB/s (%d token)%n",
+                best / 1e6, (double) best / tokens, sizeMb / (best / 1e9), tokens);
+    }
+}
@@ -0,0 +1,61 @@
+package it.unipmn.compilatore.benchmark;
+
+import it.unipmn.compilatore.scanner.ParallelLexer;
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.token.TokenBuffer;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark di scalabilità della scansione parallela.
+ * <p>
+ * Tokenizza lo stesso sorgente generato in memoria prima in modo sequenziale e poi
+ * con un ParallelLexer su pool da 1 fino a N thread (di default i core disponibili),
+ * riportando per ognuno il tempo migliore e l'accelerazione rispetto al sequenziale.
+ * Uso: {@code java ... ParallelLexerBenchmark [dimensioneMB] [ripetizioni] [maxThread]}
+ * </p>
+ */
+public final class ParallelLexerBenchmark {
+
+    private ParallelLexerBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        long mb = args.length > 0 ? Long.parseLong(args[0]) : 64;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        String source = SourceGenerator.program(mb * 1024 * 1024);
+        double sizeMb = source.length() / (1024.0 * 1024.0);
+        System.out.printf("Sorgente generato: %.1f MB%n", sizeMb);
+
+        long sequential = Long.MAX_VALUE;
+        int expected = 0;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            TokenBuffer tokens = Scanner.fromText(source).tokenize();
+            sequential = Math.min(sequential, System.nanoTime() - start);
+            expected = tokens.size();
+        }
+        System.out.printf("sequenziale : %8.1f ms, %7.1f MB/s%n", sequential / 1e6, sizeMb / (sequential / 1e9));
+
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ParallelLexer lexer = new ParallelLexer(pool);
+                long best = Long.MAX_VALUE;
+                for (int r = 0; r < rounds; r++) {
+                    long start = System.nanoTime();
+                    TokenBuffer tokens = lexer.tokenize(source);
+                    best = Math.min(best, System.nanoTime() - start);
+                    if (tokens.size() != expected) {
+                        throw new IllegalStateException("Numero di token diverso dal sequenziale");
+                    }
+                }
+                System.out.printf("%2d thread   : %8.1f ms, %7.1f MB/s, x%.2f%n",
+                        threads, best / 1e6, sizeMb / (best / 1e9), (double) sequential / best);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
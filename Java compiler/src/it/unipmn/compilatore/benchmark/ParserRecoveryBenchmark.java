@@ -0,0 +1,65 @@
+package it.unipmn.compilatore.benchmark;
+
+import it.unipmn.compilatore.parser.Parser;
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.token.TokenBuffer;
+
+/**
+ * Benchmark del costo della modalità di recupero dagli errori del Parser.
+ * <p>
+ * Tokenizza una sola volta un programma corretto generato in memoria, poi misura
+ * alternando parse() e parseWithRecovery() sugli stessi token: sul percorso senza
+ * errori i tempi devono coincidere. Infine misura il recupero su una copia del
+ * programma in cui un'istruzione ogni cento è stata rovinata.
+ * Uso: {@code java ... ParserRecoveryBenchmark [dimensioneMB] [ripetizioni]}
+ * </p>
+ */
+public final class ParserRecoveryBenchmark {
+
+    private ParserRecoveryBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        long mb = args.length > 0 ? Long.parseLong(args[0]) : 8;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String source = SourceGenerator.program(mb * 1024 * 1024);
+        TokenBuffer tokens = Scanner.fromText(source).tokenize();
+
+        long normal = Long.MAX_VALUE;
+        long recovering = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            new Parser(tokens).parse();
+            normal = Math.min(normal, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            new Parser(tokens).parseWithRecovery();
+            recovering = Math.min(recovering, System.nanoTime() - start);
+        }
+        System.out.printf("senza errori, parse():             %8.1f ms%n", normal / 1e6);
+        System.out.printf("senza errori, parseWithRecovery(): %8.1f ms (%+.1f%%)%n",
+                recovering / 1e6, 100.0 * (recovering - normal) / normal);
+
+        // Rovino un'istruzione ogni cento togliendo il suo ';'
+        StringBuilder broken = new StringBuilder(source.length());
+        int statement = 0;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == ';' && statement++ % 100 == 50) {
+                continue;
+            }
+            broken.append(c);
+        }
+        TokenBuffer brokenTokens = Scanner.fromText(broken).tokenize();
+        long withErrors = Long.MAX_VALUE;
+        int errors = 0;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            Parser parser = new Parser(brokenTokens);
+            parser.parseWithRecovery();
+            withErrors = Math.min(withErrors, System.nanoTime() - start);
+            errors = parser.getErrors().size();
+        }
+        System.out.printf("con %d errori, parseWithRecovery(): %8.1f ms%n", errors, withErrors / 1e6);
+    }
+}
@@ -0,0 +1,88 @@
+package it.unipmn.compilatore.benchmark;
+
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.token.TokenType;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Benchmark di throughput dello Scanner sulle diverse modalità di input.
+ * <p>
+ * Confronta la vecchia lettura un carattere alla volta tramite PushbackReader
+ * (solo il costo dell'input, senza tokenizzazione) con la scansione completa
+ * in modalità bufferizzata e in modalità mappata in memoria.
+ * Uso: {@code java ... ScannerBenchmark [dimensioneMB] [ripetizioni]}
+ * </p>
+ */
+public final class ScannerBenchmark {
+
+    private ScannerBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        long mb = args.length > 0 ? Long.parseLong(args[0]) : 300;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        Path file = Files.createTempFile("scanner-bench", ".txt");
+        try {
+            SourceGenerator.writeProgram(file, mb * 1024 * 1024);
+            double size = Files.size(file) / (1024.0 * 1024.0);
+            System.out.printf("Sorgente generato: %.1f MB%n", size);
+
+            for (int r = 0; r < rounds; r++) {
+                report("PushbackReader (solo input)", size, legacyRead(file));
+                report("Scanner bufferizzato", size, scan(file, false));
+                report("Scanner mappato", size, scan(file, true));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Legge il file un carattere alla volta come faceva lo Scanner originale.
+     * @return Il tempo impiegato in nanosecondi.
+     */
+    private static long legacyRead(Path file) throws IOException {
+        long start = System.nanoTime();
+        long chars = 0;
+        try (PushbackReader reader = new PushbackReader(new FileReader(file.toFile()))) {
+            while (reader.read() != -1) {
+                chars++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (chars == 0) {
+            throw new IllegalStateException("Sorgente vuoto");
+        }
+        return elapsed;
+    }
+
+    /**
+     * Esegue la scansione completa del file fino all'EOF.
+     * @return Il tempo impiegato in nanosecondi.
+     */
+    private static long scan(Path file, boolean mapped) throws IOException {
+        long start = System.nanoTime();
+        Scanner scanner = new Scanner(file.toString(), mapped);
+        long tokens = 0;
+        while (scanner.nextToken().getType() != TokenType.EOF) {
+            tokens++;
+        }
+        scanner.close();
+        long elapsed = System.nanoTime() - start;
+        if (tokens == 0) {
+            throw new IllegalStateException("Nessun token letto");
+        }
+        return elapsed;
+    }
+
+    private static void report(String label, double sizeMb, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-30s %8.1f ms  %8.1f MB/s%n", label, nanos / 1e6, sizeMb / seconds);
+    }
+}
@@ -0,0 +1,115 @@
+package it.unipmn.compilatore.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Classe di supporto per i benchmark che genera programmi sintetici validi.
+ * Produce una sequenza di dichiarazioni, assegnamenti e stampe simile a quella
+ * dei sorgenti generati automaticamente, fino a raggiungere la dimensione richiesta.
+ */
+public final class SourceGenerator {
+
+    // Numero di variabili distinte usate dal programma generato
+    private static final int VARIABILI = 20;
+
+    private SourceGenerator() {
+    }
+
+    /**
+     * Genera il testo di un programma sintetico lungo almeno il numero di caratteri indicato.
+     * @param minChars La dimensione minima del testo in caratteri.
+     * @return Il testo del programma.
+     */
+    public static String program(long minChars) {
+        StringBuilder sb = new StringBuilder();
+        appendDeclarations(sb);
+        int i = 0;
+        while (sb.length() < minChars) {
+            appendStatement(sb, i++);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Genera un programma sintetico ricco di commenti, come i sorgenti prodotti da un generatore:
+     * un'intestazione a blocco di circa headerChars caratteri, un commento a blocco ogni
+     * cinquanta istruzioni e un commento di riga alla fine di ogni istruzione.
+     * @param minChars La dimensione minima del testo in caratteri.
+     * @param headerChars La dimensione approssimativa dell'intestazione iniziale.
+     * @return Il testo del programma.
+     */
+    public static String commentedProgram(long minChars, int headerChars) {
+        StringBuilder sb = new StringBuilder("/*\n");
+        while (sb.length() < headerChars) {
+            sb.append(" * Sorgente generato automaticamente: non modificare a mano; riga ")
+              .append(sb.length()).append("\n");
+        }
+        sb.append(" */\n");
+        appendDeclarations(sb);
+        int i = 0;
+        while (sb.length() < minChars) {
+            if (i % 50 == 0) {
+                sb.append("/* blocco ").append(i / 50).append("\n * istruzioni generate ").append(i)
+                  .append(" - ").append(i + 49).append("\n */\n");
+            }
+            appendStatement(sb, i++);
+            // Sostituisco l'a capo finale con un commento di riga
+            sb.setLength(sb.length() - 1);
+            sb.append(" // istruzione ").append(i).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Scrive su file un programma sintetico lungo almeno il numero di byte indicato.
+     * @param file Il file da creare o sovrascrivere.
+     * @param minBytes La dimensione minima del file in byte.
+     * @throws IOException Se la scrittura fallisce.
+     */
+    public static void writeProgram(Path file, long minBytes) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            StringBuilder sb = new StringBuilder();
+            appendDeclarations(sb);
+            long written = 0;
+            int i = 0;
+            while (written < minBytes) {
+                // Scrivo a pezzi per non tenere in memoria l'intero sorgente
+                appendStatement(sb, i++);
+                if (sb.length() > 64 * 1024) {
+                    writer.append(sb);
+                    written += sb.length();
+                    sb.setLength(0);
+                }
+            }
+            writer.append(sb);
+        }
+    }
+
+    private static void appendDeclarations(StringBuilder sb) {
+        for (int v = 0; v < VARIABILI; v++) {
+            sb.append(v % 2 == 0 ? "int" : "float").append(" v").append(v)
+              .append(" = ").append(v % 2 == 0 ? "1" : "1.5").append(";\n");
+        }
+    }
+
+    private static void appendStatement(StringBuilder sb, int i) {
+        int a = (i * 2) % VARIABILI + 1;
+        int b = (i * 7) % VARIABILI;
+        switch (i % 3) {
+            case 0:
+                sb.append("v").append(a).append(" = v").append(a).append(" + ")
+                  .append(i % 1000).append(".25 * (v").append(b).append(" - 3);\n");
+                break;
+            case 1:
+                sb.append("v").append(a - 1).append(" = ").append(i % 97).append(" * 2 + 5;\n");
+                break;
+            default:
+                sb.append("print v").append(b).append(";\n");
+                break;
+        }
+    }
+}
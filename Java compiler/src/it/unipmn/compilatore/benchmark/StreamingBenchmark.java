@@ -0,0 +1,84 @@
+package it.unipmn.compilatore.benchmark;
+
+import it.unipmn.compilatore.Compiler;
+import it.unipmn.compilatore.scanner.Scanner;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Benchmark dell'occupazione di memoria della compilazione a flusso.
+ * <p>
+ * Genera su disco programmi di dimensione crescente e li compila con compileStreaming,
+ * scartando il codice prodotto, poi riporta il picco di heap usato. Con la compilazione
+ * a flusso il picco deve restare pressoché costante al crescere del programma; per
+ * confronto, con l'opzione "albero" viene usata la compilazione sull'AST completo.
+ * Uso: {@code java ... StreamingBenchmark [flusso|albero] [MB...]}
+ * </p>
+ */
+public final class StreamingBenchmark {
+
+    private StreamingBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean streaming = args.length == 0 || !args[0].equals("albero");
+        long[] sizes = {16, 64, 256};
+        if (args.length > 1) {
+            sizes = new long[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Long.parseLong(args[i]);
+            }
+        }
+
+        for (long mb : sizes) {
+            Path file = Files.createTempFile("streaming-bench", ".txt");
+            try {
+                SourceGenerator.writeProgram(file, mb * 1024 * 1024);
+                System.gc();
+                resetPeaks();
+
+                long start = System.nanoTime();
+                Compiler compiler = new Compiler();
+                if (streaming) {
+                    compiler.compileStreaming(new Scanner(file.toString()), Writer.nullWriter());
+                } else {
+                    compiler.compile(Scanner.fromReader(Files.newBufferedReader(file)));
+                }
+                long elapsed = System.nanoTime() - start;
+
+                System.out.printf("%s %4d MB: %8.1f ms, picco heap %7.1f MB%n",
+                        streaming ? "flusso" : "albero", mb, elapsed / 1e6, peakHeap() / (1024.0 * 1024.0));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Somma i picchi di utilizzo delle aree dello heap dall'ultimo azzeramento.
+     * È una stima per eccesso, perché le aree raggiungono il picco in momenti diversi.
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,193 @@
+package it.unipmn.compilatore.benchmark;
+
+import it.unipmn.compilatore.ast.LangType;
+import it.unipmn.compilatore.symboltable.Symbol;
+import it.unipmn.compilatore.symboltable.SymbolTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * Benchmark della SymbolTable a tabella unica con registro di annullamento, confrontata
+ * con la precedente organizzazione a Stack di HashMap (riprodotta qui come StackOfMaps).
+ * <p>
+ * Misura tre casi: la ricerca di una variabile globale sotto molti scope annidati, l'inserimento
+ * e la ricerca di moltissime variabili in un solo scope, e l'apertura e chiusura ripetuta di
+ * scope con una dichiarazione ciascuno.
+ * Uso: {@code java ... SymbolTableBenchmark [profondità] [variabili] [ripetizioni]}
+ * </p>
+ */
+public final class SymbolTableBenchmark {
+
+    private static final Symbol SYMBOL = new Symbol(LangType.INT);
+
+    private SymbolTableBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int variables = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        String[] names = new String[variables];
+        for (int i = 0; i < variables; i++) {
+            names[i] = "v" + i;
+        }
+
+        for (int r = 0; r < rounds; r++) {
+            report(depth + " scope annidati, ricerca globale",
+                    deepLookup(new Flat(), depth, names), deepLookup(new StackOfMaps(), depth, names));
+            report(variables + " variabili, inserimento e ricerca",
+                    manyVariables(new Flat(), names), manyVariables(new StackOfMaps(), names));
+            report("apertura e chiusura di scope",
+                    scopeChurn(new Flat(), names), scopeChurn(new StackOfMaps(), names));
+        }
+    }
+
+    private static void report(String label, double flat, double stack) {
+        System.out.printf("%-42s tabella %8.1f ns   stack %10.1f ns%n", label, flat, stack);
+    }
+
+    /**
+     * Dichiara una variabile globale, apre depth scope con una variabile ciascuno e cerca la globale.
+     * @return I nanosecondi per ricerca.
+     */
+    private static double deepLookup(Table table, int depth, String[] names) {
+        table.insert("globale");
+        for (int d = 0; d < depth; d++) {
+            table.enterScope();
+            table.insert(names[d % names.length]);
+        }
+        int lookups = 1_000_000;
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < lookups; i++) {
+            if (table.lookup("globale") != null) {
+                found++;
+            }
+        }
+        return check(found, lookups, System.nanoTime() - start);
+    }
+
+    /**
+     * Inserisce tutte le variabili nello scope globale e poi le cerca tutte.
+     * @return I nanosecondi per coppia inserimento più ricerca.
+     */
+    private static double manyVariables(Table table, String[] names) {
+        long start = System.nanoTime();
+        for (String name : names) {
+            table.insert(name);
+        }
+        int found = 0;
+        for (String name : names) {
+            if (table.lookup(name) != null) {
+                found++;
+            }
+        }
+        return check(found, names.length, System.nanoTime() - start);
+    }
+
+    /**
+     * Apre uno scope, dichiara una variabile, la cerca e chiude lo scope, per ogni nome.
+     * @return I nanosecondi per ciclo.
+     */
+    private static double scopeChurn(Table table, String[] names) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (String name : names) {
+            table.enterScope();
+            table.insert(name);
+            if (table.lookup(name) != null) {
+                found++;
+            }
+            table.exitScope();
+        }
+        return check(found, names.length, System.nanoTime() - start);
+    }
+
+    private static double check(int found, int expected, long nanos) {
+        if (found != expected) {
+            throw new IllegalStateException("Ricerche fallite: " + (expected - found));
+        }
+        return (double) nanos / expected;
+    }
+
+    /**
+     * Le operazioni misurate, comuni alle due implementazioni.
+     */
+    private interface Table {
+        void enterScope();
+
+        void exitScope();
+
+        void insert(String name);
+
+        Symbol lookup(String name);
+    }
+
+    private static final class Flat implements Table {
+
+        private final SymbolTable table = new SymbolTable();
+
+        @Override
+        public void enterScope() {
+            table.enterScope();
+        }
+
+        @Override
+        public void exitScope() {
+            table.exitScope();
+        }
+
+        @Override
+        public void insert(String name) {
+            table.insert(name, SYMBOL);
+        }
+
+        @Override
+        public Symbol lookup(String name) {
+            return table.lookup(name);
+        }
+    }
+
+    /**
+     * La vecchia organizzazione: uno Stack (sincronizzato) con una HashMap per scope.
+     */
+    private static final class StackOfMaps implements Table {
+
+        private final Stack<Map<String, Symbol>> scopes = new Stack<>();
+
+        StackOfMaps() {
+            scopes.push(new HashMap<>());
+        }
+
+        @Override
+        public void enterScope() {
+            scopes.push(new HashMap<>());
+        }
+
+        @Override
+        public void exitScope() {
+            if (scopes.size() > 1) {
+                scopes.pop();
+            }
+        }
+
+        @Override
+        public void insert(String name) {
+            scopes.peek().putIfAbsent(name, SYMBOL);
+        }
+
+        @Override
+        public Symbol lookup(String name) {
+            for (int i = scopes.size() - 1; i >= 0; i--) {
+                Symbol symbol = scopes.get(i).get(name);
+                if (symbol != null) {
+                    return symbol;
+                }
+            }
+            return null;
+        }
+    }
+}
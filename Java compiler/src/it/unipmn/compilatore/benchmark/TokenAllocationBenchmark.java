@@ -0,0 +1,67 @@
+package it.unipmn.compilatore.benchmark;
+
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.token.TokenBuffer;
+import it.unipmn.compilatore.token.TokenType;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Benchmark dei byte allocati per token dalle due interfacce dello Scanner.
+ * <p>
+ * Confronta la lettura a oggetti (un Token per occorrenza con nextToken) con la
+ * tokenizzazione compatta in un TokenBuffer. Le allocazioni vengono misurate con il
+ * contatore per thread della JVM HotSpot (com.sun.management.ThreadMXBean).
+ * Uso: {@code java ... TokenAllocationBenchmark [dimensioneMB] [ripetizioni]}
+ * </p>
+ */
+public final class TokenAllocationBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private TokenAllocationBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        long mb = args.length > 0 ? Long.parseLong(args[0]) : 8;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String source = SourceGenerator.program(mb * 1024 * 1024);
+
+        for (int r = 0; r < rounds; r++) {
+            measureNextToken(source);
+            measureTokenize(source);
+        }
+    }
+
+    private static void measureNextToken(String source) {
+        long id = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+
+        Scanner scanner = Scanner.fromText(source);
+        long tokens = 1;
+        while (scanner.nextToken().getType() != TokenType.EOF) {
+            tokens++;
+        }
+
+        report("nextToken (Token per occorrenza)", tokens, System.nanoTime() - start,
+                THREADS.getThreadAllocatedBytes(id) - before);
+    }
+
+    private static void measureTokenize(String source) {
+        long id = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+
+        TokenBuffer buffer = Scanner.fromText(source).tokenize();
+
+        report("tokenize (TokenBuffer compatto)", buffer.size(), System.nanoTime() - start,
+                THREADS.getThreadAllocatedBytes(id) - before);
+    }
+
+    private static void report(String label, long tokens, long nanos, long bytes) {
+        System.out.printf("%-34s %10d token  %7.1f ns/token  %7.1f byte/token%n",
+                label, tokens, (double) nanos / tokens, (double) bytes / tokens);
+    }
+}
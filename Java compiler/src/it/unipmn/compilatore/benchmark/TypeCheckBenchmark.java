@@ -0,0 +1,45 @@
+package it.unipmn.compilatore.benchmark;
+
+import it.unipmn.compilatore.ast.NodeProgram;
+import it.unipmn.compilatore.parser.Parser;
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.token.TokenBuffer;
+import it.unipmn.compilatore.trace.Trace;
+import it.unipmn.compilatore.visitor.ParallelTypeChecker;
+import it.unipmn.compilatore.visitor.TypeCheckVisitor;
+
+/**
+ * Benchmark del controllo dei tipi sequenziale rispetto a quello parallelo.
+ * <p>
+ * Tokenizza una volta un programma generato in memoria; a ogni ripetizione ricostruisce
+ * l'AST (il controllo lo modifica inserendo le conversioni) e misura solo il controllo.
+ * Uso: {@code java ... TypeCheckBenchmark [dimensioneMB] [ripetizioni]}
+ * </p>
+ */
+public final class TypeCheckBenchmark {
+
+    private TypeCheckBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        long mb = args.length > 0 ? Long.parseLong(args[0]) : 32;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        TokenBuffer tokens = Scanner.fromText(SourceGenerator.program(mb * 1024 * 1024)).tokenize();
+
+        long sequential = Long.MAX_VALUE;
+        long parallel = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            NodeProgram program = new Parser(tokens).parse();
+            long start = System.nanoTime();
+            program.accept(new TypeCheckVisitor());
+            sequential = Math.min(sequential, System.nanoTime() - start);
+
+            program = new Parser(tokens).parse();
+            start = System.nanoTime();
+            new ParallelTypeChecker(Trace.disabled()).check(program);
+            parallel = Math.min(parallel, System.nanoTime() - start);
+        }
+        System.out.printf("sequenziale: %8.1f ms%n", sequential / 1e6);
+        System.out.printf("parallelo:   %8.1f ms (%.1fx)%n", parallel / 1e6, (double) sequential / parallel);
+    }
+}
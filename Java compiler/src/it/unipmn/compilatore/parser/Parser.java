@@ -2,22 +2,61 @@ package it.unipmn.compilatore.parser;
 
 import it.unipmn.compilatore.scanner.Scanner;
 import it.unipmn.compilatore.token.Token;
+import it.unipmn.compilatore.token.TokenBuffer;
 import it.unipmn.compilatore.token.TokenType;
+import it.unipmn.compilatore.trace.Trace;
 import it.unipmn.compilatore.ast.*;
 import it.unipmn.compilatore.exceptions.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Classe che implementa l'analizzatore sintattico (Parser).
  * Costruisce l'albero sintattico (AST) verificando se la sequenza di token
  * passata dallo Scanner rispetta le regole grammaticali del nostro linguaggio.
- * Mantiene un log delle operazioni di parsing per il debug.
+ * I token possono arrivare uno alla volta dallo Scanner oppure da un TokenBuffer
+ * già compilato, che viene scorso con un cursore senza creare oggetti Token.
+ * Le regole grammaticali visitate vengono annotate sulla Trace condivisa con lo Scanner.
  */
 public class Parser {
 
+    // Operatore binario corrispondente a ogni tipo di token (null se il token non è un operatore)
+    private static final LangOper[] BINARY_OPS = new LangOper[TokenType.values().length];
+    private static final LangOper[] OPERS = LangOper.values();
+    // Segnaposto di una parentesi aperta sulla pila degli operatori
+    private static final int PAREN = -1;
+
+    static {
+        BINARY_OPS[TokenType.PLUS.ordinal()] = LangOper.PLUS;
+        BINARY_OPS[TokenType.MINUS.ordinal()] = LangOper.MINUS;
+        BINARY_OPS[TokenType.TIMES.ordinal()] = LangOper.TIMES;
+        BINARY_OPS[TokenType.DIVIDE.ordinal()] = LangOper.DIVIDE;
+    }
+
+    // Sorgente dei token in modalità a flusso (null se uso il TokenBuffer)
     private final Scanner scanner;
     private Token currentToken;
-    // StringBuilder per tracciare le regole grammaticali visitate
-    private StringBuilder log;
+    // Sorgente dei token in modalità compatta (null se uso lo Scanner) e posizione del cursore
+    private final TokenBuffer tokens;
+    private int cursor;
+    // Tipo e riga del token corrente, validi in entrambe le modalità
+    private TokenType currentType;
+    private int currentRiga;
+    // Errori raccolti in modalità di recupero
+    private List<SyntacticException> errors = Collections.emptyList();
+    // Traccia su cui annotare le regole grammaticali visitate
+    private final Trace trace;
+    // Pile di parseExpression(), riusate da un'espressione all'altra
+    private NodeExpr[] operandStack = new NodeExpr[16];
+    private int operandTop;
+    private int[] operatorStack = new int[16];
+    private int[] operatorRiga = new int[16];
+    private int operatorTop;
+    // Fabbrica che condivide le sottoespressioni identiche (null se la condivisione è disattivata)
+    private HashConsFactory sharing;
 
     /**
      * Costruttore del Parser.
@@ -29,19 +68,118 @@ public class Parser {
             throw new SyntacticException("Errore interno: Scanner non definito per il Parser.");
         }
         this.scanner = scanner;
-        this.log = new StringBuilder();
-        this.log.append("Parser inizializzato.\n");
+        this.tokens = null;
+        this.trace = scanner.getTrace();
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Parser inizializzato.\n");
+        }
         // Salvo il primo token per preparare l'analisi
         this.currentToken = scanner.nextToken();
-        this.log.append("Primo token caricato: ").append(currentToken).append("\n");
+        this.currentType = currentToken.getType();
+        this.currentRiga = currentToken.getRiga();
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Primo token caricato: ");
+            appendCurrent();
+            trace.append("\n");
+        }
     }
 
     /**
-     * Restituisce il log delle operazioni sintattiche.
-     * @return La stringa con i log.
+     * Costruttore del Parser in modalità compatta.
+     * I token vengono letti da un TokenBuffer già completo, avanzando un cursore intero.
+     * @param tokens Il buffer dei token prodotto da Scanner.tokenize(), terminato da EOF.
+     */
+    public Parser(TokenBuffer tokens) throws SyntacticException {
+        this(tokens, Trace.disabled());
+    }
+
+    /**
+     * Costruttore del Parser in modalità compatta con una traccia delle operazioni.
+     * @param tokens Il buffer dei token prodotto da Scanner.tokenize(), terminato da EOF.
+     * @param trace La traccia su cui annotare le regole grammaticali visitate.
+     */
+    public Parser(TokenBuffer tokens, Trace trace) throws SyntacticException {
+        if (tokens == null || tokens.size() == 0) {
+            throw new SyntacticException("Errore interno: TokenBuffer non definito per il Parser.");
+        }
+        this.scanner = null;
+        this.tokens = tokens;
+        this.cursor = 0;
+        this.trace = trace;
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Parser inizializzato su TokenBuffer.\n");
+        }
+        this.currentType = tokens.type(0);
+        this.currentRiga = tokens.riga(0);
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Primo token caricato: ");
+            appendCurrent();
+            trace.append("\n");
+        }
+    }
+
+    /**
+     * Attiva la condivisione delle sottoespressioni identiche: le espressioni lette da qui in poi
+     * vengono costruite dalla fabbrica indicata, e formano quindi un DAG invece di un albero.
+     * @param sharing La fabbrica da usare, oppure null per tornare a un nodo per occorrenza.
+     */
+    public void setHashConsing(HashConsFactory sharing) {
+        this.sharing = sharing;
+    }
+
+    /**
+     * Restituisce il log delle operazioni sintattiche, cioè il contenuto della traccia se è tenuta in memoria.
+     * @return La stringa con i log, vuota se la traccia è disabilitata o scritta su file.
      */
     public String getLog() {
-        return log.toString();
+        return trace.toString();
+    }
+
+    /**
+     * Fa avanzare l'analisi al token successivo, leggendolo dallo Scanner o spostando il cursore.
+     */
+    private void advance() throws LexicalException {
+        if (tokens != null) {
+            // Il cursore non supera mai l'ultimo token, che è sempre EOF
+            if (cursor < tokens.size() - 1) {
+                cursor++;
+            }
+            currentType = tokens.type(cursor);
+            currentRiga = tokens.riga(cursor);
+        } else {
+            currentToken = scanner.nextToken();
+            currentType = currentToken.getType();
+            currentRiga = currentToken.getRiga();
+        }
+    }
+
+    /**
+     * Restituisce il testo del token corrente (nome o numero), ritagliandolo solo adesso se serve.
+     * @return Il valore testuale del token corrente.
+     */
+    private String currentVal() {
+        return (tokens != null) ? tokens.lexeme(cursor) : currentToken.getVal();
+    }
+
+    /**
+     * Restituisce l'id internato dell'identificatore corrente.
+     * @return L'id dell'identificatore, oppure -1.
+     */
+    private int currentSymbolId() {
+        return (tokens != null) ? tokens.symbolId(cursor) : currentToken.getSymbolId();
+    }
+
+    /**
+     * Aggiunge alla traccia la descrizione del token corrente.
+     */
+    private void appendCurrent() {
+        if (tokens != null && trace.memory() != null) {
+            tokens.appendTo(cursor, trace.memory());
+        } else if (tokens != null) {
+            trace.append(tokens.toToken(cursor));
+        } else {
+            trace.append(currentToken);
+        }
     }
 
     /**
@@ -50,14 +188,20 @@ public class Parser {
      * @param expected Il tipo di token che mi aspetto di trovare in questo punto.
      */
     private void match(TokenType expected) throws LexicalException, SyntacticException {
-        if (currentToken.getType() == expected) {
-            log.append("Match OK: atteso ").append(expected).append(", trovato ").append(currentToken).append("\n");
+        if (currentType == expected) {
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                trace.append("Match OK: atteso ").append(expected).append(", trovato ");
+                appendCurrent();
+                trace.append("\n");
+            }
             // Il token è quello giusto, procedo caricando il successivo
-            this.currentToken = scanner.nextToken();
+            advance();
         } else {
-            String msg = "Errore Sintattico alla riga " + currentToken.getRiga() +
-                         ": Atteso " + expected + ", trovato " + currentToken.getType();
-            log.append("ERRORE MATCH: ").append(msg).append("\n");
+            String msg = "Errore Sintattico alla riga " + currentRiga +
+                         ": Atteso " + expected + ", trovato " + currentType;
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append("ERRORE MATCH: ").append(msg).append("\n");
+            }
             throw new SyntacticException(msg);
         }
     }
@@ -67,28 +211,115 @@ public class Parser {
      * @return Il nodo radice di tutto l'albero (NodeProgram).
      */
     public NodeProgram parse() throws LexicalException, SyntacticException {
-        log.append("Inizio parsing Programma.\n");
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Inizio parsing Programma.\n");
+        }
         // Creo il blocco principale che conterrà tutto il codice
-        NodeProgram rootNode = new NodeProgram(currentToken.getRiga());
+        NodeProgram rootNode = new NodeProgram(currentRiga);
+        rootNode.setShared(sharing != null);
 
         // Itero finché non incontro la fine del file per estrarre le istruzioni
-        while (currentToken.getType() != TokenType.EOF) {
+        while (currentType != TokenType.EOF) {
             NodeDecSt node = parseStatement();
             // Aggiungo il nodo dell'istruzione appena letta al blocco del programma
             rootNode.addStatement(node);
         }
 
-        log.append("Fine parsing Programma.\n");
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Fine parsing Programma.\n");
+        }
         return rootNode;
     }
 
+    /**
+     * Analizza l'intero programma in modalità di recupero dagli errori (panic mode).
+     * <p>
+     * Quando un'istruzione contiene un errore sintattico, l'errore viene registrato e
+     * l'analisi scarta i token fino al prossimo ';' (compreso) o al prossimo token che
+     * può iniziare un'istruzione (int, float, print), poi riprende da lì.
+     * Così un solo passaggio raccoglie tutte le diagnostiche, leggibili con getErrors().
+     * Sul percorso senza errori il costo è lo stesso di parse(): l'unica differenza è un
+     * blocco try attorno a ogni istruzione, che non esegue nulla finché non c'è un'eccezione.
+     * Gli errori lessicali interrompono comunque l'analisi.
+     * </p>
+     * @return Il programma con tutte le istruzioni analizzate correttamente.
+     */
+    public NodeProgram parseWithRecovery() throws LexicalException {
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Inizio parsing Programma con recupero dagli errori.\n");
+        }
+        NodeProgram rootNode = new NodeProgram(currentRiga);
+        rootNode.setShared(sharing != null);
+        errors = new ArrayList<>();
+
+        while (currentType != TokenType.EOF) {
+            try {
+                rootNode.addStatement(parseStatement());
+            } catch (SyntacticException e) {
+                errors.add(e);
+                synchronize();
+            }
+        }
+
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Fine parsing Programma: ").append(errors.size()).append(" errori.\n");
+        }
+        return rootNode;
+    }
+
+    /**
+     * Restituisce gli errori sintattici raccolti dall'ultima chiamata a parseWithRecovery(),
+     * nell'ordine in cui sono stati trovati.
+     * @return La lista degli errori, vuota se il programma è corretto o se non è stato usato il recupero.
+     */
+    public List<SyntacticException> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Scarta i token fino a un punto da cui un'istruzione può ricominciare:
+     * dopo il prossimo ';', oppure su una parola chiave che apre un'istruzione, oppure a fine file.
+     * Ogni errore consuma almeno un token prima di arrivare qui, oppure si trova su un token
+     * che non apre istruzioni, quindi l'analisi avanza sempre.
+     */
+    private void synchronize() throws LexicalException {
+        while (currentType != TokenType.EOF) {
+            switch (currentType) {
+                case SEMI:
+                    advance();
+                    return;
+                case TYINT:
+                case TYFLOAT:
+                case PRINT:
+                    return;
+                default:
+                    advance();
+            }
+        }
+    }
+
+    /**
+     * Analizza solo la prossima istruzione del programma, per la compilazione a flusso:
+     * il chiamante può controllarla, tradurla e scartarla prima di leggere la successiva,
+     * senza mai costruire l'intero NodeProgram.
+     * @return Il nodo dell'istruzione letta, oppure null se il programma è terminato.
+     */
+    public NodeDecSt parseNext() throws LexicalException, SyntacticException {
+        if (currentType == TokenType.EOF) {
+            return null;
+        }
+        return parseStatement();
+    }
+
     /**
      * Smista l'analisi verso regole più specifiche in base a come inizia l'istruzione.
      * @return Il nodo generico corrispondente all'istruzione trovata.
      */
     private NodeDecSt parseStatement() throws LexicalException, SyntacticException {
-        log.append("Analisi statement, token corrente: ").append(currentToken.getType()).append("\n");
-        switch (currentToken.getType()) {
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Analisi statement, token corrente: ").append(currentType).append("\n");
+        }
+        switch (currentType) {
             case TYINT:
             case TYFLOAT:
                 // Se inizia con un tipo (int/float) è sicuramente una dichiarazione
@@ -100,9 +331,11 @@ public class Parser {
                 // Se inizia con un nome di variabile è un assegnamento
                 return parseAssign();
             default:
-                String msg = "Istruzione non valida o inattesa alla riga " + currentToken.getRiga() +
-                             ": trovato " + currentToken.getType();
-                log.append("ERRORE STATEMENT: ").append(msg).append("\n");
+                String msg = "Istruzione non valida o inattesa alla riga " + currentRiga +
+                             ": trovato " + currentType;
+                if (trace.enabled(Trace.Level.ERROR)) {
+                    trace.append("ERRORE STATEMENT: ").append(msg).append("\n");
+                }
                 throw new SyntacticException(msg);
         }
     }
@@ -112,37 +345,45 @@ public class Parser {
      * @return Il nodo NodeDecl costruito.
      */
     private NodeDecl parseDecl() throws LexicalException, SyntacticException {
-        log.append("Inizio parsing Dichiarazione.\n");
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Inizio parsing Dichiarazione.\n");
+        }
         LangType type;
 
         // Estraggo il tipo della variabile e avanzo col match
-        if (currentToken.getType() == TokenType.TYINT) {
+        if (currentType == TokenType.TYINT) {
             type = LangType.INT;
             match(TokenType.TYINT);
-        } else if (currentToken.getType() == TokenType.TYFLOAT) {
+        } else if (currentType == TokenType.TYFLOAT) {
             type = LangType.FLOAT;
             match(TokenType.TYFLOAT);
         } else {
-            String msg = "Atteso tipo (int o float) alla riga " + currentToken.getRiga();
-            log.append("ERRORE: ").append(msg).append("\n");
+            String msg = "Atteso tipo (int o float) alla riga " + currentRiga;
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append("ERRORE: ").append(msg).append("\n");
+            }
             throw new SyntacticException(msg);
         }
 
         // Il nome della variabile è obbligatorio dopo il tipo
-        if (currentToken.getType() != TokenType.ID) {
-            String msg = "Atteso identificatore dopo il tipo alla riga " + currentToken.getRiga();
-            log.append("ERRORE: ").append(msg).append("\n");
+        if (currentType != TokenType.ID) {
+            String msg = "Atteso identificatore dopo il tipo alla riga " + currentRiga;
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append("ERRORE: ").append(msg).append("\n");
+            }
             throw new SyntacticException(msg);
         }
         
         // Mi salvo le informazioni della variabile per inserirle nel nodo
-        NodeId id = new NodeId(currentToken.getVal(), currentToken.getRiga());
+        NodeId id = new NodeId(currentVal(), currentRiga, currentSymbolId());
         match(TokenType.ID);
 
         NodeExpr init = null;
         // Verifico se c'è un simbolo "=" per gestire l'inizializzazione immediata
-        if (currentToken.getType() == TokenType.ASSIGN) {
-            log.append("Rilevata inizializzazione contestuale (=).\n");
+        if (currentType == TokenType.ASSIGN) {
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                trace.append("Rilevata inizializzazione contestuale (=).\n");
+            }
             match(TokenType.ASSIGN);
             // Salvo l'espressione a destra dell'uguale
             init = parseExpression();
@@ -150,6 +391,9 @@ public class Parser {
 
         // Finisco l'istruzione col punto e virgola obbligatorio
         match(TokenType.SEMI);
+        if (sharing != null) {
+            sharing.assigned(id.getName());
+        }
         return new NodeDecl(id, type, init, id.getRiga());
     }
 
@@ -158,17 +402,21 @@ public class Parser {
      * @return Il nodo NodePrint costruito.
      */
     private NodePrint parsePrint() throws LexicalException, SyntacticException {
-        log.append("Inizio parsing Print.\n");
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Inizio parsing Print.\n");
+        }
         match(TokenType.PRINT);
 
-        if (currentToken.getType() != TokenType.ID) {
-            String msg = "Atteso identificatore dopo 'print' alla riga " + currentToken.getRiga();
-            log.append("ERRORE: ").append(msg).append("\n");
+        if (currentType != TokenType.ID) {
+            String msg = "Atteso identificatore dopo 'print' alla riga " + currentRiga;
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append("ERRORE: ").append(msg).append("\n");
+            }
             throw new SyntacticException(msg);
         }
         
         // Estraggo l'identificatore della variabile che voglio stampare
-        NodeId id = new NodeId(currentToken.getVal(), currentToken.getRiga());
+        NodeId id = new NodeId(currentVal(), currentRiga, currentSymbolId());
         match(TokenType.ID);
 
         match(TokenType.SEMI);
@@ -180,9 +428,11 @@ public class Parser {
      * @return Il nodo NodeAssign.
      */
     private NodeAssign parseAssign() throws LexicalException, SyntacticException {
-        log.append("Inizio parsing Assegnamento.\n");
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Inizio parsing Assegnamento.\n");
+        }
         // Estraggo il nome della variabile da sovrascrivere
-        NodeId id = new NodeId(currentToken.getVal(), currentToken.getRiga());
+        NodeId id = new NodeId(currentVal(), currentRiga, currentSymbolId());
         match(TokenType.ID);
         
         match(TokenType.ASSIGN);
@@ -191,103 +441,176 @@ public class Parser {
         NodeExpr expr = parseExpression();
 
         match(TokenType.SEMI);
+        if (sharing != null) {
+            // Da qui in poi le letture della variabile vedono il nuovo valore
+            sharing.assigned(id.getName());
+        }
         return new NodeAssign(id, expr, id.getRiga());
     }
 
     /**
-     * Analizza le operazioni aritmetiche con la precedenza più bassa (somma e sottrazione).
+     * Analizza un'espressione aritmetica senza ricorsione (precedence climbing a pile esplicite).
+     * <p>
+     * Gli operandi già costruiti e gli operatori in attesa vengono tenuti su due pile;
+     * una parentesi aperta è un segnaposto sulla pila degli operatori. Quando arriva un
+     * operatore, si riducono prima quelli in cima con precedenza maggiore o uguale
+     * (associatività a sinistra), secondo la tabella di LangOper. Così la profondità
+     * di annidamento delle parentesi è limitata solo dalla memoria e non dallo stack
+     * delle chiamate, e l'albero ottenuto è lo stesso della discesa ricorsiva.
+     * </p>
      * @return Il nodo radice dell'espressione analizzata.
      */
     private NodeExpr parseExpression() throws LexicalException, SyntacticException {
-        // Valuto prima il termine, che ha priorità maggiore sulle somme
-        NodeExpr left = parseTerm();
+        operandTop = 0;
+        operatorTop = 0;
+        int openParens = 0;
 
-        // Itero per costruire catene di somme o sottrazioni in sequenza (es: a + b - c)
-        while (currentToken.getType() == TokenType.PLUS || currentToken.getType() == TokenType.MINUS) {
-            // Salvo qual è l'operatore matematico trovato
-            log.append("Trovato operatore additivo: ").append(currentToken.getType()).append("\n");
-            LangOper op = (currentToken.getType() == TokenType.PLUS) ? LangOper.PLUS : LangOper.MINUS;
-            int rigaOp = currentToken.getRiga();
-            match(currentToken.getType());
-            
-            // Valuto il termine alla destra dell'operatore
-            NodeExpr right = parseTerm();
+        while (true) {
+            // Atteso un operando: prima apro tutte le parentesi che lo precedono
+            while (currentType == TokenType.LPAREN) {
+                if (trace.enabled(Trace.Level.DETAIL)) {
+                    trace.append("Inizio espressione parentesizzata.\n");
+                }
+                pushOperator(PAREN, currentRiga);
+                openParens++;
+                match(TokenType.LPAREN);
+            }
+            pushOperand(parseOperand());
 
-            // Aggiorno l'albero: il nuovo nodo operazione diventa padre di left e right
-            left = new NodeBinOp(op, left, right, rigaOp);
-        }
+            // Dopo un operando: chiudo le parentesi e cerco l'operatore successivo
+            LangOper op;
+            while ((op = BINARY_OPS[currentType.ordinal()]) == null) {
+                if (currentType != TokenType.RPAREN || openParens == 0) {
+                    // Fine dell'espressione: se restano parentesi aperte, match segnala l'errore
+                    if (openParens > 0) {
+                        match(TokenType.RPAREN);
+                    }
+                    while (operatorTop > 0) {
+                        reduce();
+                    }
+                    return popOperand();
+                }
+                while (operatorStack[operatorTop - 1] != PAREN) {
+                    reduce();
+                }
+                operatorTop--;
+                openParens--;
+                match(TokenType.RPAREN);
+                if (trace.enabled(Trace.Level.DETAIL)) {
+                    trace.append("Fine espressione parentesizzata.\n");
+                }
+            }
 
-        return left;
-    }
-
-    /**
-     * Analizza le operazioni con precedenza intermedia (moltiplicazione e divisione).
-     * @return Il nodo espressione corrispondente al termine.
-     */
-    private NodeExpr parseTerm() throws LexicalException, SyntacticException {
-        // Salgo ancora di priorità valutando prima i singoli fattori
-        NodeExpr left = parseFactor();
-
-        // Itero per accorpare catene di moltiplicazioni o divisioni (es: a * b / c)
-        while (currentToken.getType() == TokenType.TIMES || currentToken.getType() == TokenType.DIVIDE) {
-            log.append("Trovato operatore moltiplicativo: ").append(currentToken.getType()).append("\n");
-            LangOper op = (currentToken.getType() == TokenType.TIMES) ? LangOper.TIMES : LangOper.DIVIDE;
-            int rigaOp = currentToken.getRiga();
-            match(currentToken.getType());
-            
-            NodeExpr right = parseFactor();
-            
-            // Collego i due operandi appena trovati sotto un nuovo nodo operazione
-            left = new NodeBinOp(op, left, right, rigaOp);
-        }
-
-        return left;
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                trace.append("Trovato operatore: ").append(currentType).append("\n");
+            }
+            // Riduco gli operatori in attesa che legano almeno quanto quello nuovo
+            while (operatorTop > 0 && operatorStack[operatorTop - 1] != PAREN
+                    && OPERS[operatorStack[operatorTop - 1]].getPrecedence() >= op.getPrecedence()) {
+                reduce();
+            }
+            pushOperator(op.ordinal(), currentRiga);
+            match(currentType);
+        }
     }
 
     /**
-     * Analizza gli elementi indivisibili di un'espressione, con la massima priorità.
-     * Gestisce costanti, l'uso di variabili e le parentesi.
-     * @return Il nodo espressione del fattore base.
+     * Analizza gli elementi indivisibili di un'espressione: costanti e uso di variabili.
+     * Le parentesi sono gestite direttamente da parseExpression().
+     * @return Il nodo espressione dell'operando.
      */
-    private NodeExpr parseFactor() throws LexicalException, SyntacticException {
-        if (currentToken.getType() == TokenType.INT) {
-            log.append("Parsing fattore: costante intera.\n");
+    private NodeExpr parseOperand() throws LexicalException, SyntacticException {
+        if (currentType == TokenType.INT) {
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                trace.append("Parsing fattore: costante intera.\n");
+            }
             // Riconosco un numero senza virgola
-            NodeCost node = new NodeCost(LangType.INT, currentToken.getVal(), currentToken.getRiga());
+            NodeExpr node = (sharing != null)
+                    ? sharing.cost(LangType.INT, currentVal(), currentRiga)
+                    : new NodeCost(LangType.INT, currentVal(), currentRiga);
             match(TokenType.INT);
             return node;
         }
-        else if (currentToken.getType() == TokenType.FLOAT) {
-            log.append("Parsing fattore: costante float.\n");
+        else if (currentType == TokenType.FLOAT) {
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                trace.append("Parsing fattore: costante float.\n");
+            }
             // Riconosco un numero decimale
-            NodeCost node = new NodeCost(LangType.FLOAT, currentToken.getVal(), currentToken.getRiga());
+            NodeExpr node = (sharing != null)
+                    ? sharing.cost(LangType.FLOAT, currentVal(), currentRiga)
+                    : new NodeCost(LangType.FLOAT, currentVal(), currentRiga);
             match(TokenType.FLOAT);
             return node;
         }
-        else if (currentToken.getType() == TokenType.ID) {
-            log.append("Parsing fattore: variabile.\n");
+        else if (currentType == TokenType.ID) {
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                trace.append("Parsing fattore: variabile.\n");
+            }
             // Riconosco l'uso di una variabile per prelevarne il valore
-            NodeId nodeId = new NodeId(currentToken.getVal(), currentToken.getRiga());
+            NodeId nodeId = new NodeId(currentVal(), currentRiga, currentSymbolId());
             match(TokenType.ID);
+            if (sharing != null) {
+                return sharing.deref(nodeId);
+            }
             // Incapsulo la variabile in NodeDeref per indicare che stiamo leggendo il suo dato
             return new NodeDeref(nodeId.getRiga(), nodeId);
         }
-        else if (currentToken.getType() == TokenType.LPAREN) {
-            log.append("Inizio espressione parentesizzata.\n");
-            // Do massima priorità ai blocchi racchiusi tra parentesi
-            match(TokenType.LPAREN);
-            
-            // Ricomincio l'analisi per risolvere l'espressione interna alla parentesi
-            NodeExpr expr = parseExpression();
-            
-            match(TokenType.RPAREN);
-            log.append("Fine espressione parentesizzata.\n");
-            return expr;
-        }
-
-        String msg = "Atteso numero, variabile o parentesi aperta alla riga " + currentToken.getRiga() +
-                     ", trovato " + currentToken.getType();
-        log.append("ERRORE FATTORE: ").append(msg).append("\n");
+
+        String msg = "Atteso numero, variabile o parentesi aperta alla riga " + currentRiga +
+                     ", trovato " + currentType;
+        if (trace.enabled(Trace.Level.ERROR)) {
+            trace.append("ERRORE FATTORE: ").append(msg).append("\n");
+        }
         throw new SyntacticException(msg);
     }
-}
\ No newline at end of file
+
+    /**
+     * Toglie l'operatore in cima alla pila e lo applica ai due operandi in cima,
+     * sostituendoli con il nuovo nodo NodeBinOp.
+     */
+    private void reduce() {
+        operatorTop--;
+        NodeExpr right = popOperand();
+        NodeExpr left = popOperand();
+        LangOper op = OPERS[operatorStack[operatorTop]];
+        pushOperand((sharing != null)
+                ? sharing.binOp(op, left, right, operatorRiga[operatorTop])
+                : new NodeBinOp(op, left, right, operatorRiga[operatorTop]));
+    }
+
+    /**
+     * Aggiunge un operando in cima alla pila, raddoppiandola se è piena.
+     * @param node L'operando da aggiungere.
+     */
+    private void pushOperand(NodeExpr node) {
+        if (operandTop == operandStack.length) {
+            operandStack = Arrays.copyOf(operandStack, operandTop * 2);
+        }
+        operandStack[operandTop++] = node;
+    }
+
+    /**
+     * Toglie l'operando in cima alla pila, senza lasciarne il riferimento nell'array.
+     * @return L'operando tolto.
+     */
+    private NodeExpr popOperand() {
+        NodeExpr node = operandStack[--operandTop];
+        operandStack[operandTop] = null;
+        return node;
+    }
+
+    /**
+     * Aggiunge un operatore (o il segnaposto di una parentesi) in cima alla pila, raddoppiandola se è piena.
+     * @param op L'ordinale del LangOper, oppure PAREN.
+     * @param riga La riga dell'operatore.
+     */
+    private void pushOperator(int op, int riga) {
+        if (operatorTop == operatorStack.length) {
+            operatorStack = Arrays.copyOf(operatorStack, operatorTop * 2);
+            operatorRiga = Arrays.copyOf(operatorRiga, operatorTop * 2);
+        }
+        operatorStack[operatorTop] = op;
+        operatorRiga[operatorTop] = riga;
+        operatorTop++;
+    }
+}
@@ -0,0 +1,55 @@
+package it.unipmn.compilatore.scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Vista in sola lettura di un intervallo di byte ASCII come sequenza di caratteri.
+ * <p>
+ * Permette di ritagliare i lessemi direttamente da un ByteBuffer (anche mappato
+ * in memoria) senza decodificare né copiare l'intero sorgente.
+ * </p>
+ */
+final class AsciiSequence implements CharSequence {
+
+    private final ByteBuffer bytes;
+    private final int start;
+    private final int end;
+
+    /**
+     * Costruttore della vista.
+     * @param bytes Il buffer che contiene i byte.
+     * @param start L'indice assoluto del primo byte della vista.
+     * @param end L'indice assoluto successivo all'ultimo byte della vista.
+     */
+    AsciiSequence(ByteBuffer bytes, int start, int end) {
+        this.bytes = bytes;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(start + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new AsciiSequence(bytes, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        byte[] copy = new byte[end - start];
+        // Uso un duplicato per non spostare la posizione del buffer originale
+        ByteBuffer view = bytes.duplicate();
+        view.position(start);
+        view.get(copy);
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+}
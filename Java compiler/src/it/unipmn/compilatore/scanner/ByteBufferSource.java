@@ -0,0 +1,89 @@
+package it.unipmn.compilatore.scanner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sorgente di caratteri che legge i byte ASCII contenuti in un ByteBuffer.
+ * <p>
+ * I byte compresi tra la posizione e il limite del buffer vengono restituiti
+ * direttamente come caratteri, senza decodifica del charset e senza copiarli.
+ * Il buffer del chiamante non viene modificato perché uso solo letture assolute.
+ * </p>
+ */
+final class ByteBufferSource extends CharSource {
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int pos;
+
+    /**
+     * Costruttore della sorgente su buffer di byte.
+     * @param buffer Il buffer che contiene il testo ASCII del programma.
+     */
+    ByteBufferSource(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.pos = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    @Override
+    int read() {
+        if (pos < limit) {
+            return buffer.get(pos++) & 0xFF;
+        }
+        return -1;
+    }
+
+    @Override
+    void unread() {
+        pos--;
+    }
+
+    /**
+     * Scorre i byte del buffer con letture assolute fino all'a capo.
+     */
+    @Override
+    boolean skipLine() {
+        while (pos < limit) {
+            if (buffer.get(pos++) == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scorre i byte del buffer con letture assolute fino alla chiusura del commento.
+     */
+    @Override
+    int skipBlockComment() {
+        int newlines = 0;
+        boolean star = false;
+        while (pos < limit) {
+            byte b = buffer.get(pos++);
+            if (b == '/' && star) {
+                return newlines;
+            }
+            star = b == '*';
+            if (b == '\n') {
+                newlines++;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    int position() {
+        return pos;
+    }
+
+    @Override
+    CharSequence text() {
+        return new AsciiSequence(buffer, 0, limit);
+    }
+
+    @Override
+    public void close() {
+        // Il buffer appartiene al chiamante, non ho nulla da chiudere
+    }
+}
@@ -0,0 +1,117 @@
+package it.unipmn.compilatore.scanner;
+
+/**
+ * Sorgente di caratteri che legge un testo già presente in memoria.
+ * <p>
+ * Permette di compilare frammenti di codice (ad esempio ricevuti da un servizio)
+ * senza doverli prima scrivere su un file temporaneo.
+ * </p>
+ */
+final class CharSequenceSource extends CharSource {
+
+    private final CharSequence text;
+    private final int limit;
+    private int pos;
+
+    /**
+     * Costruttore della sorgente in memoria.
+     * @param text Il testo del programma da leggere.
+     */
+    CharSequenceSource(CharSequence text) {
+        this(text, 0, text.length());
+    }
+
+    /**
+     * Costruttore di una sorgente limitata a una porzione del testo.
+     * Le posizioni restano riferite all'inizio del testo completo.
+     * @param text Il testo del programma.
+     * @param from L'offset del primo carattere da leggere.
+     * @param to L'offset successivo all'ultimo carattere da leggere.
+     */
+    CharSequenceSource(CharSequence text, int from, int to) {
+        this.text = text;
+        this.limit = to;
+        this.pos = from;
+    }
+
+    @Override
+    int read() {
+        if (pos < limit) {
+            return text.charAt(pos++);
+        }
+        return -1;
+    }
+
+    @Override
+    void unread() {
+        pos--;
+    }
+
+    /**
+     * Cerca l'a capo con String.indexOf quando possibile, senza leggere un carattere alla volta.
+     */
+    @Override
+    boolean skipLine() {
+        int newline = indexOf('\n', pos);
+        pos = newline < 0 ? limit : newline + 1;
+        return newline >= 0;
+    }
+
+    /**
+     * Cerca la chiusura del commento e conta gli a capo saltati con ricerche a blocco.
+     */
+    @Override
+    int skipBlockComment() {
+        int end = (text instanceof String) ? ((String) text).indexOf("*/", pos) : -1;
+        if (!(text instanceof String)) {
+            for (int i = pos; i + 1 < limit; i++) {
+                if (text.charAt(i) == '*' && text.charAt(i + 1) == '/') {
+                    end = i;
+                    break;
+                }
+            }
+        }
+        if (end < 0 || end + 2 > limit) {
+            pos = limit;
+            return -1;
+        }
+        int newlines = 0;
+        for (int i = indexOf('\n', pos); i >= 0 && i < end; i = indexOf('\n', i + 1)) {
+            newlines++;
+        }
+        pos = end + 2;
+        return newlines;
+    }
+
+    /**
+     * Cerca un carattere tra la posizione indicata e il limite della sorgente.
+     * @return L'offset del carattere, oppure -1 se non compare prima del limite.
+     */
+    private int indexOf(char c, int from) {
+        if (text instanceof String) {
+            int i = ((String) text).indexOf(c, from);
+            return i < limit ? i : -1;
+        }
+        for (int i = from; i < limit; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    int position() {
+        return pos;
+    }
+
+    @Override
+    CharSequence text() {
+        return text;
+    }
+
+    @Override
+    public void close() {
+        // Non ci sono risorse da rilasciare per un testo in memoria
+    }
+}
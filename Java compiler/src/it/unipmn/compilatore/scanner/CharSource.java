@@ -0,0 +1,82 @@
+package it.unipmn.compilatore.scanner;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Classe astratta che rappresenta la sorgente di caratteri letta dallo Scanner.
+ * <p>
+ * Nasconde allo Scanner il modo in cui il testo viene recuperato (lettura a blocchi
+ * da un Reader oppure accesso diretto ai byte di un file mappato in memoria), offrendo
+ * solo la lettura del prossimo carattere e la possibilità di "rimettere indietro"
+ * l'ultimo carattere letto, esattamente come faceva il vecchio PushbackReader.
+ * </p>
+ */
+abstract class CharSource implements Closeable {
+
+    /**
+     * Legge il prossimo carattere della sorgente.
+     * @return Il carattere letto, oppure -1 se la sorgente è terminata.
+     * @throws IOException Se la lettura dal supporto sottostante fallisce.
+     */
+    abstract int read() throws IOException;
+
+    /**
+     * Rimette nella sorgente l'ultimo carattere restituito da read().
+     * Può essere chiamato una sola volta dopo ogni lettura andata a buon fine (non dopo l'EOF).
+     */
+    abstract void unread();
+
+    /**
+     * Salta il resto di un commento di riga, fino all'a capo compreso.
+     * Le sottoclassi lo ridefiniscono per scorrere direttamente il proprio buffer.
+     * @return true se è stato consumato un a capo, false se la sorgente è finita prima.
+     * @throws IOException Se la lettura dal supporto sottostante fallisce.
+     */
+    boolean skipLine() throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Salta il resto di un commento a blocco, fino alla chiusura compresa.
+     * Le sottoclassi lo ridefiniscono per scorrere direttamente il proprio buffer.
+     * @return Il numero di a capo saltati, oppure -1 se la sorgente è finita prima della chiusura.
+     * @throws IOException Se la lettura dal supporto sottostante fallisce.
+     */
+    int skipBlockComment() throws IOException {
+        int newlines = 0;
+        boolean star = false;
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '/' && star) {
+                return newlines;
+            }
+            star = c == '*';
+            if (c == '\n') {
+                newlines++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Restituisce l'offset, dall'inizio della sorgente, del prossimo carattere che verrà letto.
+     * @return La posizione corrente nella sorgente.
+     */
+    abstract int position();
+
+    /**
+     * Restituisce l'intero testo della sorgente, se è disponibile in memoria,
+     * in modo che le posizioni restituite da position() lo indicizzino direttamente.
+     * @return Il testo della sorgente, oppure null se la sorgente è un flusso.
+     */
+    CharSequence text() {
+        return null;
+    }
+}
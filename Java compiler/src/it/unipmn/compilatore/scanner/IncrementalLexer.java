@@ -0,0 +1,105 @@
+package it.unipmn.compilatore.scanner;
+
+import it.unipmn.compilatore.exceptions.LexicalException;
+import it.unipmn.compilatore.token.TokenBuffer;
+import it.unipmn.compilatore.token.TokenType;
+import it.unipmn.compilatore.trace.Trace;
+
+/**
+ * Analizzatore lessicale incrementale, per ricompilare un sorgente dopo una piccola modifica.
+ * <p>
+ * Parte dai token della versione precedente, che conservano l'offset di ogni token nel testo.
+ * I token che terminano prima della modifica vengono copiati così come sono; la scansione
+ * riparte dalla fine dell'ultimo di essi e prosegue solo finché non incontra, oltre la
+ * modifica, un token che inizia esattamente dove iniziava un token della versione precedente.
+ * Da quel punto il testo è identico e anche l'automa è nello stato iniziale, quindi i token
+ * rimanenti coincidono con quelli vecchi: vengono copiati spostando offset e righe.
+ * La scansione costa quindi in proporzione alla dimensione della modifica, non del file.
+ * </p>
+ * <p>
+ * Il risultato è uguale a una scansione completa del nuovo testo, con una sola differenza
+ * voluta: la tabella degli identificatori è quella della versione precedente, estesa con i
+ * nomi nuovi, così un identificatore mantiene lo stesso id da una versione all'altra.
+ * </p>
+ */
+public final class IncrementalLexer {
+
+    // Numero di token riconosciuti dall'automa nell'ultima chiamata a relex
+    private int relexed;
+
+    /**
+     * Aggiorna i token dopo la sostituzione di un intervallo del testo.
+     * @param previous I token della versione precedente del sorgente.
+     * @param text Il testo dopo la modifica.
+     * @param editStart L'offset da cui inizia la modifica.
+     * @param removedLength Quanti caratteri del vecchio testo sono stati rimossi da editStart.
+     * @param insertedLength Quanti caratteri sono stati inseriti al loro posto.
+     * @return I token del nuovo testo, terminati dal token EOF.
+     * @throws LexicalException Se la parte riletta contiene un errore lessicale.
+     */
+    public TokenBuffer relex(TokenBuffer previous, CharSequence text,
+                             int editStart, int removedLength, int insertedLength) throws LexicalException {
+        int delta = insertedLength - removedLength;
+        int editEnd = editStart + insertedLength;
+        int oldSize = previous.size();
+
+        // Cerco l'ultimo token che termina prima della modifica: il carattere che lo segue
+        // non è cambiato, quindi nemmeno il token (l'EOF, ultimo, non viene mai tenuto)
+        int low = 0;
+        int high = oldSize - 2;
+        int kept = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (previous.start(mid) + previous.length(mid) < editStart) {
+                kept = mid + 1;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        TokenBuffer tokens = new TokenBuffer(text, previous.getIdentifiers());
+        tokens.addRange(previous, 0, kept, 0, 0);
+
+        // Riparto dalla fine dell'ultimo token tenuto, sulla stessa riga (un token non contiene a capo)
+        int from = kept > 0 ? previous.start(kept - 1) + previous.length(kept - 1) : 0;
+        CharSequenceSource source = new CharSequenceSource(text, from, text.length());
+        Lexer lexer = new Lexer(source, previous.getIdentifiers(), Trace.disabled());
+        lexer.setRiga(kept > 0 ? previous.riga(kept - 1) : 1);
+
+        relexed = 0;
+        int old = kept;
+        TokenType type;
+        do {
+            type = lexer.scan();
+            relexed++;
+            int start = lexer.getTokenStart();
+
+            if (start >= editEnd) {
+                // Oltre la modifica: cerco un token vecchio che inizi nello stesso punto del testo
+                int oldStart = start - delta;
+                while (old < oldSize && previous.start(old) < oldStart) {
+                    old++;
+                }
+                if (old < oldSize && previous.start(old) == oldStart) {
+                    tokens.addRange(previous, old, oldSize - old, delta, lexer.getTokenRiga() - previous.riga(old));
+                    return tokens;
+                }
+            }
+
+            tokens.add(type, lexer.getTokenRiga(), start, source.position() - start,
+                       type == TokenType.ID ? lexer.getTokenSymbolId() : -1);
+        } while (type != TokenType.EOF);
+
+        return tokens;
+    }
+
+    /**
+     * Restituisce quanti token sono stati riconosciuti dall'automa nell'ultima chiamata a relex,
+     * compreso quello su cui è avvenuta la risincronizzazione.
+     * @return Il numero di token riletti.
+     */
+    public int getRelexedCount() {
+        return relexed;
+    }
+}
@@ -0,0 +1,257 @@
+package it.unipmn.compilatore.scanner;
+
+import it.unipmn.compilatore.exceptions.LexicalException;
+import it.unipmn.compilatore.token.IdentifierTable;
+import it.unipmn.compilatore.token.TokenBuffer;
+import it.unipmn.compilatore.token.TokenType;
+import it.unipmn.compilatore.trace.Trace;
+
+import java.io.IOException;
+
+import static it.unipmn.compilatore.scanner.LexerTables.*;
+
+/**
+ * Motore dell'analisi lessicale guidato dalle tabelle di LexerTables.
+ * <p>
+ * Ogni token viene riconosciuto da un unico ciclo che classifica il carattere,
+ * segue la transizione dell'automa e si ferma alla prima transizione assente:
+ * lo stato raggiunto dice direttamente il tipo del token, parole chiave comprese.
+ * Lo Scanner resta la facciata pubblica e usa questo motore per scan() e tokenize().
+ * </p>
+ */
+final class Lexer {
+
+    // Sorgente dei caratteri, sostituibile quando lo Scanner carica in memoria un flusso
+    private CharSource source;
+    private final IdentifierTable identifiers;
+    // Traccia condivisa con lo Scanner, dove vengono annotati gli errori
+    private Trace trace;
+    private int riga;
+    // Caratteri del lessema corrente (numero o identificatore), riusati da un token all'altro
+    private char[] lexeme;
+    private int lexemeLength;
+    // Riga, offset di inizio e id internato dell'ultimo token riconosciuto
+    private int tokenRiga;
+    private int tokenStart;
+    private int tokenSymbolId;
+    // Vero se la sorgente è finita dentro un commento di riga
+    private boolean endedInLineComment;
+
+    Lexer(CharSource source, IdentifierTable identifiers, Trace trace) {
+        this.source = source;
+        this.identifiers = identifiers;
+        this.trace = trace;
+        this.riga = 1;
+        this.lexeme = new char[64];
+    }
+
+    CharSource getSource() {
+        return source;
+    }
+
+    void setSource(CharSource source) {
+        this.source = source;
+    }
+
+    void setTrace(Trace trace) {
+        this.trace = trace;
+    }
+
+    void setRiga(int riga) {
+        this.riga = riga;
+    }
+
+    int getRiga() {
+        return riga;
+    }
+
+    int getTokenRiga() {
+        return tokenRiga;
+    }
+
+    int getTokenStart() {
+        return tokenStart;
+    }
+
+    int getTokenSymbolId() {
+        return tokenSymbolId;
+    }
+
+    /**
+     * Crea il testo del lessema corrente.
+     * @return I caratteri dell'ultimo numero riconosciuto.
+     */
+    String lexemeText() {
+        return new String(lexeme, 0, lexemeLength);
+    }
+
+    /**
+     * Riconosce tutti i token rimanenti e li registra nel buffer compatto, EOF compreso.
+     * La sorgente deve avere il testo in memoria, perché il buffer ne ritaglia i lessemi.
+     * @param tokens Il buffer in cui aggiungere i token.
+     * @throws LexicalException Se viene letto un carattere non appartenente al linguaggio.
+     */
+    void tokenizeInto(TokenBuffer tokens) throws LexicalException {
+        TokenType type;
+        do {
+            type = scan();
+            tokens.add(type, tokenRiga, tokenStart, source.position() - tokenStart,
+                       type == TokenType.ID ? tokenSymbolId : -1);
+        } while (type != TokenType.EOF);
+    }
+
+    /**
+     * Riconosce il prossimo token senza creare oggetti.
+     * Salva riga e offset di inizio del token e, per numeri e identificatori,
+     * i caratteri letti nel vettore del lessema (per gli identificatori anche il loro id internato).
+     * @return Il tipo del token riconosciuto.
+     * @throws LexicalException Se viene letto un carattere non appartenente al linguaggio
+     *                          o un numero decimale malformato.
+     */
+    TokenType scan() throws LexicalException {
+        try {
+            int next;
+            int cls;
+
+            // Consumo spazi bianchi, a capo e commenti; spazi e a capo sono riconosciuti dalla tabella delle classi
+            while (true) {
+                next = source.read();
+                if (next == -1) {
+                    tokenRiga = riga;
+                    tokenStart = source.position();
+                    lexemeLength = 0;
+                    return TokenType.EOF;
+                }
+                cls = classOf(next);
+                if (cls == C_NEWLINE) {
+                    riga++;
+                } else if (next == '/' && skipComment()) {
+                    // Il commento è stato saltato in blocco, continuo a cercare il token
+                } else if (cls != C_SPACE) {
+                    break;
+                }
+            }
+
+            tokenRiga = riga;
+            tokenStart = source.position() - 1;
+            lexemeLength = 0;
+
+            // I simboli di un solo carattere si risolvono con un accesso alla tabella
+            if (cls == C_PUNCT) {
+                return PUNCT[next];
+            }
+
+            int state = DELTA[S_START * CLASSES + cls];
+            if (state == STOP) {
+                String msg = "Carattere non riconosciuto alla riga " + riga + ": " + (char) next;
+                if (trace.enabled(Trace.Level.ERROR)) {
+                    trace.append("ERRORE LESSICALE: ").append(msg).append("\n");
+                }
+                throw new LexicalException(msg);
+            }
+            appendLexeme((char) next);
+
+            // Seguo le transizioni finché l'automa non si ferma
+            while (true) {
+                next = source.read();
+                if (next == -1) {
+                    break;
+                }
+                int target = DELTA[state * CLASSES + classOf(next)];
+                if (target < 0) {
+                    if (target == ERROR_FRACTION) {
+                        throw error("I numeri float non possono avere più di "
+                                    + Scanner.MAX_FRACTION_DIGITS + " cifre decimali.");
+                    }
+                    // Rimetto nella sorgente il carattere che non fa parte del token
+                    source.unread();
+                    break;
+                }
+                state = target;
+                appendLexeme((char) next);
+            }
+
+            TokenType type = ACCEPT[state];
+            if (type == null) {
+                // Unico stato non finale raggiungibile: il punto senza cifre decimali
+                throw error("Formato float non valido (attese cifre decimali).");
+            }
+            if (type == TokenType.ID) {
+                tokenSymbolId = identifiers.intern(lexeme, lexemeLength);
+            }
+            return type;
+
+        } catch (IOException e) {
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append("Errore I/O critico durante la scansione.\n");
+            }
+            throw new LexicalException("Errore di I/O durante la scansione: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Dopo una '/' controlla se inizia un commento e in quel caso lo salta per intero,
+     * lasciando alla sorgente la ricerca della fine sul proprio buffer.
+     * @return true se è stato saltato un commento, false se la '/' è un operatore di divisione.
+     * @throws LexicalException Se un commento a blocco non viene chiuso.
+     * @throws IOException Se la lettura dalla sorgente fallisce.
+     */
+    private boolean skipComment() throws IOException {
+        int c = source.read();
+        if (c == '/') {
+            // Commento di riga: l'a capo finale fa parte del commento
+            if (source.skipLine()) {
+                riga++;
+            } else {
+                endedInLineComment = true;
+            }
+            return true;
+        }
+        if (c == '*') {
+            int newlines = source.skipBlockComment();
+            if (newlines < 0) {
+                throw error("Commento a blocco non chiuso.");
+            }
+            riga += newlines;
+            return true;
+        }
+        if (c != -1) {
+            source.unread();
+        }
+        return false;
+    }
+
+    /**
+     * Indica se la sorgente è terminata all'interno di un commento di riga.
+     * Serve al ParallelLexer per accorgersi di una porzione tagliata a metà di un commento.
+     * @return true se l'ultimo commento di riga non aveva l'a capo finale.
+     */
+    boolean endedInLineComment() {
+        return endedInLineComment;
+    }
+
+    /**
+     * Annota nel log un errore sul formato di un numero e crea l'eccezione corrispondente.
+     * @param msg La descrizione dell'errore.
+     * @return L'eccezione da lanciare.
+     */
+    private LexicalException error(String msg) {
+        if (trace.enabled(Trace.Level.ERROR)) {
+            trace.append("ERRORE: ").append(msg).append("\n");
+        }
+        return new LexicalException("Errore Lessicale alla riga " + riga + ": " + msg);
+    }
+
+    /**
+     * Aggiunge un carattere al lessema corrente, allargando il vettore se serve.
+     * @param c Il carattere da aggiungere.
+     */
+    private void appendLexeme(char c) {
+        if (lexemeLength == lexeme.length) {
+            char[] larger = new char[lexeme.length * 2];
+            System.arraycopy(lexeme, 0, larger, 0, lexemeLength);
+            lexeme = larger;
+        }
+        lexeme[lexemeLength++] = c;
+    }
+}
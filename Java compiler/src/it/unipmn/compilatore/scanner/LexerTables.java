@@ -0,0 +1,191 @@
+package it.unipmn.compilatore.scanner;
+
+import it.unipmn.compilatore.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tabelle dell'automa a stati finiti (DFA) usato dal Lexer.
+ * <p>
+ * Vengono costruite una sola volta a partire dalle grafie dichiarate in TokenType:
+ * ogni simbolo di un carattere diventa una voce della tabella dei simboli, mentre le
+ * parole chiave vengono inserite in un trie i cui nodi sono stati dell'automa.
+ * In questo modo una parola chiave viene riconosciuta durante la lettura stessa
+ * dell'identificatore, senza calcolare hash né confrontare stringhe.
+ * </p>
+ * <p>
+ * Ogni carattere ASCII viene prima tradotto in una classe (cifra, lettera, punto,
+ * spazio, ...). Le lettere che compaiono nelle parole chiave hanno ciascuna una classe
+ * propria, così la transizione è sempre un accesso a DELTA[stato * CLASSES + classe].
+ * </p>
+ */
+final class LexerTables {
+
+    // Classi di carattere fisse
+    static final int C_OTHER = 0;
+    static final int C_SPACE = 1;
+    static final int C_NEWLINE = 2;
+    static final int C_DIGIT = 3;
+    static final int C_DOT = 4;
+    static final int C_PUNCT = 5;
+    static final int C_LETTER = 6;
+
+    // Valori speciali della tabella di transizione
+    static final int STOP = -1;
+    static final int ERROR_FRACTION = -2;
+
+    // Stati fissi dell'automa; dopo le cifre decimali iniziano i nodi del trie delle parole chiave
+    static final int S_START = 0;
+    static final int S_ID = 1;
+    static final int S_INT = 2;
+    static final int S_DOT = 3;
+    static final int S_FRAC = 4;
+
+    // Classe di ogni carattere ASCII
+    static final byte[] CLASS = new byte[128];
+    // Tipo del token per i simboli di un solo carattere
+    static final TokenType[] PUNCT = new TokenType[128];
+    // Numero di classi e di stati
+    static final int CLASSES;
+    static final int STATES;
+    // Tabella di transizione e tipo accettato da ogni stato (null se lo stato non è finale)
+    static final int[] DELTA;
+    static final TokenType[] ACCEPT;
+
+    static {
+        CLASS[' '] = C_SPACE;
+        CLASS['\t'] = C_SPACE;
+        CLASS['\r'] = C_SPACE;
+        CLASS['\n'] = C_NEWLINE;
+        CLASS['.'] = C_DOT;
+        for (char c = '0'; c <= '9'; c++) {
+            CLASS[c] = C_DIGIT;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            CLASS[c] = C_LETTER;
+            CLASS[Character.toUpperCase(c)] = C_LETTER;
+        }
+
+        // Leggo la specifica: simboli nella tabella PUNCT, lettere delle parole chiave in classi dedicate
+        int classes = C_LETTER + 1;
+        List<TokenType> keywords = new ArrayList<>();
+        for (TokenType type : TokenType.values()) {
+            String spelling = type.getSpelling();
+            if (spelling == null) {
+                continue;
+            }
+            if (type.isKeyword()) {
+                keywords.add(type);
+                for (char c : spelling.toCharArray()) {
+                    if (c >= 128 || !Character.isLetterOrDigit(c)) {
+                        throw new IllegalStateException("Parola chiave non ASCII alfanumerica: " + spelling);
+                    }
+                    if (CLASS[c] == C_LETTER) {
+                        CLASS[c] = (byte) classes++;
+                    }
+                }
+            } else {
+                char c = spelling.charAt(0);
+                if (spelling.length() != 1 || c >= 128 || CLASS[c] != C_OTHER) {
+                    throw new IllegalStateException("Simbolo non supportato dall'automa: " + spelling);
+                }
+                CLASS[c] = C_PUNCT;
+                PUNCT[c] = type;
+            }
+        }
+        CLASSES = classes;
+
+        // Costruisco il trie delle parole chiave: ogni nodo è un nuovo stato
+        int firstTrieState = S_FRAC + Scanner.MAX_FRACTION_DIGITS;
+        List<int[]> children = new ArrayList<>();
+        List<TokenType> trieAccept = new ArrayList<>();
+        // Il nodo radice del trie coincide con lo stato iniziale
+        children.add(filled(CLASSES, -1));
+        trieAccept.add(null);
+        for (TokenType keyword : keywords) {
+            int node = 0;
+            for (char c : keyword.getSpelling().toCharArray()) {
+                int cls = CLASS[c];
+                if (children.get(node)[cls] < 0) {
+                    children.get(node)[cls] = children.size();
+                    children.add(filled(CLASSES, -1));
+                    trieAccept.add(null);
+                }
+                node = children.get(node)[cls];
+            }
+            trieAccept.set(node, keyword);
+        }
+        STATES = firstTrieState + children.size() - 1;
+
+        DELTA = filled(STATES * CLASSES, STOP);
+        ACCEPT = new TokenType[STATES];
+
+        // Stato iniziale: cifre verso i numeri, lettere verso gli identificatori o il trie
+        DELTA[S_START * CLASSES + C_DIGIT] = S_INT;
+        DELTA[S_START * CLASSES + C_LETTER] = S_ID;
+        for (int cls = C_LETTER + 1; cls < CLASSES; cls++) {
+            int child = children.get(0)[cls];
+            DELTA[S_START * CLASSES + cls] = child > 0 ? firstTrieState + child - 1 : S_ID;
+        }
+
+        // Identificatore generico: continua con qualsiasi lettera o cifra
+        ACCEPT[S_ID] = TokenType.ID;
+        for (int cls = C_DIGIT; cls < CLASSES; cls++) {
+            if (cls != C_DOT && cls != C_PUNCT) {
+                DELTA[S_ID * CLASSES + cls] = S_ID;
+            }
+        }
+
+        // Nodi del trie: seguono la parola chiave finché possibile, altrimenti diventano identificatori
+        for (int node = 1; node < children.size(); node++) {
+            int state = firstTrieState + node - 1;
+            ACCEPT[state] = trieAccept.get(node) != null ? trieAccept.get(node) : TokenType.ID;
+            for (int cls = C_DIGIT; cls < CLASSES; cls++) {
+                if (cls == C_DOT || cls == C_PUNCT) {
+                    continue;
+                }
+                int child = children.get(node)[cls];
+                DELTA[state * CLASSES + cls] = child > 0 ? firstTrieState + child - 1 : S_ID;
+            }
+        }
+
+        // Numeri: parte intera, punto e al massimo MAX_FRACTION_DIGITS cifre decimali
+        ACCEPT[S_INT] = TokenType.INT;
+        DELTA[S_INT * CLASSES + C_DIGIT] = S_INT;
+        DELTA[S_INT * CLASSES + C_DOT] = S_DOT;
+        DELTA[S_DOT * CLASSES + C_DIGIT] = S_FRAC;
+        for (int k = 0; k < Scanner.MAX_FRACTION_DIGITS; k++) {
+            int state = S_FRAC + k;
+            ACCEPT[state] = TokenType.FLOAT;
+            DELTA[state * CLASSES + C_DIGIT] =
+                    (k + 1 < Scanner.MAX_FRACTION_DIGITS) ? state + 1 : ERROR_FRACTION;
+        }
+    }
+
+    private LexerTables() {
+    }
+
+    /**
+     * Restituisce la classe di un carattere qualsiasi.
+     * I caratteri ASCII usano la tabella, gli altri ricadono sulle regole Unicode di Character.
+     * @param c Il carattere da classificare.
+     * @return La classe del carattere.
+     */
+    static int classOf(int c) {
+        if (c < 128) {
+            return CLASS[c];
+        }
+        if (Character.isDigit(c)) {
+            return C_DIGIT;
+        }
+        return Character.isLetter(c) ? C_LETTER : C_OTHER;
+    }
+
+    private static int[] filled(int length, int value) {
+        int[] array = new int[length];
+        Arrays.fill(array, value);
+        return array;
+    }
+}
@@ -0,0 +1,114 @@
+package it.unipmn.compilatore.scanner;
+
+import it.unipmn.compilatore.exceptions.LexicalException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sorgente di caratteri che legge un file mappato in memoria con FileChannel.map.
+ * <p>
+ * I byte vengono restituiti direttamente come caratteri ASCII, senza alcuna
+ * decodifica di charset: è la modalità più veloce per sorgenti grandi generate
+ * automaticamente. I byte non ASCII vengono passati così come sono (ISO-8859-1),
+ * quindi questa modalità va usata solo per sorgenti puramente ASCII.
+ * </p>
+ * <p>
+ * Il file viene mappato con una sola chiamata, quindi può occupare al massimo MAX_SIZE byte
+ * (Integer.MAX_VALUE, il limite di un MappedByteBuffer): così position() resta un int valido
+ * e text() espone sempre tutto il file, che tokenize() ritaglia senza copiarlo.
+ * Un file più grande viene rifiutato con una LexicalException prima di mapparlo.
+ * </p>
+ */
+final class MappedFileSource extends CharSource {
+
+    // Dimensione massima del file, pari a quella di una singola mappatura
+    static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer window;
+    private final int limit;
+    private int pos;
+
+    /**
+     * Costruttore della sorgente mappata.
+     * @param path Il percorso del file da leggere.
+     * @throws IOException Se il file non può essere aperto o mappato.
+     * @throws LexicalException Se il file supera MAX_SIZE byte.
+     */
+    MappedFileSource(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size > MAX_SIZE) {
+            channel.close();
+            throw new LexicalException("File troppo grande per la lettura mappata: " + path + " occupa "
+                    + size + " byte, il massimo è " + MAX_SIZE);
+        }
+        this.window = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        this.limit = (int) size;
+    }
+
+    @Override
+    int read() {
+        if (pos < limit) {
+            return window.get(pos++) & 0xFF;
+        }
+        return -1;
+    }
+
+    @Override
+    void unread() {
+        pos--;
+    }
+
+    /**
+     * Scorre il file mappato con letture assolute fino all'a capo.
+     */
+    @Override
+    boolean skipLine() {
+        while (pos < limit) {
+            if (window.get(pos++) == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scorre il file mappato fino alla chiusura del commento, contando gli a capo.
+     */
+    @Override
+    int skipBlockComment() {
+        int newlines = 0;
+        boolean star = false;
+        while (pos < limit) {
+            byte b = window.get(pos++);
+            if (b == '/' && star) {
+                return newlines;
+            }
+            star = b == '*';
+            if (b == '\n') {
+                newlines++;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    int position() {
+        return pos;
+    }
+
+    @Override
+    CharSequence text() {
+        return new AsciiSequence(window, 0, limit);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,169 @@
+package it.unipmn.compilatore.scanner;
+
+import it.unipmn.compilatore.exceptions.LexicalException;
+import it.unipmn.compilatore.token.IdentifierTable;
+import it.unipmn.compilatore.token.TokenBuffer;
+import it.unipmn.compilatore.trace.Trace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Analizzatore lessicale parallelo per sorgenti molto grandi già presenti in memoria.
+ * <p>
+ * Ogni istruzione del linguaggio termina con ';' e nessun token può contenere quel
+ * carattere, quindi il testo viene diviso in porzioni subito dopo un ';' e ogni porzione
+ * viene analizzata da un Lexer indipendente su un ForkJoinPool.
+ * Un ';' può però comparire dentro un commento: se una porzione termina all'interno di un
+ * commento, il taglio non era valido e il testo viene analizzato in modo sequenziale.
+ * I risultati vengono poi ricuciti in ordine: le righe di ogni porzione vengono spostate
+ * del numero di a capo delle porzioni precedenti e gli id degli identificatori vengono
+ * reinternati nella tabella comune, nello stesso ordine di prima apparizione della
+ * scansione sequenziale. Il TokenBuffer ottenuto è quindi identico a quello di Scanner.tokenize().
+ * </p>
+ */
+public final class ParallelLexer {
+
+    /**
+     * Dimensione minima, in caratteri, di una porzione: sotto questa soglia non conviene dividere.
+     */
+    public static final int MIN_CHUNK = 1 << 16;
+    // Porzioni per thread, per bilanciare il carico quando alcune porzioni sono più lente
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Crea un analizzatore che usa il pool comune della JVM.
+     */
+    public ParallelLexer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Crea un analizzatore che usa il pool indicato (ad esempio per limitare i thread).
+     * @param pool Il pool su cui eseguire le porzioni.
+     */
+    public ParallelLexer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Analizza tutto il testo e restituisce i token in forma compatta.
+     * @param text Il testo sorgente.
+     * @return Il buffer con tutti i token, terminato dal token EOF.
+     * @throws LexicalException Se il testo contiene un errore lessicale, con lo stesso
+     *                          messaggio che darebbe la scansione sequenziale.
+     */
+    public TokenBuffer tokenize(CharSequence text) throws LexicalException {
+        int[] bounds = split(text);
+        if (bounds.length == 2) {
+            return Scanner.fromText(text).tokenize();
+        }
+
+        // Avvio una scansione indipendente per ogni porzione
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int k = 0; k + 1 < bounds.length; k++) {
+            int from = bounds[k];
+            int to = bounds[k + 1];
+            tasks.add(() -> Chunk.scan(text, from, to));
+        }
+        List<Future<Chunk>> futures = pool.invokeAll(tasks);
+
+        IdentifierTable identifiers = new IdentifierTable();
+        TokenBuffer tokens = new TokenBuffer(text, identifiers);
+        int rigaOffset = 0;
+        for (int k = 0; k < futures.size(); k++) {
+            Chunk chunk = get(futures.get(k));
+            if (chunk.error != null || (chunk.inComment && k < futures.size() - 1)) {
+                // Il messaggio contiene la riga relativa alla porzione, oppure il taglio è caduto
+                // in un commento: ripeto la scansione sequenziale, che dà il risultato corretto
+                return Scanner.fromText(text).tokenize();
+            }
+
+            // Reinterno i nomi nell'ordine in cui la porzione li ha incontrati
+            IdentifierTable local = chunk.identifiers;
+            int[] idMap = new int[local.size()];
+            for (int id = 0; id < idMap.length; id++) {
+                idMap[id] = identifiers.intern(local.name(id));
+            }
+
+            // L'EOF di ogni porzione va tenuto solo per l'ultima
+            boolean last = k == futures.size() - 1;
+            int count = last ? chunk.tokens.size() : chunk.tokens.size() - 1;
+            tokens.addAll(chunk.tokens, count, rigaOffset, idMap);
+            rigaOffset += chunk.newlines;
+        }
+        return tokens;
+    }
+
+    /**
+     * Calcola i confini delle porzioni, ognuno subito dopo un ';'.
+     * @param text Il testo sorgente.
+     * @return Gli offset di inizio delle porzioni, seguiti dalla lunghezza del testo.
+     */
+    private int[] split(CharSequence text) {
+        int length = text.length();
+        int chunks = (int) Math.min((long) pool.getParallelism() * CHUNKS_PER_THREAD,
+                                    Math.max(1, length / MIN_CHUNK));
+        int[] bounds = new int[chunks + 1];
+        int count = 1;
+        for (int k = 1; k < chunks; k++) {
+            int pos = Math.max((int) ((long) length * k / chunks), bounds[count - 1]);
+            while (pos < length && text.charAt(pos) != ';') {
+                pos++;
+            }
+            if (pos >= length - 1) {
+                break;
+            }
+            bounds[count++] = pos + 1;
+        }
+        bounds[count++] = length;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static Chunk get(Future<Chunk> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LexicalException("Scansione parallela interrotta.");
+        } catch (ExecutionException e) {
+            throw new LexicalException("Errore durante la scansione parallela: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Risultato della scansione di una porzione del testo.
+     */
+    private static final class Chunk {
+        private final IdentifierTable identifiers = new IdentifierTable();
+        private TokenBuffer tokens;
+        private int newlines;
+        private LexicalException error;
+        private boolean inComment;
+
+        /**
+         * Analizza la porzione [from, to) del testo con un Lexer indipendente.
+         * Le righe partono da 1 e gli id dalla tabella locale: vengono corretti in fase di ricucitura.
+         */
+        static Chunk scan(CharSequence text, int from, int to) {
+            Chunk chunk = new Chunk();
+            chunk.tokens = new TokenBuffer(text, chunk.identifiers);
+            Lexer lexer = new Lexer(new CharSequenceSource(text, from, to), chunk.identifiers, Trace.disabled());
+            try {
+                lexer.tokenizeInto(chunk.tokens);
+            } catch (LexicalException e) {
+                chunk.error = e;
+            }
+            chunk.newlines = lexer.getRiga() - 1;
+            chunk.inComment = lexer.endedInLineComment();
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package it.unipmn.compilatore.scanner;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Sorgente di caratteri che legge da un Reader a blocchi.
+ * <p>
+ * Invece di chiedere al Reader un carattere alla volta (una chiamata virtuale e
+ * sincronizzata per ogni carattere), riempio un array interno con una sola lettura
+ * di blocco e poi servo i caratteri direttamente dall'array.
+ * </p>
+ */
+final class ReaderSource extends CharSource {
+
+    // Dimensione predefinita del blocco letto a ogni ricarica
+    static final int DEFAULT_BLOCK = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buf;
+    // Posizione del prossimo carattere da restituire e numero di caratteri validi nel buffer
+    private int pos;
+    private int limit;
+    // Numero di caratteri della sorgente che precedono la cella 0 del buffer
+    private int base;
+
+    /**
+     * Costruttore della sorgente bufferizzata.
+     * @param reader Il Reader da cui leggere il testo.
+     * @param blockSize La dimensione del blocco di lettura.
+     */
+    ReaderSource(Reader reader, int blockSize) {
+        this.reader = reader;
+        // Riservo una cella in più per conservare l'ultimo carattere del blocco precedente
+        this.buf = new char[blockSize + 1];
+        this.pos = 0;
+        this.limit = 0;
+    }
+
+    @Override
+    int read() throws IOException {
+        if (pos < limit) {
+            return buf[pos++];
+        }
+        return fill();
+    }
+
+    @Override
+    void unread() {
+        pos--;
+    }
+
+    /**
+     * Cerca l'a capo direttamente nel blocco caricato, ricaricando solo quando il blocco finisce.
+     */
+    @Override
+    boolean skipLine() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                if (buf[pos++] == '\n') {
+                    return true;
+                }
+            }
+            if (fill() == -1) {
+                return false;
+            }
+            // fill() ha già consumato il primo carattere del nuovo blocco: lo faccio riesaminare
+            pos--;
+        }
+    }
+
+    /**
+     * Cerca la chiusura del commento direttamente nel blocco caricato, contando gli a capo.
+     */
+    @Override
+    int skipBlockComment() throws IOException {
+        int newlines = 0;
+        boolean star = false;
+        while (true) {
+            while (pos < limit) {
+                char c = buf[pos++];
+                if (c == '/' && star) {
+                    return newlines;
+                }
+                star = c == '*';
+                if (c == '\n') {
+                    newlines++;
+                }
+            }
+            if (fill() == -1) {
+                return -1;
+            }
+            pos--;
+        }
+    }
+
+    @Override
+    int position() {
+        return base + pos;
+    }
+
+    /**
+     * Ricarica il buffer con un nuovo blocco di caratteri.
+     * Copio in testa l'ultimo carattere del blocco precedente, così unread() resta
+     * valido anche quando la lettura ha appena attraversato il confine tra due blocchi.
+     * @return Il primo carattere del nuovo blocco, oppure -1 se il Reader è terminato.
+     */
+    private int fill() throws IOException {
+        int keep = limit > 0 ? 1 : 0;
+        char last = keep == 1 ? buf[limit - 1] : 0;
+        int n = reader.read(buf, keep, buf.length - keep);
+        if (n <= 0) {
+            // Lascio le posizioni com'erano, così letture successive continuano a restituire EOF
+            pos = limit;
+            return -1;
+        }
+        if (keep == 1) {
+            buf[0] = last;
+            base += limit - 1;
+        }
+        pos = keep;
+        limit = keep + n;
+        return buf[pos++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
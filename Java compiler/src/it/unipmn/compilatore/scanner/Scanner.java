@@ -1,63 +1,142 @@
 package it.unipmn.compilatore.scanner;
 
 import it.unipmn.compilatore.exceptions.LexicalException;
+import it.unipmn.compilatore.token.IdentifierTable;
 import it.unipmn.compilatore.token.Token;
+import it.unipmn.compilatore.token.TokenBuffer;
 import it.unipmn.compilatore.token.TokenType;
+import it.unipmn.compilatore.trace.Trace;
 
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.PushbackReader;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 
 /**
  * Classe che implementa l'analizzatore lessicale (Scanner).
  * Legge il file di testo sorgente carattere per carattere e raggruppa 
  * i caratteri in entità logiche chiamate Token (parole chiave, numeri, simboli).
- * Mantiene un log delle operazioni per il debug.
+ * Il riconoscimento vero e proprio è svolto da un automa a tabelle (Lexer) costruito
+ * dalle grafie dichiarate in TokenType; lo Scanner ne è la facciata pubblica.
+ * I caratteri arrivano da una CharSource, che legge il file a blocchi oppure
+ * lo mappa direttamente in memoria.
+ * Le operazioni vengono annotate su una Trace, disabilitata se non ne viene impostata una.
  */
 public class Scanner {
 
-    // Definisco i caratteri di spaziatura che lo scanner deve ignorare
-    private static final String SKIP_CHARS = " \t\n\r";
+    /**
+     * Numero massimo di cifre decimali ammesse in un numero float.
+     */
+    public static final int MAX_FRACTION_DIGITS = 5;
 
     private final String fileName;
-    // Uso un PushbackReader per poter "rimettere dentro" i caratteri letti in eccesso
-    private final PushbackReader buffer;
-    private int riga;
-    private final Map<String, TokenType> keywordsMap;
-    // StringBuilder per accumulare la storia dei token letti ed eventuali errori
-    private StringBuilder log;
+    // Motore a tabelle che riconosce i token leggendo dalla sorgente di caratteri
+    private final Lexer lexer;
+    // Tabella che assegna un id intero a ogni identificatore distinto
+    private final IdentifierTable identifiers;
+    // Traccia su cui annotare i token letti e gli errori lessicali
+    private Trace trace;
 
     /**
      * Costruttore dello scanner.
-     * Prepara il file per la lettura e inizializza il dizionario delle parole riservate.
+     * Prepara il file per la lettura a blocchi.
      * @param fileName Il percorso del file di testo da compilare.
      * @throws FileNotFoundException Se il file specificato non viene trovato.
      */
     public Scanner(String fileName) throws FileNotFoundException {
-        this.buffer = new PushbackReader(new FileReader(fileName));
+        this(new ReaderSource(new FileReader(fileName), ReaderSource.DEFAULT_BLOCK), fileName);
+    }
+
+    /**
+     * Costruttore dello scanner con scelta della modalità di lettura.
+     * In modalità mappata il file viene letto con FileChannel.map e i byte vengono
+     * interpretati direttamente come caratteri ASCII, senza decodifica del charset.
+     * @param fileName Il percorso del file di testo da compilare.
+     * @param memoryMapped true per mappare il file in memoria, false per la lettura a blocchi.
+     * @throws IOException Se il file non viene trovato o non può essere mappato.
+     */
+    public Scanner(String fileName, boolean memoryMapped) throws IOException {
+        this(memoryMapped ? new MappedFileSource(Path.of(fileName))
+                          : new ReaderSource(new FileReader(fileName), ReaderSource.DEFAULT_BLOCK), fileName);
+    }
+
+    /**
+     * Crea uno scanner che legge un programma già presente in memoria.
+     * @param text Il testo sorgente da analizzare.
+     * @return Lo scanner posizionato all'inizio del testo.
+     */
+    public static Scanner fromText(CharSequence text) {
+        return new Scanner(new CharSequenceSource(text), "<memoria>");
+    }
+
+    /**
+     * Crea uno scanner che legge il programma da un Reader qualsiasi.
+     * Il Reader viene letto a blocchi e chiuso dal metodo close() dello scanner.
+     * @param reader Il Reader che fornisce il testo sorgente.
+     * @return Lo scanner posizionato all'inizio del flusso.
+     */
+    public static Scanner fromReader(Reader reader) {
+        return new Scanner(new ReaderSource(reader, ReaderSource.DEFAULT_BLOCK), "<reader>");
+    }
+
+    /**
+     * Crea uno scanner che legge i byte ASCII di un ByteBuffer, dalla sua posizione al suo limite.
+     * @param buffer Il buffer che contiene il testo sorgente.
+     * @return Lo scanner posizionato all'inizio del buffer.
+     */
+    public static Scanner fromBuffer(ByteBuffer buffer) {
+        return new Scanner(new ByteBufferSource(buffer), "<buffer>");
+    }
+
+    /**
+     * Costruttore interno che collega lo scanner a una sorgente di caratteri già aperta.
+     * @param source La sorgente da cui leggere i caratteri.
+     * @param fileName Il nome della sorgente, usato nella traccia.
+     */
+    private Scanner(CharSource source, String fileName) {
         this.fileName = fileName;
-        // Inizializzo il contatore delle righe partendo dalla prima
-        this.riga = 1;
-        this.log = new StringBuilder();
+        this.trace = Trace.disabled();
+        this.identifiers = new IdentifierTable();
+        this.lexer = new Lexer(source, identifiers, trace);
+    }
 
-        // Popolo la mappa associando ogni stringa riservata al suo tipo di Token corrispondente
-        this.keywordsMap = new HashMap<>();
-        this.keywordsMap.put("print", TokenType.PRINT);
-        this.keywordsMap.put("int", TokenType.TYINT);
-        this.keywordsMap.put("float", TokenType.TYFLOAT);
-        
-        log.append("Scanner inizializzato sul file: ").append(fileName).append("\n");
+    /**
+     * Collega lo scanner a una traccia, che verrà condivisa anche dal Parser costruito su di esso.
+     * @param trace La traccia su cui annotare le operazioni lessicali.
+     */
+    public void setTrace(Trace trace) {
+        this.trace = trace;
+        lexer.setTrace(trace);
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Scanner inizializzato su: ").append(fileName).append("\n");
+        }
     }
 
     /**
-     * Restituisce il log delle operazioni lessicali.
-     * @return La stringa con i log.
+     * Restituisce la traccia usata dallo scanner.
+     * @return La traccia, disabilitata se non ne è stata impostata una.
+     */
+    public Trace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Restituisce il log delle operazioni, cioè il contenuto della traccia se è tenuta in memoria.
+     * @return La stringa con i log, vuota se la traccia è disabilitata o scritta su file.
      */
     public String getLog() {
-        return log.toString();
+        return trace.toString();
+    }
+
+    /**
+     * Restituisce la tabella degli identificatori incontrati finora.
+     * Gli id dei token ID e dei nodi NodeId si riferiscono a questa tabella.
+     * @return La tabella degli identificatori.
+     */
+    public IdentifierTable getIdentifiers() {
+        return identifiers;
     }
 
     /**
@@ -65,7 +144,7 @@ public class Scanner {
      * @return Il numero di riga.
      */
     public int getRiga() {
-        return riga;
+        return lexer.getRiga();
     }
 
     /**
@@ -73,10 +152,14 @@ public class Scanner {
      */
     public void close() {
         try {
-            buffer.close();
-            log.append("Scanner chiuso correttamente.\n");
+            lexer.getSource().close();
+            if (trace.enabled(Trace.Level.PHASE)) {
+                trace.append("Scanner chiuso correttamente.\n");
+            }
         } catch (IOException e) {
-            log.append("Errore nella chiusura del file.\n");
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append("Errore nella chiusura del file.\n");
+            }
             System.err.println("Errore nella chiusura del file: " + e.getMessage());
         }
     }
@@ -89,192 +172,85 @@ public class Scanner {
      * @throws LexicalException Se viene letto un carattere non appartenente al linguaggio.
      */
     public Token nextToken() throws LexicalException {
-        try {
-            int next;
-
-            // Itero per consumare tutti gli spazi bianchi e gli a capo prima del prossimo token
-            while (true) {
-                next = buffer.read();
-
-                if (next == -1) {
-                    log.append("Raggiunta fine file (EOF).\n");
-                    // Restituisco il token speciale End Of File se il file è terminato
-                    return new Token(TokenType.EOF, riga);
+        TokenType type = lexer.scan();
+        int tokenRiga = lexer.getTokenRiga();
+        Token t;
+
+        switch (type) {
+            case EOF:
+                if (trace.enabled(Trace.Level.DETAIL)) {
+                    trace.append("Raggiunta fine file (EOF).\n");
                 }
-
-                char c = (char) next;
-
-                // Verifico se il carattere letto fa parte di quelli da saltare
-                if (SKIP_CHARS.indexOf(c) != -1) {
-                    if (c == '\n') {
-                        // Incremento il contatore quando incontro un carattere di a capo
-                        riga++; 
-                    }
-                } else {
-                    // Ho trovato un carattere significativo, interrompo la lettura degli spazi
-                    break; 
+                // Restituisco il token speciale End Of File se il file è terminato
+                return new Token(TokenType.EOF, tokenRiga);
+            case INT:
+            case FLOAT:
+                // Solo numeri e identificatori hanno bisogno del testo letto
+                t = new Token(type, tokenRiga, lexer.lexemeText());
+                if (trace.enabled(Trace.Level.DETAIL)) {
+                    trace.append("Letto numero: ").append(t).append("\n");
                 }
-            }
-
-            char c = (char) next;
-
-            if (Character.isDigit(c)) {
-                // Rimetto il primo numero nel buffer per farlo elaborare per intero da scanNumber
-                buffer.unread(next); 
-                return scanNumber();
-            }
-            else if (Character.isLetter(c)) {
-                // Rimetto la prima lettera nel buffer per delegare la costruzione a scanId
-                buffer.unread(next);
-                return scanId();
-            }
-
-            // Associo direttamente i simboli composti da un solo carattere al loro Token
-            Token t = null;
-            switch (c) {
-                case ';': t = new Token(TokenType.SEMI, riga); break;
-                case '/': t = new Token(TokenType.DIVIDE, riga); break;
-                case '*': t = new Token(TokenType.TIMES, riga); break;
-                case '-': t = new Token(TokenType.MINUS, riga); break;
-                case '+': t = new Token(TokenType.PLUS, riga); break;
-                case '=': t = new Token(TokenType.ASSIGN, riga); break;
-                case '(': t = new Token(TokenType.LPAREN, riga); break;
-                case ')': t = new Token(TokenType.RPAREN, riga); break;
-                default:
-                    String msg = "Carattere non riconosciuto alla riga " + riga + ": " + c;
-                    log.append("ERRORE LESSICALE: ").append(msg).append("\n");
-                    throw new LexicalException(msg);
-            }
-            
-            log.append("Letto simbolo: ").append(t).append("\n");
-            return t;
-
-        } catch (IOException e) {
-            log.append("Errore I/O critico durante la scansione.\n");
-            throw new LexicalException("Errore di I/O durante la scansione: " + e.getMessage());
-        }
-    }
-
-    /**
-     * Costruisce un token di tipo numerico, distinguendo tra interi e decimali.
-     * @return Il Token numerico (INT o FLOAT).
-     * @throws LexicalException Se il formato del numero decimale non è corretto.
-     */
-    private Token scanNumber() throws LexicalException {
-        // Uso StringBuilder per accumulare progressivamente le cifre del numero
-        StringBuilder sb = new StringBuilder();
-        int next;
-
-        try {
-            // Itero per estrarre tutte le cifre che compongono la parte intera del numero
-            while (true) {
-                next = buffer.read();
-                if (next == -1) break;
-                
-                char c = (char) next;
-                if (Character.isDigit(c)) {
-                    // Aggiungo la cifra alla stringa in costruzione
-                    sb.append(c);
-                } else {
-                    // Non è più una cifra, esco dal ciclo
-                    break;
+                return t;
+            case ID:
+                // Il nome arriva già internato: nessuna nuova stringa per un identificatore già visto
+                int symbolId = lexer.getTokenSymbolId();
+                t = new Token(type, tokenRiga, identifiers.name(symbolId), symbolId);
+                if (trace.enabled(Trace.Level.DETAIL)) {
+                    trace.append("Letto identificatore: ").append(t).append("\n");
                 }
-            }
-
-            Token t;
-            // Verifico se il numero ha una virgola (punto), il che lo rende un float
-            if (next != -1 && (char) next == '.') {
-                sb.append('.');
-                int decimalDigits = 0;
-
-                // Itero per leggere tutte le cifre della parte decimale
-                while (true) {
-                    next = buffer.read();
-                    if (next == -1) break;
-                    
-                    char c = (char) next;
-                    if (Character.isDigit(c)) {
-                        decimalDigits++;
-                        
-                        // Limito la precisione massima a 5 cifre decimali
-                        if (decimalDigits > 5) {
-                            String msg = "I numeri float non possono avere più di 5 cifre decimali.";
-                            log.append("ERRORE: ").append(msg).append("\n");
-                            throw new LexicalException("Errore Lessicale alla riga " + riga + ": " + msg);
-                        }
-                        sb.append(c);
-                    } else {
-                        break;
-                    }
+                return t;
+            case TYINT:
+            case TYFLOAT:
+            case PRINT:
+                t = new Token(type, tokenRiga);
+                if (trace.enabled(Trace.Level.DETAIL)) {
+                    trace.append("Letta keyword: ").append(t).append("\n");
                 }
-
-                if (decimalDigits == 0) {
-                    String msg = "Formato float non valido (attese cifre decimali).";
-                    log.append("ERRORE: ").append(msg).append("\n");
-                    throw new LexicalException("Errore Lessicale alla riga " + riga + ": " + msg);
+                return t;
+            default:
+                t = new Token(type, tokenRiga);
+                if (trace.enabled(Trace.Level.DETAIL)) {
+                    trace.append("Letto simbolo: ").append(t).append("\n");
                 }
-
-                // Rimetto nel buffer l'ultimo carattere letto perché non fa parte del numero
-                if (next != -1) buffer.unread(next);
-                t = new Token(TokenType.FLOAT, riga, sb.toString());
-
-            } else {
-                // Rimetto nel buffer l'ultimo carattere e restituisco il numero come intero
-                if (next != -1) buffer.unread(next);
-                t = new Token(TokenType.INT, riga, sb.toString());
-            }
-
-            log.append("Letto numero: ").append(t).append("\n");
-            return t;
-
-        } catch (IOException e) {
-            throw new LexicalException("Errore di I/O durante la lettura del numero: " + e.getMessage());
+                return t;
         }
     }
 
     /**
-     * Costruisce un token testuale analizzando se si tratta di una variabile o di una parola chiave.
-     * @return Il Token testuale (ID o parola chiave).
+     * Analizza tutto il resto della sorgente e restituisce i token in forma compatta.
+     * <p>
+     * Al posto di un oggetto Token per ogni occorrenza, ogni token viene registrato
+     * nei vettori primitivi di un TokenBuffer (tipo, riga, offset e lunghezza).
+     * Il testo di identificatori e numeri non viene copiato: il buffer lo ritaglia
+     * dal sorgente solo quando qualcuno lo richiede.
+     * Se la sorgente è un flusso (Reader), il testo rimanente viene prima caricato in memoria.
+     * </p>
+     * @return Il buffer con tutti i token, terminato dal token EOF.
+     * @throws LexicalException Se viene letto un carattere non appartenente al linguaggio.
      */
-    private Token scanId() throws LexicalException {
-        StringBuilder sb = new StringBuilder();
-        int next;
-
+    public TokenBuffer tokenize() throws LexicalException {
         try {
-            // Itero per estrarre lettere o numeri che formano l'identificatore
-            while (true) {
-                next = buffer.read();
-                if (next == -1) break;
-                
-                char c = (char) next;
-                if (Character.isLetterOrDigit(c)) {
-                    sb.append(c);
-                } else {
-                    // Il nome è terminato, esco dal ciclo
-                    break;
+            CharSource buffer = lexer.getSource();
+            if (buffer.text() == null) {
+                // Un flusso non si può ritagliare a posteriori: lo copio una volta in memoria
+                StringBuilder rest = new StringBuilder();
+                int c;
+                while ((c = buffer.read()) != -1) {
+                    rest.append((char) c);
                 }
+                buffer.close();
+                lexer.setSource(new CharSequenceSource(rest));
             }
+        } catch (IOException e) {
+            throw new LexicalException("Errore di I/O durante la lettura della sorgente: " + e.getMessage());
+        }
 
-            // Rimetto nel buffer il carattere che ha fatto interrompere il ciclo
-            if (next != -1) buffer.unread(next);
-
-            // Converto i caratteri accumulati in una parola finale
-            String word = sb.toString();
-            Token t;
-
-            // Interrogo la mappa per scoprire se la parola appena letta ha un significato speciale
-            if (keywordsMap.containsKey(word)) {
-                t = new Token(keywordsMap.get(word), riga);
-                log.append("Letta keyword: ").append(t).append("\n");
-            } else {
-                // Altrimenti, la considero come un normale nome di variabile
-                t = new Token(TokenType.ID, riga, word);
-                log.append("Letto identificatore: ").append(t).append("\n");
-            }
-            return t;
+        TokenBuffer tokens = new TokenBuffer(lexer.getSource().text(), identifiers);
+        lexer.tokenizeInto(tokens);
 
-        } catch (IOException e) {
-            throw new LexicalException("Errore di I/O durante la scansione dell'identificatore: " + e.getMessage());
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Tokenizzazione compatta completata: ").append(tokens.size()).append(" token.\n");
         }
+        return tokens;
     }
-}
\ No newline at end of file
+}
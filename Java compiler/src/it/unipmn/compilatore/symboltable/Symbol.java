@@ -12,7 +12,9 @@ public class Symbol {
     // Il tipo della variabile (ad esempio LangType.INT o LangType.FLOAT)
     private final LangType type;
     // Il carattere che rappresenta il registro di memoria nella calcolatrice dc (es. 'a', 'b')
-    private final char register;
+    private char register;
+    // La posizione nell'array di appoggio di dc quando i registri sono esauriti (-1 se la variabile ha un registro)
+    private int slot = -1;
 
     /**
      * Costruttore completo per creare un simbolo con tipo e registro.
@@ -53,4 +55,30 @@ public class Symbol {
     public char getRegister() {
         return register;
     }
+
+    /**
+     * Assegna il registro della calcolatrice 'dc' alla variabile.
+     * Lo usa il generatore di codice sui simboli già legati ai nodi dal controllo dei tipi.
+     * @param register Il carattere del registro.
+     */
+    public void setRegister(char register) {
+        this.register = register;
+        this.slot = -1;
+    }
+
+    /**
+     * Restituisce la posizione della variabile nell'array di appoggio, se non ha un registro proprio.
+     * @return L'indice nell'array, oppure -1 se la variabile vive in un registro.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Sposta la variabile nell'array di appoggio della calcolatrice 'dc'.
+     * @param slot L'indice della variabile nell'array.
+     */
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
 }
\ No newline at end of file
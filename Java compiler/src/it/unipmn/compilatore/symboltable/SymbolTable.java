@@ -1,47 +1,121 @@
 package it.unipmn.compilatore.symboltable;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
+import it.unipmn.compilatore.ast.NodeId;
+
+import java.util.Arrays;
 
 /**
- * Classe che gestisce la tabella dei simboli organizzata a stack.
- * Serve per supportare gli scope, ovvero gli ambiti di visibilità delle variabili.
- * Utilizzo uno stack di mappe: la mappa in cima rappresenta lo scope più interno (locale),
- * mentre la mappa in fondo rappresenta lo scope globale.
+ * Classe che gestisce la tabella dei simboli con il supporto agli scope,
+ * ovvero gli ambiti di visibilità delle variabili.
+ * <p>
+ * Invece di una mappa per ogni scope, uso un'unica tabella hash a indirizzamento aperto
+ * con una voce per ogni nome: la voce contiene solo il simbolo visibile in questo momento
+ * e la profondità dello scope che lo ha dichiarato. Quando uno scope interno nasconde una
+ * variabile esterna, il simbolo precedente viene salvato in un registro di annullamento
+ * (undo log); all'uscita dallo scope le voci del registro vengono ripristinate in ordine
+ * inverso. Così la ricerca costa un solo accesso alla tabella a qualunque profondità, e
+ * aprire uno scope non alloca nulla.
+ * </p>
+ * <p>
+ * Accanto alla tabella tengo un vettore indicizzato per id dell'identificatore: quando un
+ * NodeId porta l'id internato dallo Scanner, la sua voce si trova con un accesso a vettore,
+ * senza calcolare l'hash della stringa.
+ * </p>
  */
 public class SymbolTable {
 
-    // Stack che contiene le mappe di variabili per ogni livello di scope
-    private final Stack<Map<String, Symbol>> scopes;
+    // Tabella hash: ogni cella contiene l'indice della voce più uno (zero indica una cella vuota)
+    private int[] slots;
+    // Nome, hash, simbolo visibile e profondità della dichiarazione di ogni voce
+    private String[] names;
+    private int[] hashes;
+    private Symbol[] symbols;
+    private int[] depths;
+    private int size;
+
+    // Per ogni id dell'identificatore, l'indice della voce più uno (zero se non ancora noto)
+    private int[] idEntries;
+
+    // Registro di annullamento: voce modificata, simbolo e profondità da ripristinare
+    private int[] undoEntries;
+    private Symbol[] undoSymbols;
+    private int[] undoDepths;
+    private int undoSize;
+    // Per ogni scope aperto, la lunghezza del registro al momento dell'apertura
+    private int[] marks;
+    private int depth;
 
     /**
      * Costruttore della Symbol Table.
-     * Prepara la struttura dati e attiva subito il primo livello, ovvero lo scope globale.
+     * Prepara la struttura dati con il solo scope globale attivo.
      */
     public SymbolTable() {
-        this.scopes = new Stack<>();
-        // Creo subito il primo scope richiamando il metodo apposito
-        enterScope();
+        this.slots = new int[64];
+        this.names = new String[32];
+        this.hashes = new int[32];
+        this.symbols = new Symbol[32];
+        this.depths = new int[32];
+        this.idEntries = new int[0];
+        this.undoEntries = new int[16];
+        this.undoSymbols = new Symbol[16];
+        this.undoDepths = new int[16];
+        this.marks = new int[8];
+        this.depth = 0;
+    }
+
+    /**
+     * Crea una copia indipendente della tabella, con gli stessi scope e gli stessi simboli.
+     * Le modifiche successive a una delle due tabelle non si riflettono sull'altra.
+     * @return La copia della tabella.
+     */
+    public SymbolTable copy() {
+        SymbolTable copy = new SymbolTable();
+        copy.slots = slots.clone();
+        copy.names = names.clone();
+        copy.hashes = hashes.clone();
+        copy.symbols = symbols.clone();
+        copy.depths = depths.clone();
+        copy.size = size;
+        copy.idEntries = idEntries.clone();
+        copy.undoEntries = undoEntries.clone();
+        copy.undoSymbols = undoSymbols.clone();
+        copy.undoDepths = undoDepths.clone();
+        copy.undoSize = undoSize;
+        copy.marks = marks.clone();
+        copy.depth = depth;
+        return copy;
     }
 
     /**
      * Apre un nuovo ambito di visibilità (scope locale).
      */
     public void enterScope() {
-        // Creo una nuova mappa vuota per le variabili di questo livello e la metto in cima allo stack
-        scopes.push(new HashMap<>());
+        depth++;
+        if (depth == marks.length) {
+            marks = Arrays.copyOf(marks, depth * 2);
+        }
+        // Mi basta ricordare da dove riprendere il registro all'uscita
+        marks[depth] = undoSize;
     }
 
     /**
      * Chiude l'ambito di visibilità corrente.
      */
     public void exitScope() {
-        // Rimuovo la mappa in cima allo stack per dimenticare le variabili locali
-        // Lo faccio solo se non sto eliminando lo scope globale (che deve restare sempre)
-        if (scopes.size() > 1) {
-            scopes.pop();
+        // Lo scope globale deve restare sempre
+        if (depth == 0) {
+            return;
         }
+        // Ripristino in ordine inverso i simboli nascosti o aggiunti in questo scope
+        int mark = marks[depth];
+        while (undoSize > mark) {
+            undoSize--;
+            int entry = undoEntries[undoSize];
+            symbols[entry] = undoSymbols[undoSize];
+            depths[entry] = undoDepths[undoSize];
+            undoSymbols[undoSize] = null;
+        }
+        depth--;
     }
 
     /**
@@ -51,17 +125,7 @@ public class SymbolTable {
      * @return true se l'inserimento è andato a buon fine, false se la variabile esisteva già in questo scope.
      */
     public boolean insert(String name, Symbol symbol) {
-        // Leggo la mappa che si trova in cima allo stack senza toglierla
-        Map<String, Symbol> currentScope = scopes.peek();
-
-        // Controllo se in questo specifico livello esiste già una variabile con questo nome
-        if (currentScope.containsKey(name)) {
-            return false;
-        }
-
-        // Inserisco la nuova variabile nella mappa del livello corrente
-        currentScope.put(name, symbol);
-        return true;
+        return bind(entry(name, true), symbol);
     }
 
     /**
@@ -70,19 +134,138 @@ public class SymbolTable {
      * @return Il simbolo associato se la variabile viene trovata, altrimenti null.
      */
     public Symbol lookup(String name) {
-        // Itero lo stack all'indietro partendo dalla cima verso il fondo
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            
-            // Prendo la mappa del livello corrispondente
-            Map<String, Symbol> scope = scopes.get(i);
-            
-            // Se la variabile è in questa mappa, restituisco il suo simbolo
-            if (scope.containsKey(name)) {
-                return scope.get(name);
+        int entry = entry(name, false);
+        return entry < 0 ? null : symbols[entry];
+    }
+
+    /**
+     * Inserisce una variabile nello scope attivo usando il nodo identificatore.
+     * Se il nodo porta l'id internato, la voce viene ricordata anche per id,
+     * così le ricerche successive tramite lookup(NodeId) non devono calcolare hash.
+     * @param id Il nodo identificatore della variabile.
+     * @param symbol L'oggetto Symbol che contiene le informazioni della variabile.
+     * @return true se l'inserimento è andato a buon fine, false se la variabile esisteva già in questo scope.
+     */
+    public boolean insert(NodeId id, Symbol symbol) {
+        return bind(entry(id, true), symbol);
+    }
+
+    /**
+     * Cerca una variabile partendo dallo scope più interno, usando l'id del nodo se disponibile.
+     * @param id Il nodo identificatore da risolvere.
+     * @return Il simbolo associato se la variabile viene trovata, altrimenti null.
+     */
+    public Symbol lookup(NodeId id) {
+        int entry = entry(id, false);
+        return entry < 0 ? null : symbols[entry];
+    }
+
+    /**
+     * Associa un simbolo a una voce nello scope corrente, salvando nel registro quello che nasconde.
+     */
+    private boolean bind(int entry, Symbol symbol) {
+        if (symbols[entry] != null && depths[entry] == depth) {
+            return false;
+        }
+        // Nello scope globale non serve registrare nulla: non verrà mai chiuso
+        if (depth > 0) {
+            if (undoSize == undoEntries.length) {
+                int capacity = undoSize * 2;
+                undoEntries = Arrays.copyOf(undoEntries, capacity);
+                undoSymbols = Arrays.copyOf(undoSymbols, capacity);
+                undoDepths = Arrays.copyOf(undoDepths, capacity);
+            }
+            undoEntries[undoSize] = entry;
+            undoSymbols[undoSize] = symbols[entry];
+            undoDepths[undoSize] = depths[entry];
+            undoSize++;
+        }
+        symbols[entry] = symbol;
+        depths[entry] = depth;
+        return true;
+    }
+
+    /**
+     * Trova la voce del nodo, passando dall'id quando è disponibile.
+     * Il nome viene comunque confrontato, così un id estraneo alla tabella non dà risultati sbagliati.
+     */
+    private int entry(NodeId id, boolean create) {
+        int symbolId = id.getSymbolId();
+        if (symbolId >= 0 && symbolId < idEntries.length) {
+            int entry = idEntries[symbolId] - 1;
+            if (entry >= 0 && names[entry].equals(id.getName())) {
+                return entry;
+            }
+        }
+        int entry = entry(id.getName(), create);
+        if (entry >= 0 && symbolId >= 0) {
+            if (symbolId >= idEntries.length) {
+                // Allargo il vettore almeno fino all'id richiesto, raddoppiando per ammortizzare
+                idEntries = Arrays.copyOf(idEntries, Math.max(symbolId + 1, idEntries.length * 2));
+            }
+            idEntries[symbolId] = entry + 1;
+        }
+        return entry;
+    }
+
+    /**
+     * Trova la voce del nome con una scansione lineare della tabella hash.
+     * @return L'indice della voce, oppure -1 se il nome non c'è e create è false.
+     */
+    private int entry(String name, boolean create) {
+        int h = name.hashCode();
+        h ^= (h >>> 16);
+        int mask = slots.length - 1;
+        int i = h & mask;
+        while (true) {
+            int slot = slots[i];
+            if (slot == 0) {
+                return create ? add(name, h, i) : -1;
+            }
+            int entry = slot - 1;
+            if (hashes[entry] == h && names[entry].equals(name)) {
+                return entry;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Crea una voce vuota per un nome nuovo nella cella libera indicata.
+     */
+    private int add(String name, int h, int slot) {
+        int entry = size++;
+        if (entry == names.length) {
+            int capacity = entry * 2;
+            names = Arrays.copyOf(names, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+        }
+        names[entry] = name;
+        hashes[entry] = h;
+        slots[slot] = entry + 1;
+
+        // Mantengo il fattore di carico sotto il 50% per avere catene di scansione corte
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return entry;
+    }
+
+    /**
+     * Raddoppia la tabella hash e reinserisce tutte le voci.
+     */
+    private void rehash() {
+        int[] larger = new int[slots.length * 2];
+        int mask = larger.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int i = hashes[entry] & mask;
+            while (larger[i] != 0) {
+                i = (i + 1) & mask;
             }
+            larger[i] = entry + 1;
         }
-        
-        // Se finisco il ciclo e non ho trovato nulla in nessuno scope, restituisco null
-        return null;
+        slots = larger;
     }
-}
\ No newline at end of file
+}
@@ -111,4 +111,44 @@ public class ASTTest {
         // Verifico che l'espressione sia stata sostituita correttamente
         assertEquals(conv, assign.getExpr());
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifica che l'arena compatta contenga gli stessi nodi del programma a oggetti,
+     * con i nomi condivisi e le letture di variabile ridotte a un solo nodo.
+     */
+    @Test
+    void testAstArena() {
+        NodeProgram prog = new NodeProgram(1);
+        prog.addStatement(new NodeDecl(new NodeId("a", 1), LangType.FLOAT, null, 1));
+        NodeBinOp sum = new NodeBinOp(LangOper.PLUS, new NodeDeref(2, new NodeId("a", 2)),
+                new NodeConvert(new NodeCost(LangType.INT, "5", 2), LangType.FLOAT), 2);
+        prog.addStatement(new NodeAssign(new NodeId("a", 2), sum, 2));
+        prog.addStatement(new NodePrint(new NodeId("a", 3), 3));
+
+        AstArena arena = AstArena.of(prog);
+        assertEquals(3, arena.statementCount());
+        // decl, deref, cost, convert, binop, assign, print
+        assertEquals(7, arena.size());
+
+        int decl = arena.statement(0);
+        assertEquals(AstArena.Kind.DECL, arena.kind(decl));
+        assertEquals(LangType.FLOAT, arena.type(decl));
+        assertEquals(-1, arena.left(decl));
+
+        int assign = arena.statement(1);
+        assertEquals(AstArena.Kind.ASSIGN, arena.kind(assign));
+        assertEquals(arena.nameId(decl), arena.nameId(assign));
+        int op = arena.left(assign);
+        assertEquals(LangOper.PLUS, arena.op(op));
+        assertEquals(AstArena.Kind.DEREF, arena.kind(arena.left(op)));
+        assertSame(arena.name(decl), arena.name(arena.left(op)));
+        int conv = arena.right(op);
+        assertEquals(AstArena.Kind.CONVERT, arena.kind(conv));
+        assertEquals(LangType.FLOAT, arena.type(conv));
+        assertEquals("5", arena.value(arena.left(conv)));
+        assertEquals(2, arena.riga(conv));
+
+        assertEquals(AstArena.Kind.PRINT, arena.kind(arena.statement(2)));
+        assertEquals(3, arena.riga(arena.statement(2)));
+    }
+}
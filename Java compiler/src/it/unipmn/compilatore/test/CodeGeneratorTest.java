@@ -1,7 +1,10 @@
 package it.unipmn.compilatore.test;
 
+import it.unipmn.compilatore.Compiler;
 import it.unipmn.compilatore.ast.*;
+import it.unipmn.compilatore.exceptions.SyntacticException;
 import it.unipmn.compilatore.visitor.CodeGeneratorVisitor;
+import it.unipmn.compilatore.visitor.RegisterAllocator;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -42,7 +45,6 @@ public class CodeGeneratorTest {
         
         String code = gen.getCode();
         // Controllo che ci siano le istruzioni fondamentali
-        assertTrue(code.contains("20 k")); // Precisione
         assertTrue(code.contains("10"));   // Valore numerico
         assertTrue(code.contains("sa"));   // Store nel registro
     }
@@ -76,4 +78,143 @@ public class CodeGeneratorTest {
         assertEquals("234*+", sequence, 
             "L'ordine delle istruzioni non rispetta la notazione postfissa!");
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifica che la print non sovrascriva la nona variabile (un tempo nel registro 'i', usato come cestino).
+     */
+    @Test
+    void testStampaNonSovrascriveVariabili() {
+        StringBuilder src = new StringBuilder();
+        StringBuilder atteso = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            src.append("int v").append(i).append(" = ").append(i).append(";\n");
+        }
+        for (int i = 0; i < 12; i++) {
+            src.append("print v").append(i).append(";\n");
+            atteso.append(i).append('\n');
+        }
+        assertEquals(atteso.toString(), DcInterpreter.run(new Compiler().compile(src.toString())));
+    }
+
+    /**
+     * Verifica che con più variabili vive che registri le altre finiscano nell'array di appoggio
+     * e che il programma calcoli comunque i valori giusti.
+     */
+    @Test
+    void testVariabiliNellArray() {
+        int n = 3000;
+        StringBuilder src = new StringBuilder();
+        StringBuilder atteso = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            src.append("int v").append(i).append(" = ").append(i).append(";\n");
+        }
+        for (int i = 0; i < n; i++) {
+            src.append("v").append(i).append(" = v").append(i).append(" * 2;\n");
+            src.append("print v").append(i).append(";\n");
+            atteso.append(2 * i).append('\n');
+        }
+        String code = new Compiler().compile(src.toString());
+        assertTrue(code.contains(":" + RegisterAllocator.SPILL));
+        assertEquals(atteso.toString(), DcInterpreter.run(code));
+    }
+
+    /**
+     * Verifica che una variabile letta prima di essere assegnata venga rifiutata, invece di leggere
+     * il registro o la posizione dell'array lasciati da una variabile morta.
+     */
+    @Test
+    void testLetturaPrimaDellAssegnamento() {
+        // Senza il controllo b riusa il registro di c e stampa 5
+        String riuso = "int a = 5; int c = a + 1; a = c * a; print a; int b; print b;";
+        SyntacticException e = assertThrows(SyntacticException.class, () -> new Compiler().compile(riuso));
+        assertTrue(e.getMessage().contains("Variabile 'b' letta prima di essere assegnata alla riga 1"));
+        SyntacticException anticipata = assertThrows(SyntacticException.class, () -> new Compiler().evaluate(riuso));
+        assertEquals(anticipata.getMessage(), e.getMessage());
+
+        // Con tutti i registri occupati b prenderebbe la posizione dell'array appena liberata da m
+        StringBuilder spill = new StringBuilder();
+        for (int i = 0; i < RegisterAllocator.registerCount(); i++) {
+            spill.append("int v").append(i).append(" = ").append(i).append(";\n");
+        }
+        spill.append("int m = 7; print m;\nint b;\nint w = b + 1;\n");
+        for (int i = 0; i < RegisterAllocator.registerCount(); i++) {
+            spill.append("print v").append(i).append(";\n");
+        }
+        e = assertThrows(SyntacticException.class, () -> new Compiler().compile(spill));
+        assertTrue(e.getMessage().contains("Variabile 'b' letta prima di essere assegnata alla riga "
+                + (RegisterAllocator.registerCount() + 3)));
+
+        // Un assegnamento prima della lettura basta, anche dopo una dichiarazione senza valore
+        assertEquals("3\n", DcInterpreter.run(new Compiler().compile("int b; b = 3; print b;")));
+    }
+
+    /**
+     * Verifica che i registri delle variabili morte vengano riusati: una catena di migliaia di
+     * variabili, ognuna letta solo dalla successiva, non ha bisogno dell'array di appoggio.
+     */
+    @Test
+    void testRiusoRegistri() {
+        StringBuilder src = new StringBuilder("int t0 = 1;\n");
+        for (int i = 1; i < 5000; i++) {
+            src.append("int t").append(i).append(" = t").append(i - 1).append(" + 1;\n");
+        }
+        src.append("print t4999;\n");
+        String code = new Compiler().compile(src.toString());
+        assertFalse(code.contains(":" + RegisterAllocator.SPILL));
+        assertFalse(code.contains(";" + RegisterAllocator.SPILL));
+        assertEquals("5000\n", DcInterpreter.run(code));
+    }
+
+    /**
+     * Verifica che due operandi uguali vengano calcolati una volta sola e duplicati con 'd',
+     * e che un valore ripetuto in più istruzioni venga riletto da un temporaneo.
+     */
+    @Test
+    void testSottoespressioniComuni() {
+        String quadrato = new Compiler().compile("int a = 3; int b = 4; int c = (a + b) * (a + b); print c;");
+        assertEquals(1, conta(quadrato, '+'));
+        assertTrue(quadrato.contains("d *"));
+        assertEquals("49\n", DcInterpreter.run(quadrato));
+
+        String sorgente = "int x = 100; int y = x / 2 + 1; float f = 0.5 * (x / 2); int z = (x / 2) * 3;\n"
+                        + "print y; print f; print z;";
+        String code = new Compiler().compile(sorgente);
+        assertEquals(1, conta(code, '/'));
+        assertEquals(new Compiler().evaluate(sorgente), DcInterpreter.run(code));
+    }
+
+    /**
+     * Verifica che dopo un assegnamento la stessa espressione venga ricalcolata con il nuovo valore.
+     */
+    @Test
+    void testSottoespressioniDopoAssegnamento() {
+        String sorgente = "int x = 4; int y = x * 2 + x * 2; x = 5; int z = x * 2; int w = 2 * x; print y; print z; print w;";
+        String code = new Compiler().compile(sorgente);
+        // x * 2 prima e dopo l'assegnamento; 2 * x è lo stesso valore del secondo, perché il prodotto è commutativo
+        assertEquals(2, conta(code, '*'));
+        assertEquals("16\n10\n10\n", DcInterpreter.run(code));
+    }
+
+    /**
+     * Verifica che la precisione cambi solo dove serve: le divisioni tra int troncano con 0 k,
+     * quelle tra float usano le cifre decimali delle costanti, e un programma di soli int non imposta 'k'.
+     */
+    @Test
+    void testPrecisionePerTipo() {
+        String sorgente = "int a = 7; int b = 0 - 7; int q = a / 2; int r = b / 2; float f = 1.5;\n"
+                        + "float g = f / a; float h = g * f; int m = q * r; int s = a / 3;\n"
+                        + "print q; print r; print g; print h; print m; print s;";
+        String code = new Compiler().compile(sorgente);
+        // "5 k" prima di f / a, che vale anche per g * f, poi "0 k" prima di a / 3
+        assertEquals(2, conta(code, 'k'));
+        assertTrue(code.indexOf("5 k") < code.indexOf("0 k"));
+        assertEquals("3\n-3\n.21428\n.32142\n-9\n2\n", DcInterpreter.run(code));
+        assertEquals(new Compiler().evaluate(sorgente), DcInterpreter.run(code));
+
+        assertFalse(new Compiler().compile("int x = 9; x = x / 2 * x; print x;").contains("k"));
+    }
+
+    private static int conta(String code, char c) {
+        return (int) code.chars().filter(ch -> ch == c).count();
+    }
+}
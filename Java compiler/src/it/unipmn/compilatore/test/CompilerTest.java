@@ -4,13 +4,27 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
 
 import it.unipmn.compilatore.Compiler;
+import it.unipmn.compilatore.exceptions.SyntacticException;
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.trace.Trace;
+import it.unipmn.compilatore.visitor.CodeGeneratorVisitor;
+import it.unipmn.compilatore.visitor.PeepholeOptimizer;
 
 /**
  * Classe di test per l'integrazione completa del sistema (End-to-End).
@@ -67,10 +81,198 @@ public class CompilerTest {
         String dcCode = Files.readString(Path.of(OUTPUT_FILE));
 
         // Controllo che il codice tradotto contenga i comandi essenziali della calcolatrice 'dc'
-        assertTrue(dcCode.contains("20 k"), "Manca header precisione");
+        assertFalse(dcCode.contains("k"), "Precisione impostata senza divisioni né moltiplicazioni");
         assertTrue(dcCode.contains("sa"), "Manca salvataggio registro a");
         assertTrue(dcCode.contains("sb"), "Manca salvataggio registro b");
         assertTrue(dcCode.contains("+"), "Manca operazione somma");
         assertTrue(dcCode.contains("p"), "Manca comando stampa");
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifica la compilazione interamente in memoria, senza file sorgente né out.dc.
+     * Le tre forme di input (testo, Reader, ByteBuffer) devono produrre lo stesso codice.
+     */
+    @Test
+    void testCompilazioneInMemoria() {
+        String sourceCode = "int a = 10; float b = 2.5; b = b + a; print b;";
+        Compiler compiler = new Compiler();
+
+        String daTesto = compiler.compile(sourceCode);
+        String daReader = compiler.compile(new StringReader(sourceCode));
+        String daBuffer = compiler.compile(ByteBuffer.wrap(sourceCode.getBytes(StandardCharsets.US_ASCII)));
+
+        assertTrue(daTesto.contains("sb"), "Manca salvataggio registro b");
+        assertEquals(daTesto, daReader);
+        assertEquals(daTesto, daBuffer);
+        // Nessun file deve essere stato scritto sul disco
+        assertFalse(new File(OUTPUT_FILE).exists(), "La compilazione in memoria non deve creare out.dc");
+    }
+
+    /**
+     * Verifica che la traccia registri solo i livelli abilitati e possa essere scritta su file.
+     */
+    @Test
+    void testTracciaPerLivelli() throws IOException {
+        String sourceCode = "int a = 10; print a;";
+
+        // Con il livello PHASE compaiono le fasi ma non i singoli token
+        Trace fasi = Trace.inMemory(Trace.Level.PHASE);
+        new Compiler(fasi).compile(sourceCode);
+        assertTrue(fasi.toString().contains("Inizio generazione codice programma."));
+        assertFalse(fasi.toString().contains("Letto identificatore"));
+
+        // Con il livello DETAIL compare anche ogni registro assegnato
+        Trace dettaglio = Trace.inMemory(Trace.Level.DETAIL);
+        new Compiler(dettaglio).compile(sourceCode);
+        assertTrue(dettaglio.toString().contains("Assegno registro 'a' alla variabile 'a'"));
+
+        // Una traccia su file non resta in memoria
+        Path file = Files.createTempFile("traccia", ".log");
+        try {
+            try (Trace suFile = Trace.toFile(file, Trace.Level.DETAIL)) {
+                new Compiler(suFile).compile(sourceCode);
+                assertEquals("", suFile.toString());
+            }
+            assertEquals(dettaglio.toString(), Files.readString(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Verifica che l'esempio del README, che contiene un commento di riga, venga compilato.
+     */
+    @Test
+    void testEsempioReadmeConCommenti() {
+        String sourceCode = "int a = 10;\n"
+                          + "float b = 2.5;\n"
+                          + "float result;\n\n"
+                          + "// Esempio di espressione mista con conversione implicita\n"
+                          + "result = a + b * 2.0;\n\n"
+                          + "print result;\n";
+
+        String code = new Compiler().compile(sourceCode);
+        // result viene solo stampato: il peephole lo lascia sullo stack invece di salvarlo e rileggerlo
+        assertFalse(code.contains("sc"), "Salvataggio inutile del registro di result");
+        assertTrue(code.contains("+ p c"), "Manca la stampa di result");
+        assertEquals(new Compiler().evaluate(sourceCode), DcInterpreter.run(code));
+    }
+
+    /**
+     * Verifica che la compilazione a flusso produca lo stesso codice di quella sull'AST completo
+     * quando il peephole è spento, e in ogni caso gli stessi risultati.
+     */
+    @Test
+    void testCompilazioneAFlusso() throws IOException {
+        String sourceCode = "int a = 10; float b = 2.5; float c;\n"
+                          + "c = a + b * 2; // commento\n"
+                          + "a = a / 3; print a; print c;";
+        Compiler compiler = new Compiler();
+
+        StringWriter out = new StringWriter();
+        compiler.compileStreaming(Scanner.fromText(sourceCode), out);
+        // A flusso il peephole non sa quali letture sono le ultime: il codice è diverso, i risultati no
+        assertEquals(DcInterpreter.run(compiler.compile(sourceCode)), DcInterpreter.run(out.toString()));
+
+        compiler.setPeepholeRules(EnumSet.noneOf(PeepholeOptimizer.Rule.class));
+        StringWriter plain = new StringWriter();
+        compiler.compileStreaming(Scanner.fromText(sourceCode), plain);
+        assertEquals(compiler.compile(sourceCode), plain.toString());
+    }
+
+    /**
+     * Verifica che il codice scritto a pezzi su un Writer, uno stream o un FileChannel sia identico
+     * a quello generato in memoria, anche quando supera la dimensione di un pezzo.
+     */
+    @Test
+    void testCompilazioneSuDestinazione() throws IOException {
+        StringBuilder src = new StringBuilder("int x = 1; float f = 0.5;\n");
+        for (int i = 0; i < 4000; i++) {
+            src.append("x = x * 3 + ").append(i % 7).append(" - x / 2;\n");
+            src.append("f = f * 2 + x;\n");
+            src.append("print x; print f;\n");
+        }
+        String sourceCode = src.toString();
+        Compiler compiler = new Compiler();
+        String atteso = compiler.compile(sourceCode);
+        assertTrue(atteso.length() > CodeGeneratorVisitor.CHUNK_SIZE * 4);
+
+        StringWriter writer = new StringWriter();
+        compiler.compile(Scanner.fromText(sourceCode), writer);
+        assertEquals(atteso, writer.toString());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        compiler.compile(Scanner.fromText(sourceCode), stream);
+        assertEquals(atteso, stream.toString(StandardCharsets.US_ASCII));
+
+        Path file = Files.createTempFile("compiler-test", ".dc");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            compiler.compile(Scanner.fromText(sourceCode), channel);
+        }
+        try {
+            assertEquals(atteso, Files.readString(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Verifica che con --output=- il codice vada sullo standard output, senza messaggi mescolati.
+     */
+    @Test
+    void testOutputSuStandardOutput() throws IOException {
+        String sourceCode = "int a = 10; float b = 2.5; b = b * a; print b;";
+        try (FileWriter writer = new FileWriter(TEST_FILE)) {
+            writer.write(sourceCode);
+        }
+
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        ByteArrayOutputStream codice = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(codice, true, StandardCharsets.US_ASCII));
+            System.setErr(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.US_ASCII));
+            Compiler.main(new String[]{"--output=-", TEST_FILE});
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        assertEquals(new Compiler().compile(sourceCode), codice.toString(StandardCharsets.US_ASCII));
+        assertFalse(new File(OUTPUT_FILE).exists());
+    }
+
+    /**
+     * Verifica che l'esecuzione anticipata stampi, cifra per cifra, ciò che stampa il codice completo
+     * eseguito da dc, sia come programma dc minimo sia come testo.
+     */
+    @Test
+    void testEsecuzioneAnticipata() {
+        String sourceCode = "int a = 10; float b = 2.5; int c;\n"
+                          + "c = a * 2 + 5; print c;\n"
+                          + "float d; d = b + 1.5; print d;\n"
+                          + "int x = 100; x = x / 3; print x;\n"
+                          + "float n = 0.5 - b * 3; print n;\n"
+                          + "int g = 99999; g = g * g * g * g * g * g * g * g * g * g * g * g * g * g * g; print g;\n"
+                          + "float r = 1 / (b * 7.1); print r; print a;\n";
+        Compiler compiler = new Compiler();
+
+        String atteso = DcInterpreter.run(compiler.compile(sourceCode));
+        String minimo = compiler.precompute(sourceCode);
+        assertEquals(atteso, DcInterpreter.run(minimo));
+        assertEquals(atteso, compiler.evaluate(sourceCode));
+        // Il programma minimo non calcola nulla: solo costanti e stampe
+        assertFalse(minimo.contains("k") || minimo.contains("*") || minimo.contains("/"));
+        // Il numero lungo viene spezzato su più righe come fa dc
+        assertTrue(atteso.contains("\\\n"));
+    }
+
+    /**
+     * Verifica che l'esecuzione anticipata segnali gli errori che dc incontrerebbe eseguendo il programma.
+     */
+    @Test
+    void testEsecuzioneAnticipataErrori() {
+        Compiler compiler = new Compiler();
+        assertThrows(SyntacticException.class, () -> compiler.precompute("int a; print a;"));
+        assertThrows(SyntacticException.class, () -> compiler.precompute("int a = 0; int b = 1 / a;"));
+    }
+}
@@ -0,0 +1,92 @@
+package it.unipmn.compilatore.test;
+
+import it.unipmn.compilatore.ast.*;
+import it.unipmn.compilatore.parser.Parser;
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.visitor.CodeGeneratorVisitor;
+import it.unipmn.compilatore.visitor.ConstantFoldingVisitor;
+import it.unipmn.compilatore.visitor.TypeCheckVisitor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per il calcolo anticipato delle operazioni tra costanti.
+ * Verifica che le operazioni vengano sostituite dal risultato e che il codice ottenuto
+ * stampi esattamente gli stessi valori del codice non semplificato.
+ */
+public class ConstantFoldingTest {
+
+    /**
+     * Verifica che un'espressione di sole costanti diventi una costante e che il conteggio sia giusto.
+     */
+    @Test
+    void testCalcoloCostanti() {
+        NodeProgram p = controllato("int a = 2 + 3 * 4; float f = 1 / 3; float g = 1 / 3.0;");
+        ConstantFoldingVisitor folder = new ConstantFoldingVisitor();
+        p.accept(folder);
+
+        NodeCost a = (NodeCost) ((NodeDecl) p.getStatements().get(0)).getInit();
+        assertEquals("14", a.getValue());
+        // La divisione tra interi tronca all'intero (k = 0), poi la conversione sparisce
+        NodeCost f = (NodeCost) ((NodeDecl) p.getStatements().get(1)).getInit();
+        assertEquals(LangType.FLOAT, f.getType());
+        assertEquals("0", f.getValue());
+        // Tra float la divisione tiene le cifre decimali ammesse dallo scanner
+        NodeCost g = (NodeCost) ((NodeDecl) p.getStatements().get(2)).getInit();
+        assertEquals("0.33333", g.getValue());
+        assertEquals(4, folder.getFolded());
+    }
+
+    /**
+     * Verifica che solo le parti costanti vengano calcolate e che la divisione per zero resti a dc.
+     */
+    @Test
+    void testCalcoloParziale() {
+        NodeProgram p = controllato("int a = 1; int b = a * (2 - 5); int c = 4 / 0;");
+        ConstantFoldingVisitor folder = new ConstantFoldingVisitor();
+        p.accept(folder);
+
+        NodeBinOp b = (NodeBinOp) ((NodeDecl) p.getStatements().get(1)).getInit();
+        assertInstanceOf(NodeDeref.class, b.getLeft());
+        assertEquals("-3", ((NodeCost) b.getRight()).getValue());
+        assertInstanceOf(NodeBinOp.class, ((NodeDecl) p.getStatements().get(2)).getInit());
+        assertEquals(1, folder.getFolded());
+    }
+
+    /**
+     * Verifica che il codice semplificato stampi gli stessi valori, cifra per cifra, di quello originale,
+     * anche dove la scala dei risultati intermedi decide il troncamento di dc.
+     */
+    @Test
+    void testStessiRisultatiDiDc() {
+        String sorgente = "float a = 2.5 * 2.0 * 1.11111;\n"
+                        + "float b = 10 / 3 * 3;\n"
+                        + "float c = 0.00001 * 0.00001 * 0.00001 * 0.00001 * 0.00001;\n"
+                        + "int d = 7 / 2 - 10 * 3;\n"
+                        + "float e = (1.5 - 4) / 7 + d;\n"
+                        + "float f = 99999.99999 * 99999.99999 * 99999.99999 * 99999.99999 * 99999.99999;\n"
+                        + "print a; print b; print c; print d; print e; print f;\n";
+
+        NodeProgram normale = controllato(sorgente);
+        CodeGeneratorVisitor codeGen = new CodeGeneratorVisitor();
+        normale.accept(codeGen);
+        String atteso = DcInterpreter.run(codeGen.getCode());
+
+        NodeProgram semplificato = controllato(sorgente);
+        ConstantFoldingVisitor folder = new ConstantFoldingVisitor();
+        semplificato.accept(folder);
+        CodeGeneratorVisitor semplificatoGen = new CodeGeneratorVisitor();
+        semplificato.accept(semplificatoGen);
+
+        assertEquals(atteso, DcInterpreter.run(semplificatoGen.getCode()));
+        assertFalse(semplificatoGen.getCode().contains("*"));
+        assertTrue(folder.getFolded() > 15);
+    }
+
+    private static NodeProgram controllato(String sorgente) {
+        NodeProgram p = new Parser(Scanner.fromText(sorgente).tokenize()).parse();
+        p.accept(new TypeCheckVisitor());
+        return p;
+    }
+}
@@ -0,0 +1,230 @@
+package it.unipmn.compilatore.test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interprete minimo della calcolatrice 'dc', usato dai test per eseguire il codice generato
+ * senza dipendere da un dc installato nel sistema.
+ * <p>
+ * Riproduce la parte di dc che il compilatore può produrre: numeri con '_' per il segno meno,
+ * le quattro operazioni con le regole di precisione di dc (la divisione tronca a 'k' cifre,
+ * la moltiplicazione conserva al massimo max(k, scala degli operandi) cifre), i registri
+ * ('s', 'l', 'S', 'L'), gli array (':' e ';'), le stringhe tra parentesi quadre e i comandi
+ * 'k', 'p', 'n', 'P', 'd', 'r', 'c', 'q'. Le stampe vanno a capo ogni 70 caratteri con
+ * una barra rovesciata, come fa dc. Un errore che dc segnalerebbe solo a video qui
+ * solleva un'eccezione, così il test fallisce.
+ * </p>
+ */
+final class DcInterpreter {
+
+    private final Deque<Object> stack = new ArrayDeque<>();
+    private final Map<Character, Deque<Object>> registers = new HashMap<>();
+    private final Map<Character, Map<Long, Object>> arrays = new HashMap<>();
+    private final StringBuilder out = new StringBuilder();
+    private int scale;
+
+    private DcInterpreter() {
+    }
+
+    /**
+     * Esegue un programma dc.
+     * @param code Il codice da eseguire.
+     * @return Tutto ciò che il programma stampa.
+     */
+    static String run(String code) {
+        DcInterpreter dc = new DcInterpreter();
+        dc.execute(code);
+        return dc.out.toString();
+    }
+
+    private void execute(String code) {
+        int i = 0;
+        while (i < code.length()) {
+            char c = code.charAt(i++);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (c == '_' || c == '.' || (c >= '0' && c <= '9')) {
+                int start = i - 1;
+                while (i < code.length() && (code.charAt(i) == '.' || Character.isDigit(code.charAt(i)))) {
+                    i++;
+                }
+                String text = code.substring(c == '_' ? start + 1 : start, i);
+                BigDecimal value = new BigDecimal(text.startsWith(".") ? "0" + text : text);
+                stack.push(c == '_' ? value.negate() : value);
+                continue;
+            }
+            switch (c) {
+                case '#':
+                    while (i < code.length() && code.charAt(i) != '\n') {
+                        i++;
+                    }
+                    break;
+                case '[': {
+                    int depth = 1;
+                    int start = i;
+                    while (depth > 0) {
+                        char s = code.charAt(i++);
+                        depth += s == '[' ? 1 : s == ']' ? -1 : 0;
+                    }
+                    stack.push(code.substring(start, i - 1));
+                    break;
+                }
+                case '+': {
+                    BigDecimal b = number();
+                    stack.push(number().add(b));
+                    break;
+                }
+                case '-': {
+                    BigDecimal b = number();
+                    stack.push(number().subtract(b));
+                    break;
+                }
+                case '*': {
+                    BigDecimal b = number();
+                    BigDecimal a = number();
+                    int limit = Math.max(scale, Math.max(a.scale(), b.scale()));
+                    stack.push(a.multiply(b).setScale(Math.min(a.scale() + b.scale(), limit), RoundingMode.DOWN));
+                    break;
+                }
+                case '/': {
+                    BigDecimal b = number();
+                    BigDecimal a = number();
+                    if (b.signum() == 0) {
+                        throw new IllegalStateException("dc: divide by zero");
+                    }
+                    stack.push(a.divide(b, scale, RoundingMode.DOWN));
+                    break;
+                }
+                case 'k':
+                    scale = number().intValueExact();
+                    break;
+                case 'p':
+                    print(peek());
+                    out.append('\n');
+                    break;
+                case 'n':
+                    print(pop());
+                    break;
+                case 'P':
+                    Object top = pop();
+                    out.append(top instanceof String ? (String) top : ((BigDecimal) top).toBigInteger().toString());
+                    break;
+                case 'd':
+                    stack.push(peek());
+                    break;
+                case 'r': {
+                    Object b = pop();
+                    Object a = pop();
+                    stack.push(b);
+                    stack.push(a);
+                    break;
+                }
+                case 'c':
+                    stack.clear();
+                    break;
+                case 'q':
+                    return;
+                case 's': {
+                    Deque<Object> reg = register(code.charAt(i++));
+                    if (!reg.isEmpty()) {
+                        reg.pop();
+                    }
+                    reg.push(pop());
+                    break;
+                }
+                case 'S':
+                    register(code.charAt(i++)).push(pop());
+                    break;
+                case 'l': {
+                    char r = code.charAt(i++);
+                    Deque<Object> reg = register(r);
+                    if (reg.isEmpty()) {
+                        throw new IllegalStateException("dc: register '" + r + "' is empty");
+                    }
+                    stack.push(reg.peek());
+                    break;
+                }
+                case 'L': {
+                    char r = code.charAt(i++);
+                    Deque<Object> reg = register(r);
+                    if (reg.isEmpty()) {
+                        throw new IllegalStateException("dc: stack register '" + r + "' is empty");
+                    }
+                    stack.push(reg.pop());
+                    break;
+                }
+                case ':': {
+                    char r = code.charAt(i++);
+                    long index = number().longValueExact();
+                    arrays.computeIfAbsent(r, k -> new HashMap<>()).put(index, pop());
+                    break;
+                }
+                case ';': {
+                    char r = code.charAt(i++);
+                    long index = number().longValueExact();
+                    stack.push(arrays.getOrDefault(r, Map.of()).getOrDefault(index, BigDecimal.ZERO));
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("dc: comando non supportato '" + c + "'");
+            }
+        }
+    }
+
+    private Deque<Object> register(char name) {
+        return registers.computeIfAbsent(name, k -> new ArrayDeque<>());
+    }
+
+    private Object peek() {
+        if (stack.isEmpty()) {
+            throw new IllegalStateException("dc: stack empty");
+        }
+        return stack.peek();
+    }
+
+    private Object pop() {
+        peek();
+        return stack.pop();
+    }
+
+    private BigDecimal number() {
+        Object top = pop();
+        if (!(top instanceof BigDecimal)) {
+            throw new IllegalStateException("dc: non-numeric value");
+        }
+        return (BigDecimal) top;
+    }
+
+    /**
+     * Stampa un valore come dc: niente zero prima della virgola, 69 caratteri per riga seguiti da '\'.
+     */
+    private void print(Object value) {
+        if (value instanceof String) {
+            out.append((String) value);
+            return;
+        }
+        BigDecimal number = (BigDecimal) value;
+        String text;
+        if (number.signum() == 0) {
+            text = "0";
+        } else {
+            text = number.toPlainString();
+            if (text.startsWith("0.")) {
+                text = text.substring(1);
+            } else if (text.startsWith("-0.")) {
+                text = "-" + text.substring(2);
+            }
+        }
+        while (text.length() > 69) {
+            out.append(text, 0, 69).append("\\\n");
+            text = text.substring(69);
+        }
+        out.append(text);
+    }
+}
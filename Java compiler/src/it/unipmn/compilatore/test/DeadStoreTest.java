@@ -0,0 +1,79 @@
+package it.unipmn.compilatore.test;
+
+import it.unipmn.compilatore.Compiler;
+import it.unipmn.compilatore.ast.*;
+import it.unipmn.compilatore.parser.Parser;
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.trace.Trace;
+import it.unipmn.compilatore.visitor.DeadStoreEliminator;
+import it.unipmn.compilatore.visitor.TypeCheckVisitor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per l'eliminazione degli assegnamenti inutili e delle variabili mai usate.
+ */
+public class DeadStoreTest {
+
+    /**
+     * Verifica che spariscano gli assegnamenti sovrascritti prima di essere letti,
+     * le variabili mai stampate e le loro catene di calcoli.
+     */
+    @Test
+    void testAssegnamentiInutili() {
+        String sorgente = "int a = 1; int b = 2; a = 3; b = a + 1; int u = 7 * b; int v = u + 1; print b;";
+        NodeProgram p = new Parser(Scanner.fromText(sorgente).tokenize()).parse();
+        p.accept(new TypeCheckVisitor());
+        DeadStoreEliminator dse = new DeadStoreEliminator(Trace.disabled());
+        dse.eliminate(p);
+
+        // Restano le dichiarazioni di a e b senza inizializzazione, i due assegnamenti e la stampa
+        assertEquals(5, p.getStatements().size());
+        assertNull(((NodeDecl) p.getStatements().get(0)).getInit());
+        assertNull(((NodeDecl) p.getStatements().get(1)).getInit());
+        assertInstanceOf(NodeAssign.class, p.getStatements().get(2));
+        assertInstanceOf(NodePrint.class, p.getStatements().get(4));
+        assertEquals(4, dse.getRemovedStores());
+        assertEquals(2, dse.getRemovedDeclarations());
+    }
+
+    /**
+     * Verifica che una divisione che potrebbe essere per zero non venga eliminata,
+     * perché dc stamperebbe un errore.
+     */
+    @Test
+    void testDivisioneConservata() {
+        NodeProgram p = new Parser(Scanner.fromText("int z = 0; int d = 5 / z; int e = 5 / 2; print z;").tokenize()).parse();
+        p.accept(new TypeCheckVisitor());
+        new DeadStoreEliminator(Trace.disabled()).eliminate(p);
+
+        assertEquals(3, p.getStatements().size());
+        assertNotNull(((NodeDecl) p.getStatements().get(1)).getInit());
+        assertInstanceOf(NodePrint.class, p.getStatements().get(2));
+    }
+
+    /**
+     * Verifica che il programma ottimizzato stampi gli stessi valori e sia più corto.
+     */
+    @Test
+    void testStessiRisultati() {
+        StringBuilder src = new StringBuilder("int x = 1; float f = 0.5;\n");
+        for (int i = 0; i < 200; i++) {
+            src.append("x = x * 3 + ").append(i).append(";\n");
+            src.append("f = f * 2 + x;\n");
+            src.append("int t").append(i).append(" = x + 1;\n");
+            if (i % 50 == 0) {
+                src.append("print x;\n");
+            }
+        }
+        src.append("print x;\n");
+        String sorgente = src.toString();
+
+        String code = new Compiler().compile(sorgente);
+        assertEquals(new Compiler().evaluate(sorgente), DcInterpreter.run(code));
+        // Nessuna istruzione su f e sui t sopravvive
+        assertFalse(code.contains("0.5"));
+        assertTrue(code.length() < sorgente.length());
+    }
+}
@@ -1,7 +1,18 @@
 package it.unipmn.compilatore.test;
 
+import it.unipmn.compilatore.Compiler;
+import it.unipmn.compilatore.ast.HashConsFactory;
+import it.unipmn.compilatore.ast.LangOper;
+import it.unipmn.compilatore.ast.NodeAssign;
+import it.unipmn.compilatore.ast.NodeBinOp;
+import it.unipmn.compilatore.ast.NodeCost;
+import it.unipmn.compilatore.ast.NodeDecl;
+import it.unipmn.compilatore.ast.NodeProgram;
 import it.unipmn.compilatore.parser.Parser;
 import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.visitor.CodeGeneratorVisitor;
+import it.unipmn.compilatore.visitor.PrintASTVisitor;
+import it.unipmn.compilatore.visitor.TypeCheckVisitor;
 import it.unipmn.compilatore.exceptions.SyntacticException;
 import org.junit.jupiter.api.Test;
 
@@ -82,4 +93,166 @@ public class ParserTest {
         
         scanner.close();
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifica che il parser funzioni anche leggendo i token dal buffer compatto,
+     * sia su codice corretto sia sugli stessi errori della modalità a flusso.
+     */
+    @Test
+    void testParsingDaTokenBuffer() {
+        Parser parser = new Parser(Scanner.fromText("int a = 5; a = (a + 2) * 3; print a;").tokenize());
+        NodeProgram program = parser.parse();
+        assertEquals(3, program.getStatements().size());
+
+        Parser errato = new Parser(Scanner.fromText("int a = 5").tokenize());
+        assertThrows(SyntacticException.class, () -> errato.parse());
+    }
+
+    /**
+     * Verifica che la modalità di recupero raccolga tutti gli errori in un solo passaggio
+     * e restituisca comunque le istruzioni corrette.
+     */
+    @Test
+    void testRecuperoErrori() {
+        String sorgente = "int a = 5\n"          // manca ; (riprende su int)
+                        + "int b = 3;\n"
+                        + "a = (b + ;\n"         // espressione incompleta
+                        + "print print b;\n"     // print doppio (riprende sul secondo)
+                        + "float c = 2.5;\n"
+                        + "= 4;\n";              // istruzione non valida
+
+        Parser parser = new Parser(Scanner.fromText(sorgente));
+        NodeProgram program = parser.parseWithRecovery();
+
+        assertEquals(4, parser.getErrors().size());
+        assertTrue(parser.getErrors().get(0).getMessage().contains("riga 2"));
+        assertTrue(parser.getErrors().get(1).getMessage().contains("riga 3"));
+        assertTrue(parser.getErrors().get(3).getMessage().contains("riga 6"));
+        // Restano: int b, print b (dopo il primo print scartato), float c
+        assertEquals(3, program.getStatements().size());
+    }
+
+    /**
+     * Verifica che su un programma corretto la modalità di recupero dia lo stesso albero di parse().
+     */
+    @Test
+    void testRecuperoSenzaErrori() {
+        String sorgente = "int a = 5; float b = a * 2.5; print b;";
+
+        NodeProgram normale = new Parser(Scanner.fromText(sorgente)).parse();
+        Parser parser = new Parser(Scanner.fromText(sorgente));
+        NodeProgram recupero = parser.parseWithRecovery();
+
+        assertTrue(parser.getErrors().isEmpty());
+        PrintASTVisitor attesa = new PrintASTVisitor();
+        normale.accept(attesa);
+        PrintASTVisitor ottenuta = new PrintASTVisitor();
+        recupero.accept(ottenuta);
+        assertEquals(attesa.getOutput(), ottenuta.getOutput());
+    }
+
+    /**
+     * Verifica che il parser a precedenza raggruppi gli operatori come la grammatica:
+     * prima * e /, poi + e -, tutti associativi a sinistra, con le parentesi che vincono.
+     */
+    @Test
+    void testPrecedenzaOperatori() {
+        Parser parser = new Parser(Scanner.fromText("x = 1 - 2 - 3 * 4 / (5 + 6);").tokenize());
+        NodeAssign assign = (NodeAssign) parser.parse().getStatements().get(0);
+
+        // (1 - 2) - ((3 * 4) / (5 + 6))
+        NodeBinOp root = (NodeBinOp) assign.getExpr();
+        assertEquals(LangOper.MINUS, root.getOp());
+        assertEquals(LangOper.MINUS, ((NodeBinOp) root.getLeft()).getOp());
+        NodeBinOp div = (NodeBinOp) root.getRight();
+        assertEquals(LangOper.DIVIDE, div.getOp());
+        assertEquals(LangOper.TIMES, ((NodeBinOp) div.getLeft()).getOp());
+        assertEquals(LangOper.PLUS, ((NodeBinOp) div.getRight()).getOp());
+    }
+
+    /**
+     * Verifica che parentesi annidate molto in profondità non esauriscano lo stack delle chiamate,
+     * né nel parser né nelle fasi che compilano ed eseguono in anticipo il programma.
+     */
+    @Test
+    void testParentesiProfonde() {
+        int profondita = 100_000;
+        StringBuilder sorgente = new StringBuilder("x = ");
+        for (int i = 0; i < profondita; i++) {
+            sorgente.append("(1 + ");
+        }
+        sorgente.append('1');
+        for (int i = 0; i < profondita; i++) {
+            sorgente.append(')');
+        }
+        sorgente.append(';');
+
+        NodeAssign assign = (NodeAssign) new Parser(Scanner.fromText(sorgente).tokenize()).parse().getStatements().get(0);
+        NodeBinOp node = (NodeBinOp) assign.getExpr();
+        assertInstanceOf(NodeCost.class, node.getLeft());
+
+        // Una parentesi in più resta aperta: errore, non StackOverflowError
+        sorgente.insert(4, '(');
+        Parser errato = new Parser(Scanner.fromText(sorgente).tokenize());
+        assertThrows(SyntacticException.class, () -> errato.parse());
+
+        // Anche le fasi successive al parser visitano l'albero senza ricorsione: con una variabile
+        // in fondo alle parentesi il constant folding non riduce l'espressione a una costante
+        StringBuilder programma = new StringBuilder("int x = 2; float f = 0.5;\nint y = ");
+        for (int i = 0; i < profondita; i++) {
+            programma.append("(1 + ");
+        }
+        programma.append('x');
+        for (int i = 0; i < profondita; i++) {
+            programma.append(')');
+        }
+        programma.append(";\nfloat z = ");
+        for (int i = 0; i < profondita; i++) {
+            programma.append('(');
+        }
+        programma.append("x");
+        for (int i = 0; i < profondita; i++) {
+            programma.append(i % 2 == 0 ? " * 2 + f)" : " / 2 - 1)");
+        }
+        programma.append(";\nprint y; print z;");
+        String codice = new Compiler().compile(programma);
+        String stampato = DcInterpreter.run(codice);
+        assertEquals(new Compiler().evaluate(programma), stampato);
+        assertTrue(stampato.startsWith((profondita + 2) + "\n"));
+    }
+
+    /**
+     * Verifica che con la condivisione attiva le sottoespressioni identiche siano lo stesso nodo,
+     * che un assegnamento interrompa la condivisione delle letture della variabile
+     * e che il codice generato non cambi.
+     */
+    @Test
+    void testCondivisioneSottoespressioni() {
+        String sorgente = "int a = 1; float b = a * 2 + a * 2; a = 3; b = a * 2 + 0.5; print b;";
+
+        Parser parser = new Parser(Scanner.fromText(sorgente).tokenize());
+        HashConsFactory sharing = new HashConsFactory();
+        parser.setHashConsing(sharing);
+        NodeProgram condiviso = parser.parse();
+
+        NodeBinOp somma = (NodeBinOp) ((NodeDecl) condiviso.getStatements().get(1)).getInit();
+        assertSame(somma.getLeft(), somma.getRight());
+        // Dopo "a = 3" la lettura di a è un nodo nuovo, mentre la costante 2 resta condivisa
+        NodeBinOp dopo = (NodeBinOp) ((NodeBinOp) ((NodeAssign) condiviso.getStatements().get(3)).getExpr()).getLeft();
+        NodeBinOp prima = (NodeBinOp) somma.getLeft();
+        assertNotSame(prima, dopo);
+        assertNotSame(prima.getLeft(), dopo.getLeft());
+        assertSame(prima.getRight(), dopo.getRight());
+        assertTrue(sharing.size() < sharing.requests());
+
+        NodeProgram normale = new Parser(Scanner.fromText(sorgente).tokenize()).parse();
+        assertEquals(generaCodice(normale), generaCodice(condiviso));
+    }
+
+    private static String generaCodice(NodeProgram program) {
+        program.accept(new TypeCheckVisitor());
+        CodeGeneratorVisitor codeGen = new CodeGeneratorVisitor();
+        program.accept(codeGen);
+        return codeGen.getCode();
+    }
+}
@@ -0,0 +1,130 @@
+package it.unipmn.compilatore.test;
+
+import it.unipmn.compilatore.Compiler;
+import it.unipmn.compilatore.ast.LangType;
+import it.unipmn.compilatore.symboltable.Symbol;
+import it.unipmn.compilatore.trace.Trace;
+import it.unipmn.compilatore.visitor.DcCode;
+import it.unipmn.compilatore.visitor.DcOp;
+import it.unipmn.compilatore.visitor.PeepholeOptimizer;
+import it.unipmn.compilatore.visitor.PeepholeOptimizer.Rule;
+import it.unipmn.compilatore.visitor.RegisterAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per l'ottimizzatore peephole sul codice 'dc'.
+ */
+public class PeepholeTest {
+
+    /**
+     * Verifica che un valore salvato e subito riletto per l'ultima volta resti sullo stack,
+     * e che la stampa non scriva più nel registro cestino.
+     */
+    @Test
+    void testSalvataggioERiletturaStampa() {
+        Symbol a = variabile('a');
+        DcCode code = new DcCode();
+        code.number("5");
+        code.store(a);
+        code.load(a);
+        code.markLastUse(2);
+        code.add(DcOp.PRINT);
+        code.store(RegisterAllocator.SCRATCH);
+
+        PeepholeOptimizer peephole = new PeepholeOptimizer(Trace.disabled());
+        DcCode out = new DcCode();
+        peephole.optimize(code, out);
+
+        assertEquals("5 p c\n", out.toString());
+        assertEquals(1, peephole.getApplied(Rule.STORE_LOAD));
+        assertEquals(2, peephole.getRemoved(Rule.STORE_LOAD));
+        assertEquals(1, peephole.getApplied(Rule.PRINT_CLEAR));
+        assertEquals(0, peephole.getRemoved(Rule.PRINT_CLEAR));
+        assertEquals(2, peephole.getRemovedTotal());
+    }
+
+    /**
+     * Verifica le altre regole: la rilettura di una variabile ancora viva diventa 'd',
+     * un valore scartato appena creato sparisce, e così il salvataggio di una variabile in se stessa.
+     */
+    @Test
+    void testAltreRegole() {
+        Symbol a = variabile('a');
+        Symbol b = variabile('b');
+        DcCode code = new DcCode();
+        code.load(b);
+        code.store(b);
+        code.number("_2");
+        code.store(a);
+        code.load(a);
+        code.load(b);
+        code.add(DcOp.ADD);
+        code.store(b);
+        code.number("7");
+        code.store(RegisterAllocator.SCRATCH);
+
+        PeepholeOptimizer peephole = new PeepholeOptimizer(Trace.disabled());
+        DcCode out = new DcCode();
+        peephole.optimize(code, out);
+
+        assertEquals("_2 d sa lb + sb\n", out.toString());
+        assertEquals(1, peephole.getApplied(Rule.STORE_LOAD));
+        assertEquals(0, peephole.getRemoved(Rule.STORE_LOAD));
+        assertEquals(2, peephole.getRemoved(Rule.SELF_STORE));
+        assertEquals(2, peephole.getRemoved(Rule.DEAD_PUSH));
+    }
+
+    /**
+     * Verifica che vengano applicate solo le regole scelte, anche da riga di comando.
+     */
+    @Test
+    void testRegoleConfigurabili() {
+        assertEquals(EnumSet.of(Rule.PRINT_CLEAR, Rule.SELF_STORE), PeepholeOptimizer.parseRules("print_clear, SELF_STORE"));
+        assertTrue(PeepholeOptimizer.parseRules("off").isEmpty());
+        assertEquals(EnumSet.allOf(Rule.class), PeepholeOptimizer.parseRules("all"));
+        assertThrows(IllegalArgumentException.class, () -> PeepholeOptimizer.parseRules("nessuna"));
+
+        String sorgente = "int a = 4; a = a * 3; print a;";
+        Compiler compiler = new Compiler();
+        compiler.setPeepholeRules(EnumSet.of(Rule.PRINT_CLEAR));
+        String soloStampa = compiler.compile(sorgente);
+        assertEquals("4 sa\nla 3 * sa\nla p c\n", soloStampa);
+
+        compiler.setPeepholeRules(EnumSet.noneOf(Rule.class));
+        assertEquals("4 sa\nla 3 * sa\nla p sz\n", compiler.compile(sorgente));
+    }
+
+    /**
+     * Verifica su un programma più lungo che il codice ottimizzato sia più corto e stampi gli stessi valori.
+     */
+    @Test
+    void testStessiRisultati() {
+        StringBuilder src = new StringBuilder("int x = 1; float f = 0.5;\n");
+        for (int i = 0; i < 300; i++) {
+            src.append("x = x * 3 + ").append(i).append(";\n");
+            src.append("f = f / 2 + x;\n");
+            src.append("print x; print f;\n");
+        }
+        String sorgente = src.toString();
+
+        Compiler compiler = new Compiler();
+        String ottimizzato = compiler.compile(sorgente);
+        compiler.setPeepholeRules(EnumSet.noneOf(Rule.class));
+        String generato = compiler.compile(sorgente);
+
+        assertTrue(ottimizzato.length() < generato.length());
+        assertFalse(ottimizzato.contains("s" + RegisterAllocator.SCRATCH));
+        assertEquals(DcInterpreter.run(generato), DcInterpreter.run(ottimizzato));
+        assertEquals(compiler.evaluate(sorgente), DcInterpreter.run(ottimizzato));
+    }
+
+    private static Symbol variabile(char register) {
+        Symbol symbol = new Symbol(LangType.INT);
+        symbol.setRegister(register);
+        return symbol;
+    }
+}
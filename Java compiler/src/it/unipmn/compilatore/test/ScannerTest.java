@@ -1,6 +1,10 @@
 package it.unipmn.compilatore.test;
 
+import it.unipmn.compilatore.scanner.IncrementalLexer;
+import it.unipmn.compilatore.scanner.ParallelLexer;
 import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.token.Token;
+import it.unipmn.compilatore.token.TokenBuffer;
 import it.unipmn.compilatore.token.TokenType;
 import it.unipmn.compilatore.exceptions.LexicalException;
 import org.junit.jupiter.api.Test;
@@ -8,6 +12,11 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -101,4 +110,267 @@ public class ScannerTest {
         
         scanner.close();
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifica che la lettura a blocchi e quella mappata in memoria producano
+     * esattamente gli stessi token, con gli stessi numeri di riga, anche su un
+     * sorgente abbastanza grande da attraversare più blocchi di lettura.
+     */
+    @Test
+    void testModalitaMappataEquivalente() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append("int v").append(i).append(" = ").append(i).append(" * 2.5;\n");
+        }
+        File file = creaFileTemporaneo(sb.toString());
+        Scanner bufferizzato = new Scanner(file.getAbsolutePath());
+        Scanner mappato = new Scanner(file.getAbsolutePath(), true);
+
+        Token a;
+        do {
+            a = bufferizzato.nextToken();
+            Token b = mappato.nextToken();
+            // Confronto tipo, valore e riga di ogni coppia di token
+            assertEquals(a.toString(), b.toString());
+        } while (a.getType() != TokenType.EOF);
+
+        // L'ultima riga letta deve corrispondere al numero di a capo del file
+        assertEquals(20001, bufferizzato.getRiga());
+        assertEquals(20001, mappato.getRiga());
+
+        bufferizzato.close();
+        mappato.close();
+    }
+
+    /**
+     * Verifica che la modalità mappata tokenizzi il file direttamente dalla mappatura
+     * e rifiuti con un errore lessicale un file oltre Integer.MAX_VALUE byte.
+     */
+    @Test
+    void testModalitaMappataLimite() throws Exception {
+        File file = creaFileTemporaneo("int a = 5; /* commento */ print a;\n");
+        Scanner mappato = new Scanner(file.getAbsolutePath(), true);
+        TokenBuffer tokens = mappato.tokenize();
+        assertEquals(9, tokens.size());
+        assertEquals("a", tokens.lexeme(1));
+        mappato.close();
+
+        // Il file sparso non occupa spazio: basta la sua dimensione per il rifiuto
+        File enorme = File.createTempFile("testScanner", ".txt");
+        enorme.deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(enorme, "rw")) {
+            raf.setLength(Integer.MAX_VALUE + 1L);
+        }
+        LexicalException e = assertThrows(LexicalException.class,
+                () -> new Scanner(enorme.getAbsolutePath(), true));
+        assertTrue(e.getMessage().contains(String.valueOf(Integer.MAX_VALUE + 1L)));
+        assertTrue(enorme.delete());
+    }
+
+    /**
+     * Verifica che la tokenizzazione compatta descriva gli stessi token di nextToken(),
+     * ritagliando correttamente dal sorgente i testi di numeri e identificatori.
+     */
+    @Test
+    void testTokenizzazioneCompatta() throws Exception {
+        String sorgente = "int alfa = 10;\nfloat b = alfa * 2.75;\n\nprint b;";
+        Scanner aFlusso = Scanner.fromText(sorgente);
+        TokenBuffer tokens = Scanner.fromText(sorgente).tokenize();
+
+        int i = 0;
+        Token t;
+        do {
+            t = aFlusso.nextToken();
+            assertEquals(t.toString(), tokens.toToken(i).toString());
+            i++;
+        } while (t.getType() != TokenType.EOF);
+        assertEquals(i, tokens.size());
+
+        // Il lessema viene ritagliato dal testo originale usando offset e lunghezza
+        assertEquals("alfa", tokens.lexeme(1));
+        assertEquals("2.75", tokens.lexeme(10));
+        assertEquals(sorgente.indexOf("2.75"), tokens.start(10));
+        assertNull(tokens.lexeme(2));
+        assertEquals(4, tokens.riga(tokens.size() - 2));
+    }
+
+    /**
+     * Verifica che ogni identificatore distinto riceva un id stabile e un'unica istanza String.
+     */
+    @Test
+    void testInternamentoIdentificatori() {
+        Scanner scanner = Scanner.fromText("alfa = beta + alfa;");
+        Token primo = scanner.nextToken();   // alfa
+        scanner.nextToken();                 // =
+        Token beta = scanner.nextToken();    // beta
+        scanner.nextToken();                 // +
+        Token secondo = scanner.nextToken(); // alfa
+
+        assertEquals(0, primo.getSymbolId());
+        assertEquals(1, beta.getSymbolId());
+        assertEquals(primo.getSymbolId(), secondo.getSymbolId());
+        // La seconda occorrenza non crea una nuova stringa
+        assertSame(primo.getVal(), secondo.getVal());
+        assertEquals(2, scanner.getIdentifiers().size());
+        assertEquals("beta", scanner.getIdentifiers().name(1));
+    }
+
+    /**
+     * Verifica che l'automa distingua le parole chiave dai loro prefissi ed estensioni.
+     */
+    @Test
+    void testParoleChiaveEPrefissi() {
+        Scanner scanner = Scanner.fromText("pr print printx int3 floa float");
+        TokenType[] attesi = {TokenType.ID, TokenType.PRINT, TokenType.ID,
+                              TokenType.ID, TokenType.ID, TokenType.TYFLOAT, TokenType.EOF};
+
+        for (TokenType atteso : attesi) {
+            assertEquals(atteso, scanner.nextToken().getType());
+        }
+        // Le parole chiave non finiscono nella tabella degli identificatori
+        assertEquals(4, scanner.getIdentifiers().size());
+    }
+
+    /**
+     * Verifica che la scansione parallela produca esattamente gli stessi token di quella sequenziale,
+     * con righe e id degli identificatori ricuciti correttamente tra le porzioni.
+     */
+    @Test
+    void testScansioneParallelaEquivalente() {
+        StringBuilder sorgente = new StringBuilder();
+        for (int i = 0; sorgente.length() < 3 * ParallelLexer.MIN_CHUNK; i++) {
+            sorgente.append("int v").append(i % 50).append(" = ").append(i).append(";\n");
+            sorgente.append("print v").append((i * 7) % 50).append(";\n\n");
+        }
+
+        Scanner scanner = Scanner.fromText(sorgente);
+        TokenBuffer parallelo = new ParallelLexer(new ForkJoinPool(3)).tokenize(sorgente);
+
+        int i = 0;
+        Token atteso;
+        do {
+            atteso = scanner.nextToken();
+            Token letto = parallelo.toToken(i++);
+            assertEquals(atteso.toString(), letto.toString());
+            assertEquals(atteso.getSymbolId(), letto.getSymbolId());
+        } while (atteso.getType() != TokenType.EOF);
+        assertEquals(i, parallelo.size());
+    }
+
+    /**
+     * Verifica che un errore lessicale nella scansione parallela riporti la riga assoluta.
+     */
+    @Test
+    void testScansioneParallelaErrore() {
+        StringBuilder sorgente = new StringBuilder();
+        int righe = 0;
+        while (sorgente.length() < 3 * ParallelLexer.MIN_CHUNK) {
+            sorgente.append("int a = 1;\n");
+            righe++;
+        }
+        sorgente.append("a = 2 @ 3;\n");
+
+        LexicalException e = assertThrows(LexicalException.class,
+                () -> new ParallelLexer(new ForkJoinPool(3)).tokenize(sorgente));
+        assertTrue(e.getMessage().contains("riga " + (righe + 1)));
+    }
+
+    /**
+     * Verifica che la scansione incrementale dia gli stessi token di una scansione completa
+     * del testo modificato, rileggendo solo i token vicini alla modifica.
+     */
+    @Test
+    void testScansioneIncrementale() {
+        StringBuilder sorgente = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sorgente.append("int v").append(i).append(" = ").append(i).append(".5;\n");
+        }
+        String prima = sorgente.toString();
+        TokenBuffer vecchi = Scanner.fromText(prima).tokenize();
+
+        // Modifiche che allungano un token, ne uniscono due, aggiungono righe e ne tolgono
+        String[][] modifiche = {
+            {"v1000 = 1000", "v1000x = 1000"},
+            {"int v500 = 500.5;", "int v500 = 500.5;\nprint v500;\n\n"},
+            {"v7 = 7.5;\nint v8", "v7 = 7.5; int v8"},
+            {"= 42.5", "= 42.75 * (v1 + v2)"},
+        };
+        for (String[] modifica : modifiche) {
+            int inizio = prima.indexOf(modifica[0]);
+            String dopo = prima.substring(0, inizio) + modifica[1] + prima.substring(inizio + modifica[0].length());
+
+            IncrementalLexer incrementale = new IncrementalLexer();
+            TokenBuffer aggiornati = incrementale.relex(vecchi, dopo, inizio, modifica[0].length(), modifica[1].length());
+            TokenBuffer completi = Scanner.fromText(dopo).tokenize();
+
+            assertEquals(completi.size(), aggiornati.size());
+            for (int i = 0; i < completi.size(); i++) {
+                assertEquals(completi.toToken(i).toString(), aggiornati.toToken(i).toString());
+                assertEquals(completi.start(i), aggiornati.start(i));
+                assertEquals(completi.length(i), aggiornati.length(i));
+            }
+            assertTrue(incrementale.getRelexedCount() < 20,
+                       "Riletti troppi token: " + incrementale.getRelexedCount());
+        }
+    }
+
+    /**
+     * Verifica che i commenti di riga e a blocco vengano saltati da tutte le sorgenti,
+     * mantenendo corretto il conteggio delle righe e la divisione.
+     */
+    @Test
+    void testCommenti() throws IOException {
+        String sorgente = "/* intestazione\n * su piu' righe; con ; e / e * */\n"
+                        + "int a = 6 / 2; // commento di riga ; / *\n"
+                        + "//\n"
+                        + "a = a/**/*3;\n"
+                        + "print a; // fine senza a capo";
+
+        Scanner[] scanners = {
+            Scanner.fromText(sorgente),
+            Scanner.fromReader(new StringReader(sorgente)),
+            Scanner.fromBuffer(ByteBuffer.wrap(sorgente.getBytes(StandardCharsets.US_ASCII)))
+        };
+        for (Scanner scanner : scanners) {
+            assertEquals(TokenType.TYINT, scanner.nextToken().getType());
+            scanner.nextToken(); // a
+            scanner.nextToken(); // =
+            scanner.nextToken(); // 6
+            Token diviso = scanner.nextToken();
+            assertEquals(TokenType.DIVIDE, diviso.getType());
+            assertEquals(3, diviso.getRiga());
+            scanner.nextToken(); // 2
+            scanner.nextToken(); // ;
+
+            Token a = scanner.nextToken();
+            assertEquals("a", a.getVal());
+            assertEquals(5, a.getRiga());
+            scanner.nextToken(); // =
+            scanner.nextToken(); // a
+            assertEquals(TokenType.TIMES, scanner.nextToken().getType());
+            scanner.nextToken(); // 3
+            scanner.nextToken(); // ;
+
+            Token print = scanner.nextToken();
+            assertEquals(TokenType.PRINT, print.getType());
+            assertEquals(6, print.getRiga());
+            scanner.nextToken(); // a
+            scanner.nextToken(); // ;
+            assertEquals(TokenType.EOF, scanner.nextToken().getType());
+        }
+    }
+
+    /**
+     * Verifica che un commento a blocco non chiuso sia un errore lessicale.
+     */
+    @Test
+    void testCommentoNonChiuso() {
+        Scanner scanner = Scanner.fromText("int a;\n/* manca la chiusura\nprint a;");
+        scanner.nextToken(); // int
+        scanner.nextToken(); // a
+        scanner.nextToken(); // ;
+
+        LexicalException e = assertThrows(LexicalException.class, scanner::nextToken);
+        assertTrue(e.getMessage().contains("riga 2"));
+    }
+}
@@ -3,6 +3,7 @@ package it.unipmn.compilatore.test;
 import it.unipmn.compilatore.symboltable.Symbol;
 import it.unipmn.compilatore.symboltable.SymbolTable;
 import it.unipmn.compilatore.ast.LangType;
+import it.unipmn.compilatore.ast.NodeId;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -54,4 +55,78 @@ public class SymbolTableTest {
         // Qui non deve più esistere
         assertNull(st.lookup("temp"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifica la ricerca tramite id internato e la sua coerenza con la ricerca per nome.
+     */
+    @Test
+    void testRicercaPerId() {
+        SymbolTable st = new SymbolTable();
+        Symbol globale = new Symbol(LangType.INT);
+        assertTrue(st.insert(new NodeId("x", 1, 7), globale));
+
+        // Un altro nodo con lo stesso id risolve allo stesso simbolo, anche per nome
+        assertSame(globale, st.lookup(new NodeId("x", 2, 7)));
+        assertSame(globale, st.lookup("x"));
+        // Il duplicato nello stesso scope viene rifiutato anche passando dall'id
+        assertFalse(st.insert(new NodeId("x", 3, 7), new Symbol(LangType.FLOAT)));
+
+        // Uno scope interno può nascondere la variabile esterna e la libera all'uscita
+        st.enterScope();
+        Symbol locale = new Symbol(LangType.FLOAT);
+        assertTrue(st.insert(new NodeId("x", 4, 7), locale));
+        assertSame(locale, st.lookup(new NodeId("x", 4, 7)));
+        st.exitScope();
+        assertSame(globale, st.lookup(new NodeId("x", 5, 7)));
+        assertNull(st.lookup(new NodeId("y", 5, 8)));
+    }
+
+    /**
+     * Verifica che a ogni uscita da uno scope torni visibile il simbolo dello scope precedente,
+     * anche con molti livelli che nascondono la stessa variabile.
+     */
+    @Test
+    void testScopeProfondi() {
+        SymbolTable st = new SymbolTable();
+        int livelli = 1000;
+        Symbol[] simboli = new Symbol[livelli + 1];
+        simboli[0] = new Symbol(LangType.INT);
+        st.insert("x", simboli[0]);
+        for (int d = 1; d <= livelli; d++) {
+            st.enterScope();
+            // Ogni due livelli nascondo x, negli altri dichiaro solo una variabile locale
+            if (d % 2 == 0) {
+                simboli[d] = new Symbol(LangType.FLOAT);
+                assertTrue(st.insert("x", simboli[d]));
+            } else {
+                simboli[d] = simboli[d - 1];
+                assertTrue(st.insert("y" + d, new Symbol(LangType.INT)));
+            }
+        }
+        for (int d = livelli; d > 0; d--) {
+            assertSame(simboli[d], st.lookup("x"));
+            st.exitScope();
+            assertNull(st.lookup("y" + d));
+        }
+        assertSame(simboli[0], st.lookup("x"));
+        // Lo scope globale non si chiude
+        st.exitScope();
+        assertSame(simboli[0], st.lookup("x"));
+    }
+
+    /**
+     * Verifica che una copia della tabella sia indipendente dall'originale.
+     */
+    @Test
+    void testCopia() {
+        SymbolTable st = new SymbolTable();
+        Symbol x = new Symbol(LangType.INT);
+        st.insert(new NodeId("x", 1, 0), x);
+        SymbolTable copia = st.copy();
+
+        assertTrue(copia.insert("y", new Symbol(LangType.FLOAT)));
+        assertNull(st.lookup("y"));
+        assertSame(x, copia.lookup(new NodeId("x", 2, 0)));
+        assertFalse(copia.insert("x", new Symbol(LangType.FLOAT)));
+    }
+}
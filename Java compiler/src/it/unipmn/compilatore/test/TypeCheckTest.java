@@ -1,10 +1,18 @@
 package it.unipmn.compilatore.test;
 
+import it.unipmn.compilatore.Compiler;
 import it.unipmn.compilatore.ast.*;
+import it.unipmn.compilatore.parser.Parser;
+import it.unipmn.compilatore.scanner.Scanner;
+import it.unipmn.compilatore.visitor.ParallelTypeChecker;
+import it.unipmn.compilatore.visitor.PrintASTVisitor;
 import it.unipmn.compilatore.visitor.TypeCheckVisitor;
+import it.unipmn.compilatore.trace.Trace;
 import it.unipmn.compilatore.exceptions.SyntacticException;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.ForkJoinPool;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -96,4 +104,119 @@ public class TypeCheckTest {
         NodeConvert cast = (NodeConvert) somma.getLeft();
         assertEquals(LangType.FLOAT, cast.getTargetType());
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifica che il controllo parallelo inserisca le stesse conversioni della visita sequenziale
+     * su un programma abbastanza grande da essere diviso in più porzioni.
+     */
+    @Test
+    void testControlloParallelo() {
+        String sorgente = programmaGrande(null);
+        NodeProgram sequenziale = new Parser(Scanner.fromText(sorgente).tokenize()).parse();
+        sequenziale.accept(new TypeCheckVisitor());
+        NodeProgram parallelo = new Parser(Scanner.fromText(sorgente).tokenize()).parse();
+        new ParallelTypeChecker(new ForkJoinPool(4), Trace.disabled()).check(parallelo);
+
+        PrintASTVisitor attesa = new PrintASTVisitor();
+        sequenziale.accept(attesa);
+        PrintASTVisitor ottenuta = new PrintASTVisitor();
+        parallelo.accept(ottenuta);
+        assertEquals(attesa.getOutput(), ottenuta.getOutput());
+    }
+
+    /**
+     * Verifica che con errori in più porzioni venga segnalato il primo in ordine di programma,
+     * compreso l'uso di una variabile dichiarata solo più avanti.
+     */
+    @Test
+    void testErroreParalleloDeterministico() {
+        String sorgente = programmaGrande("print tardi;");
+        NodeProgram sequenziale = new Parser(Scanner.fromText(sorgente).tokenize()).parse();
+        SyntacticException attesa = assertThrows(SyntacticException.class,
+                () -> sequenziale.accept(new TypeCheckVisitor()));
+
+        for (int r = 0; r < 5; r++) {
+            NodeProgram parallelo = new Parser(Scanner.fromText(sorgente).tokenize()).parse();
+            SyntacticException ottenuta = assertThrows(SyntacticException.class,
+                    () -> new ParallelTypeChecker(new ForkJoinPool(4), Trace.disabled()).check(parallelo));
+            assertEquals(attesa.getMessage(), ottenuta.getMessage());
+        }
+    }
+
+    /**
+     * Verifica che il controllo dei tipi leghi ogni uso di una variabile allo stesso Symbol
+     * della sua dichiarazione, anche quando uso e dichiarazione cadono in porzioni diverse.
+     */
+    @Test
+    void testLegameSimboli() {
+        NodeProgram p = new Parser(Scanner.fromText("int a = 1; float b; b = a + 2; print b;").tokenize()).parse();
+        p.accept(new TypeCheckVisitor());
+        NodeDecl a = (NodeDecl) p.getStatements().get(0);
+        NodeDecl b = (NodeDecl) p.getStatements().get(1);
+        NodeAssign assign = (NodeAssign) p.getStatements().get(2);
+        NodePrint print = (NodePrint) p.getStatements().get(3);
+        assertNotNull(a.getId().getSymbol());
+        assertSame(b.getId().getSymbol(), assign.getId().getSymbol());
+        assertSame(b.getId().getSymbol(), print.getId().getSymbol());
+        NodeBinOp somma = (NodeBinOp) ((NodeConvert) assign.getExpr()).getExpr();
+        assertSame(a.getId().getSymbol(), ((NodeDeref) somma.getLeft()).getId().getSymbol());
+
+        NodeProgram parallelo = new Parser(Scanner.fromText(programmaGrande(null)).tokenize()).parse();
+        new ParallelTypeChecker(new ForkJoinPool(4), Trace.disabled()).check(parallelo);
+        NodeDecl prima = (NodeDecl) parallelo.getStatements().get(0);
+        NodeDecl ultima = (NodeDecl) parallelo.getStatements().get(parallelo.getStatements().size() - 1);
+        NodeConvert prodotto = (NodeConvert) ((NodeBinOp) ultima.getInit()).getLeft();
+        NodeDeref letta = (NodeDeref) ((NodeBinOp) prodotto.getExpr()).getLeft();
+        assertSame(prima.getId().getSymbol(), letta.getId().getSymbol());
+    }
+
+    /**
+     * Verifica che un programma con sottoespressioni condivise venga controllato in sequenza:
+     * la stessa espressione compare in tutte le porzioni e riceve una sola conversione,
+     * e il compilatore con la condivisione attiva genera lo stesso codice.
+     */
+    @Test
+    void testControlloCondiviso() {
+        StringBuilder sb = new StringBuilder("int a = 1;\n");
+        for (int i = 0; i < 3 * ParallelTypeChecker.MIN_CHUNK; i++) {
+            sb.append("float f").append(i).append(" = a * 2 + 0.5;\n");
+        }
+        String sorgente = sb.toString();
+
+        Parser parser = new Parser(Scanner.fromText(sorgente).tokenize());
+        parser.setHashConsing(new HashConsFactory());
+        NodeProgram condiviso = parser.parse();
+        assertTrue(condiviso.isShared());
+        new ParallelTypeChecker(new ForkJoinPool(4), Trace.disabled()).check(condiviso);
+
+        NodeBinOp prima = (NodeBinOp) ((NodeDecl) condiviso.getStatements().get(1)).getInit();
+        NodeBinOp ultima = (NodeBinOp) ((NodeDecl) condiviso.getStatements().get(3 * ParallelTypeChecker.MIN_CHUNK)).getInit();
+        assertSame(prima, ultima);
+        NodeConvert conversione = assertInstanceOf(NodeConvert.class, prima.getLeft());
+        assertInstanceOf(NodeBinOp.class, conversione.getExpr());
+
+        Compiler compiler = new Compiler();
+        compiler.setHashConsing(true);
+        assertEquals(new Compiler().compile(sorgente), compiler.compile(sorgente));
+    }
+
+    /**
+     * Genera un programma di alcune porzioni del controllo parallelo, con conversioni implicite.
+     * Se errore non è null, lo inserisce a un terzo del programma, seguito più avanti dalla
+     * dichiarazione di "tardi" e da un secondo errore.
+     */
+    private static String programmaGrande(String errore) {
+        int istruzioni = 3 * ParallelTypeChecker.MIN_CHUNK;
+        StringBuilder sb = new StringBuilder("int a = 1;\n");
+        for (int i = 0; i < istruzioni; i++) {
+            if (errore != null && i == istruzioni / 3) {
+                sb.append(errore).append('\n');
+            }
+            if (errore != null && i == 2 * istruzioni / 3) {
+                sb.append("int tardi = 2;\nprint nessuno;\n");
+            }
+            sb.append("float f").append(i).append(" = a * ").append(i).append(" + 0.5;\n");
+        }
+        return sb.toString();
+    }
+}
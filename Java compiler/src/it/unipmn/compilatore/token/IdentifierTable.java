@@ -0,0 +1,140 @@
+package it.unipmn.compilatore.token;
+
+import java.util.Arrays;
+
+/**
+ * Tabella di internamento degli identificatori.
+ * <p>
+ * Assegna a ogni nome di variabile distinto un numero intero progressivo (0, 1, 2, ...)
+ * e conserva un'unica istanza String per ciascun nome. Lo Scanner la interroga
+ * direttamente con i caratteri appena letti, quindi un identificatore già visto
+ * non produce nessuna nuova stringa. Gli id così ottenuti viaggiano nei token e nei
+ * nodi NodeId e permettono alla Symbol Table di usare semplici accessi a vettore.
+ * </p>
+ * <p>
+ * Internamente uso una tabella hash a indirizzamento aperto con scansione lineare,
+ * che memorizza in ogni cella l'id più uno (zero indica una cella vuota).
+ * </p>
+ */
+public final class IdentifierTable {
+
+    private int[] slots;
+    // Hash e nome di ogni id, indicizzati direttamente per id
+    private int[] hashes;
+    private String[] names;
+    private int size;
+
+    /**
+     * Costruttore di una tabella vuota.
+     */
+    public IdentifierTable() {
+        this.slots = new int[64];
+        this.hashes = new int[32];
+        this.names = new String[32];
+        this.size = 0;
+    }
+
+    /**
+     * Restituisce l'id dell'identificatore formato dai primi length caratteri del vettore,
+     * assegnandone uno nuovo se il nome non era mai stato visto.
+     * @param chars I caratteri dell'identificatore.
+     * @param length Il numero di caratteri validi.
+     * @return L'id intero dell'identificatore.
+     */
+    public int intern(char[] chars, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars[i];
+        }
+        h ^= (h >>> 16);
+
+        int mask = slots.length - 1;
+        int i = h & mask;
+        while (true) {
+            int entry = slots[i];
+            if (entry == 0) {
+                // Nome mai visto: solo adesso creo la stringa
+                return add(new String(chars, 0, length), h, i);
+            }
+            int id = entry - 1;
+            if (hashes[id] == h && sameChars(names[id], chars, length)) {
+                return id;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Restituisce l'id dell'identificatore indicato, assegnandone uno nuovo se necessario.
+     * @param name Il nome dell'identificatore.
+     * @return L'id intero dell'identificatore.
+     */
+    public int intern(String name) {
+        return intern(name.toCharArray(), name.length());
+    }
+
+    /**
+     * Restituisce il nome associato a un id.
+     * @param id L'id dell'identificatore.
+     * @return L'unica istanza String del nome.
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Restituisce quanti identificatori distinti sono stati internati.
+     * @return Il numero di id assegnati.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Registra un nuovo nome nella cella libera indicata.
+     */
+    private int add(String name, int h, int slot) {
+        int id = size++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        names[id] = name;
+        hashes[id] = h;
+        slots[slot] = id + 1;
+
+        // Mantengo il fattore di carico sotto il 50% per avere catene di scansione corte
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Raddoppia la tabella e reinserisce tutti gli id.
+     */
+    private void rehash() {
+        int[] larger = new int[slots.length * 2];
+        int mask = larger.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = hashes[id] & mask;
+            while (larger[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            larger[i] = id + 1;
+        }
+        slots = larger;
+    }
+
+    private static boolean sameChars(String name, char[] chars, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
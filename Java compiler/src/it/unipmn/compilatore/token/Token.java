@@ -16,6 +16,8 @@ public class Token {
     private final TokenType type;
     // Il testo originale estratto (es. "3.14" o "somma")
     private final String val;
+    // L'id assegnato all'identificatore dalla IdentifierTable dello Scanner (-1 se non è un identificatore)
+    private final int symbolId;
 
     /**
      * Costruttore completo per creare un Token che possiede un valore.
@@ -26,6 +28,18 @@ public class Token {
      * @throws LexicalException Se il tipo passato è nullo.
      */
     public Token(TokenType type, int riga, String val) {
+        this(type, riga, val, -1);
+    }
+
+    /**
+     * Costruttore per i token identificatore che portano anche l'id internato del nome.
+     * @param type Il tipo del token.
+     * @param riga Il numero di riga.
+     * @param val Il valore testuale associato.
+     * @param symbolId L'id intero dell'identificatore, oppure -1.
+     * @throws LexicalException Se il tipo passato è nullo.
+     */
+    public Token(TokenType type, int riga, String val, int symbolId) {
         // Verifico per sicurezza che il tipo non sia nullo
         if(type == null) {
             throw new LexicalException("Il tipo non deve essere nullo");
@@ -35,6 +49,7 @@ public class Token {
         this.type = type;
         this.val = val;
         this.riga = riga;
+        this.symbolId = symbolId;
     }
 
     /**
@@ -73,6 +88,14 @@ public class Token {
         return val;
     }
 
+    /**
+     * Restituisce l'id intero assegnato all'identificatore dallo Scanner.
+     * @return L'id dell'identificatore, oppure -1 se il token non ne ha uno.
+     */
+    public int getSymbolId() {
+        return symbolId;
+    }
+
     /**
      * Crea una stringa testuale che rappresenta il token.
      * Serve molto durante le fasi di debug per stampare a video cosa ha letto lo scanner.
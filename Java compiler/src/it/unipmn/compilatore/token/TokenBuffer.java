@@ -0,0 +1,245 @@
+package it.unipmn.compilatore.token;
+
+import java.util.Arrays;
+
+/**
+ * Classe che memorizza una sequenza di token in forma compatta.
+ * <p>
+ * Invece di un oggetto Token per ogni occorrenza, tengo quattro vettori primitivi
+ * paralleli: il tipo (come ordinale di TokenType), la riga, l'offset di inizio nel
+ * testo sorgente e la lunghezza, più l'id internato per gli identificatori.
+ * Il testo dei numeri viene ritagliato dal sorgente solo quando viene effettivamente
+ * richiesto con lexeme(), mentre i nomi degli identificatori arrivano già pronti
+ * dalla IdentifierTable.
+ * Il Parser la scorre con un cursore intero senza creare oggetti Token.
+ * </p>
+ */
+public final class TokenBuffer {
+
+    // Copia locale dei valori dell'enumerazione per convertire gli ordinali senza allocazioni
+    private static final TokenType[] TYPES = TokenType.values();
+
+    // Il testo sorgente da cui ritagliare i lessemi
+    private final CharSequence text;
+    // La tabella che associa gli id degli identificatori ai loro nomi
+    private final IdentifierTable identifiers;
+    private byte[] types;
+    private int[] righe;
+    private int[] starts;
+    private int[] lengths;
+    private int[] symbolIds;
+    private int size;
+
+    /**
+     * Costruttore di un buffer vuoto collegato al testo sorgente.
+     * @param text Il testo indicizzato dagli offset dei token.
+     * @param identifiers La tabella degli identificatori usata dallo Scanner.
+     */
+    public TokenBuffer(CharSequence text, IdentifierTable identifiers) {
+        this.text = text;
+        this.identifiers = identifiers;
+        this.types = new byte[256];
+        this.righe = new int[256];
+        this.starts = new int[256];
+        this.lengths = new int[256];
+        this.symbolIds = new int[256];
+        this.size = 0;
+    }
+
+    /**
+     * Aggiunge un token in coda al buffer.
+     * @param type Il tipo del token.
+     * @param riga La riga in cui si trova il token.
+     * @param start L'offset del primo carattere del token nel testo.
+     * @param length Il numero di caratteri del token.
+     * @param symbolId L'id internato dell'identificatore, oppure -1.
+     */
+    public void add(TokenType type, int riga, int start, int length, int symbolId) {
+        if (size == types.length) {
+            grow();
+        }
+        types[size] = (byte) type.ordinal();
+        righe[size] = riga;
+        starts[size] = start;
+        lengths[size] = length;
+        symbolIds[size] = symbolId;
+        size++;
+    }
+
+    /**
+     * Accoda i primi token di un altro buffer costruito sullo stesso testo,
+     * spostandone i numeri di riga e traducendo gli id dei suoi identificatori.
+     * Serve a ricucire i token prodotti separatamente su porzioni diverse del sorgente.
+     * @param other Il buffer da cui copiare i token.
+     * @param count Quanti token copiare, a partire dal primo.
+     * @param rigaOffset Il numero di righe da aggiungere a ogni riga copiata.
+     * @param idMap Per ogni id della tabella dell'altro buffer, l'id corrispondente in questa.
+     */
+    public void addAll(TokenBuffer other, int count, int rigaOffset, int[] idMap) {
+        while (size + count > types.length) {
+            grow();
+        }
+        System.arraycopy(other.types, 0, types, size, count);
+        System.arraycopy(other.starts, 0, starts, size, count);
+        System.arraycopy(other.lengths, 0, lengths, size, count);
+        for (int i = 0; i < count; i++) {
+            righe[size + i] = other.righe[i] + rigaOffset;
+            int id = other.symbolIds[i];
+            symbolIds[size + i] = id < 0 ? id : idMap[id];
+        }
+        size += count;
+    }
+
+    /**
+     * Accoda un intervallo di token di un altro buffer che condivide la stessa tabella degli
+     * identificatori, spostandone offset e righe (ad esempio la parte di un sorgente che segue una modifica).
+     * @param other Il buffer da cui copiare i token.
+     * @param from L'indice del primo token da copiare.
+     * @param count Quanti token copiare.
+     * @param startOffset Lo spostamento da aggiungere all'offset di ogni token.
+     * @param rigaOffset Lo spostamento da aggiungere alla riga di ogni token.
+     */
+    public void addRange(TokenBuffer other, int from, int count, int startOffset, int rigaOffset) {
+        while (size + count > types.length) {
+            grow();
+        }
+        System.arraycopy(other.types, from, types, size, count);
+        System.arraycopy(other.lengths, from, lengths, size, count);
+        System.arraycopy(other.symbolIds, from, symbolIds, size, count);
+        for (int i = 0; i < count; i++) {
+            starts[size + i] = other.starts[from + i] + startOffset;
+            righe[size + i] = other.righe[from + i] + rigaOffset;
+        }
+        size += count;
+    }
+
+    /**
+     * Raddoppia la capacità di tutti i vettori.
+     */
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        righe = Arrays.copyOf(righe, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        symbolIds = Arrays.copyOf(symbolIds, capacity);
+    }
+
+    /**
+     * Restituisce il numero di token memorizzati (EOF compreso).
+     * @return Il numero di token.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce il testo sorgente a cui si riferiscono gli offset.
+     * @return Il testo sorgente.
+     */
+    public CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * Restituisce il tipo del token in posizione i.
+     * @param i L'indice del token.
+     * @return Il tipo del token.
+     */
+    public TokenType type(int i) {
+        return TYPES[types[i]];
+    }
+
+    /**
+     * Restituisce la riga del token in posizione i.
+     * @param i L'indice del token.
+     * @return Il numero di riga.
+     */
+    public int riga(int i) {
+        return righe[i];
+    }
+
+    /**
+     * Restituisce l'offset nel testo del primo carattere del token in posizione i.
+     * @param i L'indice del token.
+     * @return L'offset di inizio.
+     */
+    public int start(int i) {
+        return starts[i];
+    }
+
+    /**
+     * Restituisce la lunghezza del token in posizione i.
+     * @param i L'indice del token.
+     * @return Il numero di caratteri del token.
+     */
+    public int length(int i) {
+        return lengths[i];
+    }
+
+    /**
+     * Restituisce l'id internato dell'identificatore in posizione i.
+     * @param i L'indice del token.
+     * @return L'id dell'identificatore, oppure -1 per gli altri token.
+     */
+    public int symbolId(int i) {
+        return symbolIds[i];
+    }
+
+    /**
+     * Restituisce la tabella degli identificatori a cui si riferiscono gli id.
+     * @return La tabella degli identificatori.
+     */
+    public IdentifierTable getIdentifiers() {
+        return identifiers;
+    }
+
+    /**
+     * Ritaglia dal sorgente il testo del token, come farebbe Token.getVal().
+     * @param i L'indice del token.
+     * @return Il testo per numeri e identificatori, null per gli altri token.
+     */
+    public String lexeme(int i) {
+        TokenType type = type(i);
+        if (type == TokenType.ID) {
+            // Per gli identificatori restituisco l'istanza condivisa, senza creare stringhe
+            return identifiers.name(symbolIds[i]);
+        }
+        if (!hasValue(type)) {
+            return null;
+        }
+        return text.subSequence(starts[i], starts[i] + lengths[i]).toString();
+    }
+
+    /**
+     * Costruisce l'oggetto Token equivalente al token in posizione i.
+     * Serve solo a chi ha ancora bisogno dell'interfaccia a oggetti.
+     * @param i L'indice del token.
+     * @return Il Token corrispondente.
+     */
+    public Token toToken(int i) {
+        return new Token(type(i), righe[i], lexeme(i), symbolIds[i]);
+    }
+
+    /**
+     * Aggiunge a uno StringBuilder la descrizione del token in posizione i,
+     * nello stesso formato di Token.toString(), senza creare stringhe intermedie.
+     * @param i L'indice del token.
+     * @param sb Lo StringBuilder di destinazione.
+     */
+    public void appendTo(int i, StringBuilder sb) {
+        TokenType type = type(i);
+        sb.append('<').append(type).append(",r:").append(righe[i]);
+        if (hasValue(type)) {
+            sb.append(',').append(text, starts[i], starts[i] + lengths[i]);
+        }
+        sb.append('>');
+    }
+
+    /**
+     * Indica se i token del tipo dato portano con sé un valore testuale.
+     */
+    private static boolean hasValue(TokenType type) {
+        return type == TokenType.ID || type == TokenType.INT || type == TokenType.FLOAT;
+    }
+}
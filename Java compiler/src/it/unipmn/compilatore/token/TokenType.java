@@ -6,32 +6,60 @@ package it.unipmn.compilatore.token;
  * Include tipi primitivi, parole chiave, operatori matematici,
  * operatori di assegnamento e delimitatori.
  * </p>
+ * <p>
+ * Ogni tipo con una forma testuale fissa (parole chiave e simboli) ne riporta
+ * la grafia: è l'unica specifica da cui lo Scanner costruisce le tabelle del suo
+ * automa, quindi aggiungere qui una parola chiave o un simbolo basta a riconoscerlo.
+ * </p>
  */
 public enum TokenType {
     // Tipi di dato e Identificatori
-    INT,        // Numeri interi
-    FLOAT,      // Numeri decimali
-    ID,         // Identificatori
+    INT(null),        // Numeri interi
+    FLOAT(null),      // Numeri decimali
+    ID(null),         // Identificatori
 
     // Parole chiave
-    TYINT,      // int
-    TYFLOAT,    // float
-    PRINT,      // print
+    TYINT("int"),     // int
+    TYFLOAT("float"), // float
+    PRINT("print"),   // print
 
     // Operatori di assegnamento
-    ASSIGN,     // =
+    ASSIGN("="),      // =
 
     // Operatori aritmetici
-    PLUS,       // +
-    MINUS,      // -
-    TIMES,      // *
-    DIVIDE,     // /
+    PLUS("+"),        // +
+    MINUS("-"),       // -
+    TIMES("*"),       // *
+    DIVIDE("/"),      // /
 
     // Delimitatori e simboli
-    SEMI,       // ;
-    LPAREN,     // (
-    RPAREN,     // )
+    SEMI(";"),        // ;
+    LPAREN("("),      // (
+    RPAREN(")"),      // )
 
     // Gestione fine file
-    EOF         // End Of File
-}
\ No newline at end of file
+    EOF(null);        // End Of File
+
+    // La grafia fissa del token, oppure null se il testo varia (numeri, nomi, fine file)
+    private final String spelling;
+
+    TokenType(String spelling) {
+        this.spelling = spelling;
+    }
+
+    /**
+     * Restituisce la grafia fissa del token.
+     * @return Il testo della parola chiave o del simbolo, oppure null.
+     */
+    public String getSpelling() {
+        return spelling;
+    }
+
+    /**
+     * Indica se il token è una parola chiave, cioè una grafia fissa composta da lettere.
+     * @return true per le parole chiave.
+     */
+    public boolean isKeyword() {
+        return spelling != null && Character.isLetter(spelling.charAt(0));
+    }
+}
@@ -0,0 +1,216 @@
+package it.unipmn.compilatore.trace;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Traccia delle operazioni del compilatore, condivisa da tutte le fasi.
+ * <p>
+ * Sostituisce i log StringBuilder che ogni fase riempiva per ogni token, nodo e registro.
+ * Ogni messaggio ha un livello e viene scritto solo se il livello è abilitato; i chiamanti
+ * controllano prima {@link #enabled(Level)}, così un livello disabilitato non costa nulla:
+ * nessuna concatenazione di stringhe e nessun buffer.
+ * </p>
+ * <p>
+ * Una traccia abilitata può restare in memoria (e venire letta con toString) oppure
+ * scrivere direttamente su un Writer, ad esempio un file, senza accumulare testo.
+ * </p>
+ */
+public final class Trace implements Closeable {
+
+    /**
+     * Livelli della traccia, dal meno al più dettagliato.
+     */
+    public enum Level {
+        // Nessun messaggio
+        OFF,
+        // Solo gli errori lessicali, sintattici e semantici
+        ERROR,
+        // Inizio e fine delle fasi di compilazione
+        PHASE,
+        // Ogni token, match, nodo visitato e registro assegnato
+        DETAIL
+    }
+
+    // Traccia condivisa che scarta tutto, usata quando nessuno ne imposta una
+    private static final Trace DISABLED = new Trace(Level.OFF, null, null);
+
+    // Livello massimo abilitato, come ordinale per un confronto tra interi
+    private final int threshold;
+    // Destinazione dei messaggi: il buffer in memoria oppure un Writer
+    private final StringBuilder memory;
+    private final Writer writer;
+
+    private Trace(Level level, StringBuilder memory, Writer writer) {
+        this.threshold = level.ordinal();
+        this.memory = memory;
+        this.writer = writer;
+    }
+
+    /**
+     * Restituisce la traccia disabilitata, che non registra nulla.
+     * @return La traccia spenta.
+     */
+    public static Trace disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Crea una traccia che accumula i messaggi in memoria.
+     * @param level Il livello massimo da registrare.
+     * @return La traccia.
+     */
+    public static Trace inMemory(Level level) {
+        return level == Level.OFF ? DISABLED : new Trace(level, new StringBuilder(), null);
+    }
+
+    /**
+     * Crea una traccia che scrive i messaggi sul Writer indicato, chiuso da close().
+     * @param writer La destinazione dei messaggi.
+     * @param level Il livello massimo da registrare.
+     * @return La traccia.
+     */
+    public static Trace toWriter(Writer writer, Level level) {
+        return new Trace(level, null, writer);
+    }
+
+    /**
+     * Crea una traccia che scrive i messaggi in un file, attraverso un buffer.
+     * @param file Il file da creare o sovrascrivere.
+     * @param level Il livello massimo da registrare.
+     * @return La traccia.
+     * @throws IOException Se il file non può essere aperto.
+     */
+    public static Trace toFile(Path file, Level level) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        return new Trace(level, null, writer);
+    }
+
+    /**
+     * Converte il nome di un livello, senza distinguere maiuscole e minuscole.
+     * @param name Il nome del livello (off, error, phase, detail).
+     * @return Il livello corrispondente.
+     * @throws IllegalArgumentException Se il nome non corrisponde a nessun livello.
+     */
+    public static Level parseLevel(String name) {
+        return Level.valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * Indica se i messaggi del livello indicato vengono registrati.
+     * Va controllato prima di costruire il messaggio.
+     * @param level Il livello del messaggio.
+     * @return true se il livello è abilitato.
+     */
+    public boolean enabled(Level level) {
+        return level.ordinal() <= threshold;
+    }
+
+    /**
+     * Restituisce il livello massimo registrato dalla traccia.
+     * @return Il livello della traccia (OFF se è disabilitata).
+     */
+    public Level level() {
+        return Level.values()[threshold];
+    }
+
+    /**
+     * Aggiunge del testo alla traccia.
+     * @param text Il testo da aggiungere.
+     * @return La traccia stessa, per concatenare le chiamate.
+     */
+    public Trace append(CharSequence text) {
+        if (memory != null) {
+            memory.append(text);
+        } else if (writer != null) {
+            try {
+                writer.append(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Errore nella scrittura della traccia", e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Aggiunge la forma testuale di un oggetto alla traccia.
+     * @param value L'oggetto da aggiungere.
+     * @return La traccia stessa, per concatenare le chiamate.
+     */
+    public Trace append(Object value) {
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Aggiunge un carattere alla traccia.
+     * @param c Il carattere da aggiungere.
+     * @return La traccia stessa, per concatenare le chiamate.
+     */
+    public Trace append(char c) {
+        if (memory != null) {
+            memory.append(c);
+            return this;
+        }
+        return append(String.valueOf(c));
+    }
+
+    /**
+     * Aggiunge un numero intero alla traccia.
+     * @param value Il numero da aggiungere.
+     * @return La traccia stessa, per concatenare le chiamate.
+     */
+    public Trace append(int value) {
+        if (memory != null) {
+            memory.append(value);
+            return this;
+        }
+        return append(Integer.toString(value));
+    }
+
+    /**
+     * Restituisce il buffer in memoria, per chi deve scriverci direttamente (ad esempio un token compatto).
+     * @return Il buffer, oppure null se la traccia non è in memoria.
+     */
+    public StringBuilder memory() {
+        return memory;
+    }
+
+    /**
+     * Svuota verso la destinazione i messaggi scritti su un Writer.
+     */
+    public void flush() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Errore nella scrittura della traccia", e);
+            }
+        }
+    }
+
+    /**
+     * Chiude il Writer della traccia, se presente.
+     * @throws IOException Se la chiusura fallisce.
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    /**
+     * Restituisce i messaggi accumulati in memoria.
+     * @return Il testo della traccia, oppure una stringa vuota se la traccia non è in memoria.
+     */
+    @Override
+    public String toString() {
+        return memory != null ? memory.toString() : "";
+    }
+}
@@ -2,51 +2,182 @@ package it.unipmn.compilatore.visitor;
 
 import it.unipmn.compilatore.ast.*;
 import it.unipmn.compilatore.symboltable.Symbol;
-import it.unipmn.compilatore.symboltable.SymbolTable;
+import it.unipmn.compilatore.trace.Trace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * Classe che implementa il visitatore per generare il codice finale.
  * Scorre l'albero sintattico (AST) e produce in output le istruzioni
  * scritte nel linguaggio della calcolatrice 'dc'.
- * Mantiene un log interno per il debug della generazione.
+ * Le variabili vengono lette dai Symbol già legati ai NodeId dal controllo dei tipi,
+ * senza una tabella dei simboli propria. Quando traduce un intero programma, le operazioni
+ * già calcolate non vengono ripetute (vedi CommonSubexpressions).
+ * La precisione 'k' di dc non è fissata per tutto il programma: prima di una divisione o di una
+ * moltiplicazione il generatore la porta a 0 per gli int e a FLOAT_SCALE per i float, usando il tipo
+ * calcolato dal controllo dei tipi, e solo se quella in vigore è diversa.
+ * Le istruzioni vengono raccolte in forma tipizzata in un DcCode, che un PeepholeOptimizer
+ * può ripulire prima che venga scritto come testo. Con setOutput() il codice viene scritto sulla
+ * destinazione a pezzi di circa CHUNK_SIZE istruzioni mentre viene generato, invece di restare
+ * tutto in memoria fino a getCode().
+ * Le scelte della generazione vengono annotate su una Trace per il debug.
  */
 public class CodeGeneratorVisitor implements IVisitor {
 
-    // Contenitore dove accumulo stringhe per costruire il codice finale
-    private StringBuilder sb;
-    // Tabella per associare i nomi delle variabili ai registri della calcolatrice
-    private SymbolTable scopes;
-    // Carattere per tenere traccia dell'ultimo registro utilizzato
-    private char nextRegister;
-    // StringBuilder per accumulare i log di debug (separato dal codice generato)
-    private StringBuilder log;
+    /**
+     * Quante istruzioni accumulare prima di ottimizzarle e scriverle sulla destinazione.
+     */
+    public static final int CHUNK_SIZE = 8192;
+
+    // Contenitore dove accumulo le istruzioni del codice finale
+    private DcCode code;
+    // Seconda sequenza in cui l'ottimizzatore copia il codice: scambiata con la prima se il codice
+    // resta in memoria, altrimenti contiene le ultime istruzioni ottimizzate non ancora scritte
+    private DcCode optimized;
+    // Destinazione su cui scrivere il codice mentre viene generato (null se resta in memoria)
+    private Writer out;
+    // Ottimizzatore applicato prima della scrittura (null se il codice resta com'è generato)
+    private PeepholeOptimizer peephole;
+    // Istruzione del programma in traduzione (-1 se traduco un'istruzione alla volta)
+    private int statement;
+    // Per ogni variabile letta nell'istruzione corrente, l'indice della sua ultima LOAD
+    private final Map<Symbol, Integer> lastLoads;
+    // Allocatore che assegna i registri alle variabili e li riusa quando muoiono
+    private final RegisterAllocator registers;
+    // Sottoespressioni comuni del programma (null se traduco un'istruzione alla volta)
+    private CommonSubexpressions cse;
+    // I valori già salvati nel loro registro temporaneo, per numero di valore
+    private final BitSet computed;
+    // Traccia per il debug, separata dal codice generato
+    private final Trace trace;
+    // La precisione delle operazioni tra float, e quella in vigore in dc a questo punto del codice
+    private final int floatScale;
+    private int currentScale;
 
     /**
      * Costruttore del generatore di codice.
-     * Prepara l'ambiente di traduzione e il log.
+     * Prepara l'ambiente di traduzione.
      */
     public CodeGeneratorVisitor() {
-        this.sb = new StringBuilder();
-        this.scopes = new SymbolTable();
-        this.log = new StringBuilder();
-        // Imposto il primo registro disponibile usando la prima lettera dell'alfabeto
-        this.nextRegister = 'a';
+        this(Trace.disabled());
+    }
+
+    /**
+     * Costruttore del generatore di codice.
+     * Prepara l'ambiente di traduzione e collega la traccia.
+     * @param trace La traccia su cui annotare le operazioni svolte.
+     */
+    public CodeGeneratorVisitor(Trace trace) {
+        this(DcArithmetic.FLOAT_SCALE, trace);
+    }
+
+    /**
+     * Costruttore del generatore di codice con una precisione a scelta per i float.
+     * @param floatScale La precisione 'k' delle operazioni tra float, la stessa usata dal constant folding.
+     * @param trace La traccia su cui annotare le operazioni svolte.
+     */
+    public CodeGeneratorVisitor(int floatScale, Trace trace) {
+        this.floatScale = floatScale;
+        this.code = new DcCode();
+        this.optimized = new DcCode();
+        this.trace = trace;
+        this.registers = new RegisterAllocator();
+        this.computed = new BitSet();
+        this.statement = -1;
+        this.lastLoads = new IdentityHashMap<>();
+    }
+
+    /**
+     * Collega l'ottimizzatore da applicare al codice prima di scriverlo.
+     * @param peephole L'ottimizzatore, oppure null per lasciare il codice com'è generato.
+     */
+    public void setPeephole(PeepholeOptimizer peephole) {
+        this.peephole = peephole;
+    }
+
+    /**
+     * Fa scrivere il codice del programma sulla destinazione indicata durante la visita di NodeProgram,
+     * a pezzi, così la memoria usata non dipende dalla lunghezza del codice. La destinazione
+     * viene svuotata alla fine della visita ma non chiusa; un errore di scrittura durante la visita
+     * viene sollevato come UncheckedIOException.
+     * @param out La destinazione del codice, preferibilmente bufferizzata, oppure null per tenerlo in memoria.
+     */
+    public void setOutput(Writer out) {
+        this.out = out;
     }
 
     /**
-     * Restituisce tutto il codice generato fino a questo momento.
+     * Restituisce tutto il codice generato e non ancora scritto su una destinazione.
      * @return Una stringa contenente il codice 'dc' completo.
      */
     public String getCode() {
-        return sb.toString();
+        return code.toString();
     }
 
     /**
-     * Restituisce il log delle operazioni di generazione codice.
+     * Restituisce il log delle operazioni di generazione codice, se la traccia è tenuta in memoria.
      * @return La stringa con i log.
      */
     public String getLog() {
-        return log.toString();
+        return trace.toString();
+    }
+
+    /**
+     * Prepara l'inizio del programma, prima del codice di tutte le istruzioni.
+     * Nella compilazione a flusso viene chiamato al posto della visita di NodeProgram.
+     */
+    public void beginProgram() {
+        // dc parte con precisione 0, quella degli int: non serve nessuna intestazione,
+        // la precisione dei float viene impostata solo davanti alla prima operazione che la richiede
+        currentScale = 0;
+    }
+
+    /**
+     * Scrive il codice generato finora sulla destinazione indicata e lo rimuove dal buffer,
+     * così nella compilazione a flusso la memoria usata non cresce con il programma.
+     * Le ultime istruzioni ottimizzate restano da parte finché endProgram() non le scrive,
+     * perché l'ottimizzatore possa combinarle con quelle dell'istruzione successiva.
+     * @param out La destinazione del codice.
+     * @throws IOException Se la scrittura fallisce.
+     */
+    public void flushCode(Writer out) throws IOException {
+        write(out, false);
+    }
+
+    /**
+     * Chiude il programma nella compilazione a flusso: scrive le istruzioni rimaste e il resoconto dell'ottimizzatore.
+     * @param out La destinazione del codice.
+     * @throws IOException Se la scrittura fallisce.
+     */
+    public void endProgram(Writer out) throws IOException {
+        write(out, true);
+        out.flush();
+        if (peephole != null) {
+            peephole.report();
+        }
+    }
+
+    /**
+     * Ottimizza il codice generato e lo scrive sulla destinazione, tenendo da parte le ultime
+     * PeepholeOptimizer.WINDOW istruzioni se ne seguiranno altre.
+     */
+    private void write(Writer out, boolean last) throws IOException {
+        DcCode ready = code;
+        if (peephole != null) {
+            peephole.optimize(code, optimized);
+            code.clear();
+            ready = optimized;
+        }
+        int keep = last || peephole == null ? 0 : Math.min(PeepholeOptimizer.WINDOW, ready.size());
+        ready.writeTo(out, 0, ready.size() - keep);
+        ready.discard(ready.size() - keep);
     }
 
     /**
@@ -55,37 +186,111 @@ public class CodeGeneratorVisitor implements IVisitor {
      */
     @Override
     public void visit(NodeProgram node) {
-        log.append("Inizio generazione codice programma.\n");
-        // Scrivo il comando 'k' per impostare la precisione dei numeri decimali a 20 cifre
-        sb.append("20 k\n");
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Inizio generazione codice programma.\n");
+        }
+        beginProgram();
+        // Conoscendo tutto il programma posso trovare i valori che si ripetono,
+        // calcolare la vita delle variabili e dei temporanei e riusare i registri
+        cse = CommonSubexpressions.analyze(node.getStatements());
+        registers.analyze(node.getStatements(), cse.temporaryEnds());
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Sottoespressioni comuni conservate in un temporaneo: ").append(cse.temporaryCount()).append("\n");
+        }
         // Itero su tutte le istruzioni per tradurle sequenzialmente
-        for (NodeDecSt stmt : node.getStatements()) {
-            stmt.accept(this);
+        for (int i = 0; i < node.getStatements().size(); i++) {
+            registers.startStatement(i);
+            statement = i;
+            node.getStatements().get(i).accept(this);
+            markLastUses();
+            // Tra un'istruzione e l'altra lo stack è vuoto: posso scrivere il pezzo accumulato
+            if (out != null && code.size() >= CHUNK_SIZE) {
+                writeChunk(false);
+            }
+        }
+        statement = -1;
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Generazione completata.\n");
+        }
+        if (out != null) {
+            writeChunk(true);
+        } else {
+            optimize();
+        }
+        if (peephole != null) {
+            peephole.report();
+        }
+    }
+
+    /**
+     * Scrive il codice accumulato sulla destinazione impostata con setOutput().
+     */
+    private void writeChunk(boolean last) {
+        try {
+            write(out, last);
+            if (last) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            // I metodi visit non possono sollevare eccezioni controllate
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Applica l'ottimizzatore, se presente, al codice non ancora scritto.
+     */
+    private void optimize() {
+        if (peephole != null) {
+            optimized.clear();
+            peephole.optimize(code, optimized);
+            DcCode generated = code;
+            code = optimized;
+            optimized = generated;
+        }
+    }
+
+    /**
+     * Alla fine di un'istruzione segna come ultimo uso la LOAD finale delle variabili che muoiono qui,
+     * così l'ottimizzatore sa che dopo di essa il loro registro non serve più.
+     */
+    private void markLastUses() {
+        for (Map.Entry<Symbol, Integer> e : lastLoads.entrySet()) {
+            if (registers.diesAt(e.getKey(), statement)) {
+                code.markLastUse(e.getValue());
+            }
         }
-        log.append("Generazione completata.\n");
+        lastLoads.clear();
     }
 
     /**
      * Traduce la dichiarazione di una nuova variabile.
-     * Le assegna un registro fisico temporaneo nella calcolatrice.
+     * Le assegna un registro libero della calcolatrice, o una posizione dell'array di appoggio.
      * @param node Il nodo di dichiarazione.
      */
     @Override
     public void visit(NodeDecl node) {
         String varName = node.getId().getName();
-        char reg = nextRegister++;
-        log.append("Assegno registro '").append(reg).append("' alla variabile '").append(varName).append("'\n");
-
-        // Creo un simbolo, gli assegno la lettera corrente per il registro e incremento alla successiva
-        Symbol symbol = new Symbol(node.getType(), reg);
-        scopes.insert(varName, symbol);
+        // Assegno la memoria al simbolo legato dal controllo dei tipi
+        // (se l'albero non è stato controllato, lo creo e lo lego qui)
+        Symbol symbol = node.getId().getSymbol();
+        if (symbol == null) {
+            symbol = new Symbol(node.getType());
+            node.getId().bind(symbol);
+        }
+        registers.allocate(symbol);
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Assegno ").append(location(symbol)).append(" alla variabile '").append(varName).append("'\n");
+        }
 
         if (node.getInit() != null) {
-            log.append("Genero codice inizializzazione per: ").append(varName).append("\n");
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                trace.append("Genero codice inizializzazione per: ").append(varName).append("\n");
+            }
             // Traduco l'espressione associata per caricare il valore in cima allo stack
             node.getInit().accept(this);
-            // Scrivo il comando 's' (store) seguito dal registro per salvare il valore calcolato
-            sb.append("s").append(symbol.getRegister()).append("\n");
+            // Salvo il valore calcolato nella memoria della variabile
+            store(symbol);
         }
     }
 
@@ -96,14 +301,16 @@ public class CodeGeneratorVisitor implements IVisitor {
     @Override
     public void visit(NodeAssign node) {
         String varName = node.getId().getName();
-        log.append("Genero codice assegnamento per: ").append(varName).append("\n");
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Genero codice assegnamento per: ").append(varName).append("\n");
+        }
         
-        // Recupero dalla tabella la lettera di registro associata a questa variabile
-        Symbol symbol = scopes.lookup(varName);
+        // Recupero il simbolo legato al nome per conoscere il suo registro
+        Symbol symbol = symbolOf(node.getId());
         // Traduco la parte destra dell'uguale per spingere il risultato sullo stack
         node.getExpr().accept(this);
-        // Scrivo il comando 's' per prelevare il valore dallo stack e salvarlo nel registro
-        sb.append("s").append(symbol.getRegister()).append("\n");
+        // Prelevo il valore dallo stack e lo salvo nella memoria della variabile
+        store(symbol);
     }
 
     /**
@@ -112,7 +319,9 @@ public class CodeGeneratorVisitor implements IVisitor {
      */
     @Override
     public void visit(NodeConvert node) {
-        log.append("Genero codice conversione tipo.\n");
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Genero codice conversione tipo.\n");
+        }
         // La calcolatrice 'dc' gestisce interi e decimali automaticamente, visito solo il contenuto
         node.getExpr().accept(this);
     }
@@ -120,22 +329,100 @@ public class CodeGeneratorVisitor implements IVisitor {
     /**
      * Traduce le operazioni matematiche binarie.
      * Genera codice usando la notazione postfissa tipica dei linguaggi a stack.
+     * Le operazioni annidate negli operandi aspettano su una pila esplicita che il codice dei loro
+     * operandi sia stato generato, così un'espressione profonda non esaurisce lo stack delle chiamate.
      * @param node Il nodo dell'operazione.
      */
     @Override
     public void visit(NodeBinOp node) {
-        log.append("Genero operazione binaria: ").append(node.getOp()).append("\n");
-        // Traduco l'elemento a sinistra che verrà posizionato sullo stack
-        node.getLeft().accept(this);
-        // Traduco l'elemento a destra che finirà sopra al precedente nello stack
-        node.getRight().accept(this);
+        Deque<Operation> open = new ArrayDeque<>();
+        enter(node, open);
+        while (!open.isEmpty()) {
+            Operation current = open.peek();
+            NodeExpr operand;
+            if (current.phase == 0) {
+                // Traduco l'elemento a sinistra che verrà posizionato sullo stack
+                operand = current.node.getLeft();
+            } else if (current.phase == 1 && current.duplicate) {
+                // I due operandi hanno lo stesso valore: duplico la cima dello stack con 'd'
+                code.add(DcOp.DUPLICATE);
+                current.phase++;
+                continue;
+            } else if (current.phase == 1) {
+                // Traduco l'elemento a destra che finirà sopra al precedente nello stack
+                operand = current.node.getRight();
+            } else {
+                open.pop();
+                exit(current);
+                continue;
+            }
+            current.phase++;
+            if (operand instanceof NodeBinOp) {
+                enter((NodeBinOp) operand, open);
+            } else {
+                operand.accept(this);
+            }
+        }
+    }
+
+    /**
+     * Inizia la traduzione di un'operazione: se il suo valore è già in un temporaneo lo rilegge,
+     * altrimenti la aggiunge alle operazioni aperte.
+     */
+    private void enter(NodeBinOp node, Deque<Operation> open) {
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Genero operazione binaria: ").append(node.getOp()).append("\n");
+        }
+        int value = cse == null ? -1 : cse.valueOf(node);
+        Symbol temporary = value < 0 ? null : cse.temporary(value);
+        if (temporary != null && computed.get(value)) {
+            // Il valore è già stato calcolato: lo rileggo dal suo temporaneo
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                trace.append("Riuso il valore dal ").append(location(temporary)).append("\n");
+            }
+            load(temporary);
+            return;
+        }
+        int left = value < 0 ? -1 : cse.valueOf(node.getLeft());
+        open.push(new Operation(node, value, temporary, left >= 0 && left == cse.valueOf(node.getRight())));
+    }
 
+    /**
+     * Conclude la traduzione di un'operazione i cui operandi sono già sullo stack.
+     */
+    private void exit(Operation current) {
+        setScale(current.node);
         // Scrivo il simbolo matematico per consumare gli ultimi due elementi estratti
-        switch (node.getOp()) {
-            case PLUS: sb.append("+\n"); break;
-            case MINUS: sb.append("-\n"); break;
-            case TIMES: sb.append("*\n"); break;
-            case DIVIDE: sb.append("/\n"); break;
+        code.operation(current.node.getOp());
+
+        if (current.temporary != null) {
+            // Il valore verrà riusato: ne salvo una copia nel temporaneo e lascio l'originale sullo stack
+            registers.allocate(current.temporary);
+            code.add(DcOp.DUPLICATE);
+            store(current.temporary);
+            computed.set(current.value);
+        }
+    }
+
+    /**
+     * Imposta la precisione richiesta dall'operazione, se diversa da quella in vigore.
+     * Solo divisione e moltiplicazione dipendono da 'k'; il prodotto di due int non ha cifre
+     * decimali con qualunque precisione. Un nodo senza tipo (albero non controllato) non la cambia.
+     */
+    private void setScale(NodeBinOp node) {
+        LangOper op = node.getOp();
+        if (node.getType() == null || op == LangOper.PLUS || op == LangOper.MINUS
+                || (op == LangOper.TIMES && node.getType() == LangType.INT)) {
+            return;
+        }
+        int scale = DcArithmetic.scale(node.getType(), floatScale);
+        if (scale != currentScale) {
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                trace.append("Imposto la precisione a ").append(scale).append(" cifre per ").append(node.getType()).append("\n");
+            }
+            code.number(Integer.toString(scale));
+            code.add(DcOp.SCALE);
+            currentScale = scale;
         }
     }
 
@@ -146,10 +433,12 @@ public class CodeGeneratorVisitor implements IVisitor {
     @Override
     public void visit(NodeDeref node) {
         String varName = node.getId().getName();
-        Symbol symbol = scopes.lookup(varName);
-        log.append("Leggo valore variabile '").append(varName).append("' dal registro '").append(symbol.getRegister()).append("'\n");
-        // Scrivo il comando 'l' (load) per copiare il dato dal registro e metterlo in cima allo stack
-        sb.append("l").append(symbol.getRegister()).append(" ");
+        Symbol symbol = symbolOf(node.getId());
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Leggo valore variabile '").append(varName).append("' dal ").append(location(symbol)).append("\n");
+        }
+        // Copio il dato dalla memoria della variabile in cima allo stack
+        load(symbol);
     }
 
     /**
@@ -167,13 +456,8 @@ public class CodeGeneratorVisitor implements IVisitor {
      */
     @Override
     public void visit(NodeCost node) {
-        String val = node.getValue();
-        if (val.startsWith("-")) {
-            // Sostituisco il meno '-' con il trattino basso '_' richiesto da 'dc' per i numeri negativi
-            val = "_" + val.substring(1);
-        }
-        // Scrivo il numero in output aggiungendo uno spazio per separarlo dagli altri elementi
-        sb.append(val).append(" ");
+        // DcCode sostituisce il meno '-' con il trattino basso '_' richiesto da 'dc' per i numeri negativi
+        code.number(node.getValue());
     }
 
     /**
@@ -182,13 +466,81 @@ public class CodeGeneratorVisitor implements IVisitor {
      */
     @Override
     public void visit(NodePrint node) {
-        log.append("Genero istruzione print.\n");
-        Symbol symbol = scopes.lookup(node.getId().getName());
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Genero istruzione print.\n");
+        }
+        Symbol symbol = symbolOf(node.getId());
         // Richiamo in cima allo stack il valore della variabile da stampare
-        sb.append("l").append(symbol.getRegister()).append("\n");
+        load(symbol);
         // Scrivo il comando 'p' (print) che stampa a video ma lascia il valore in cima allo stack
-        sb.append("p\n");
-        // Scrivo 'si' per svuotare lo stack spostando il valore nel registro 'i', che uso come cestino
-        sb.append("si\n");
+        code.add(DcOp.PRINT);
+        // Svuoto lo stack spostando il valore nel registro riservato come cestino, che nessuna variabile usa
+        code.store(RegisterAllocator.SCRATCH);
+    }
+
+    /**
+     * Aggiunge il salvataggio della cima dello stack nella memoria della variabile:
+     * 's' seguito dal registro, oppure l'indice e ':' per l'array di appoggio.
+     */
+    private void store(Symbol symbol) {
+        code.store(symbol);
+    }
+
+    /**
+     * Aggiunge la lettura della variabile in cima allo stack:
+     * 'l' seguito dal registro, oppure l'indice e ';' per l'array di appoggio.
+     * Se sto traducendo un programma intero ricordo la posizione, per segnare l'ultimo uso.
+     */
+    private void load(Symbol symbol) {
+        if (statement >= 0) {
+            lastLoads.put(symbol, code.size());
+        }
+        code.load(symbol);
+    }
+
+    /**
+     * Descrive la memoria della variabile per la traccia.
+     */
+    private static String location(Symbol symbol) {
+        if (symbol.getSlot() < 0) {
+            return "registro '" + symbol.getRegister() + "'";
+        }
+        return "posto " + symbol.getSlot() + " dell'array '" + RegisterAllocator.SPILL + "'";
+    }
+
+    /**
+     * Restituisce il simbolo legato al nome durante il controllo dei tipi.
+     * @param id Il nodo identificatore letto o assegnato.
+     * @return Il simbolo della variabile.
+     */
+    private Symbol symbolOf(NodeId id) {
+        Symbol symbol = id.getSymbol();
+        if (symbol == null) {
+            // Può accadere solo se il generatore viene usato su un albero non controllato
+            throw new IllegalStateException("Variabile '" + id.getName() + "' non risolta: manca il controllo dei tipi");
+        }
+        return symbol;
+    }
+
+    /**
+     * Un'operazione di cui si sta generando il codice degli operandi.
+     */
+    private static final class Operation {
+
+        private final NodeBinOp node;
+        // Il numero di valore dell'operazione e il temporaneo in cui conservarlo (null se non viene riusato)
+        private final int value;
+        private final Symbol temporary;
+        // true se l'operando destro ha lo stesso valore del sinistro e basta duplicarlo
+        private final boolean duplicate;
+        // 0: manca l'operando sinistro, 1: manca il destro, 2: operandi sullo stack
+        private int phase;
+
+        Operation(NodeBinOp node, int value, Symbol temporary, boolean duplicate) {
+            this.node = node;
+            this.value = value;
+            this.temporary = temporary;
+            this.duplicate = duplicate;
+        }
     }
-}
\ No newline at end of file
+}
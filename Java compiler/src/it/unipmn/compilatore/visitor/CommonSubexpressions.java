@@ -0,0 +1,288 @@
+package it.unipmn.compilatore.visitor;
+
+import it.unipmn.compilatore.ast.*;
+import it.unipmn.compilatore.symboltable.Symbol;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Analisi delle sottoespressioni comuni con la numerazione dei valori (value numbering).
+ * <p>
+ * Il programma è un unico blocco senza salti, quindi una sola numerazione vale per tutte le
+ * istruzioni. Ogni operazione riceve un numero di valore calcolato dalla sua struttura: due
+ * costanti con lo stesso testo, due letture della stessa versione di una variabile (la versione
+ * cambia a ogni assegnamento) e due operazioni con lo stesso operatore e gli stessi numeri dei
+ * figli hanno lo stesso numero. Somma e moltiplicazione sono commutative anche in dc, quindi
+ * i loro operandi vengono ordinati. Le conversioni non cambiano il valore e prendono il numero
+ * del figlio. Con l'hash-consing dell'AST le occorrenze ripetute sono già lo stesso nodo, ma
+ * l'analisi non ne dipende.
+ * </p>
+ * <p>
+ * Poi simulo l'ordine in cui il generatore tradurrà le espressioni: la prima occorrenza di un
+ * valore viene calcolata, le successive lo riusano. Se i due operandi di un'operazione hanno lo
+ * stesso valore il generatore usa il comando 'd' di dc, che duplica la cima dello stack; negli
+ * altri casi il valore viene copiato in un registro temporaneo alla prima occorrenza e riletto
+ * da lì. Un temporaneo vive dalla prima all'ultima occorrenza, e RegisterAllocator lo tratta
+ * come una variabile qualsiasi.
+ * </p>
+ */
+public final class CommonSubexpressions {
+
+    // Numero di valore di ogni operazione binaria visitata
+    private final Map<NodeBinOp, Integer> numbers;
+    // Tabella dei valori: chiave strutturale -> numero
+    private final Map<Key, Integer> table;
+    // Versione corrente di ogni variabile, incrementata a ogni assegnamento
+    private final Map<Symbol, Integer> versions;
+    // Per ogni numero di valore: istruzione in cui viene calcolato, ultima istruzione che lo riusa, riusi
+    private int[] first;
+    private int[] last;
+    private int[] uses;
+    private int count;
+    // I registri temporanei dei valori riusati, indicizzati per numero di valore
+    private Symbol[] temporaries;
+    private int temporaryCount;
+    // Visita delle operazioni annidate: i numeri dei figli prima di quello dell'operazione
+    private final PostOrderWalk<Integer> operations = new PostOrderWalk<Integer>() {
+        @Override
+        Integer known(NodeBinOp node) {
+            // Nodo condiviso: la chiave delle letture contiene la versione, quindi il valore è lo stesso
+            return numbers.get(node);
+        }
+
+        @Override
+        Integer operand(NodeExpr operand) {
+            return number(operand);
+        }
+
+        @Override
+        Integer combine(NodeBinOp node, NodeExpr left, NodeExpr right, Integer l, Integer r) {
+            return number(node, l, r);
+        }
+    };
+
+    private CommonSubexpressions() {
+        this.numbers = new IdentityHashMap<>();
+        this.table = new HashMap<>();
+        this.versions = new IdentityHashMap<>();
+        this.first = new int[64];
+        this.last = new int[64];
+        this.uses = new int[64];
+    }
+
+    /**
+     * Numera i valori del programma e sceglie quali conservare in un registro temporaneo.
+     * @param statements Le istruzioni del programma, già controllate, nell'ordine di traduzione.
+     * @return Il risultato dell'analisi.
+     */
+    public static CommonSubexpressions analyze(List<NodeDecSt> statements) {
+        CommonSubexpressions cse = new CommonSubexpressions();
+        for (int i = 0; i < statements.size(); i++) {
+            NodeDecSt stmt = statements.get(i);
+            NodeExpr expr = null;
+            NodeId target = null;
+            if (stmt instanceof NodeDecl) {
+                expr = ((NodeDecl) stmt).getInit();
+                target = ((NodeDecl) stmt).getId();
+            } else if (stmt instanceof NodeAssign) {
+                expr = ((NodeAssign) stmt).getExpr();
+                target = ((NodeAssign) stmt).getId();
+            }
+            if (expr != null) {
+                cse.number(expr);
+                cse.simulate(expr, i);
+            }
+            // Il nuovo valore della variabile vale solo dopo il calcolo dell'espressione
+            if (target != null && target.getSymbol() != null) {
+                cse.versions.merge(target.getSymbol(), 1, Integer::sum);
+            }
+        }
+
+        cse.temporaries = new Symbol[cse.count];
+        for (int v = 0; v < cse.count; v++) {
+            if (cse.uses[v] > 0) {
+                // Il tipo non conta: dc non distingue interi e decimali
+                cse.temporaries[v] = new Symbol(LangType.FLOAT);
+                cse.temporaryCount++;
+            }
+        }
+        return cse;
+    }
+
+    /**
+     * Restituisce il numero di valore di un'espressione, attraversando le conversioni.
+     * @param expr L'espressione.
+     * @return Il numero di valore se l'espressione è un'operazione binaria, altrimenti -1.
+     */
+    public int valueOf(NodeExpr expr) {
+        NodeExpr e = unwrap(expr);
+        if (e instanceof NodeBinOp) {
+            Integer v = numbers.get(e);
+            return v == null ? -1 : v;
+        }
+        return -1;
+    }
+
+    /**
+     * Restituisce il registro temporaneo in cui conservare il valore per i riusi successivi.
+     * @param value Il numero di valore.
+     * @return Il simbolo del temporaneo, oppure null se il valore non viene riusato.
+     */
+    public Symbol temporary(int value) {
+        return temporaries[value];
+    }
+
+    /**
+     * Restituisce l'ultima istruzione in cui ogni temporaneo viene riletto, per l'allocatore dei registri.
+     * @return La fine della vita di ogni temporaneo.
+     */
+    public Map<Symbol, Integer> temporaryEnds() {
+        Map<Symbol, Integer> ends = new IdentityHashMap<>();
+        for (int v = 0; v < count; v++) {
+            if (temporaries[v] != null) {
+                ends.put(temporaries[v], last[v]);
+            }
+        }
+        return ends;
+    }
+
+    /**
+     * Restituisce quanti valori vengono conservati in un temporaneo invece di essere ricalcolati.
+     * @return Il numero di temporanei.
+     */
+    public int temporaryCount() {
+        return temporaryCount;
+    }
+
+    /**
+     * Calcola il numero di valore di un'espressione e delle sue sottoespressioni.
+     * @return Il numero di valore.
+     */
+    private int number(NodeExpr expr) {
+        NodeExpr e = unwrap(expr);
+        if (e instanceof NodeBinOp) {
+            // Le operazioni annidate vengono numerate da PostOrderWalk, senza ricorsione
+            return operations.walk((NodeBinOp) e);
+        }
+        if (e instanceof NodeCost) {
+            return lookup(new Key(((NodeCost) e).getValue(), 0, 0));
+        }
+        if (e instanceof NodeDeref) {
+            Symbol symbol = ((NodeDeref) e).getId().getSymbol();
+            if (symbol == null) {
+                // Senza simbolo non so quale variabile sia: il valore non viene condiviso
+                return lookup(new Key(e, 0, 0));
+            }
+            return lookup(new Key(symbol, versions.getOrDefault(symbol, 0), 0));
+        }
+        return lookup(new Key(e, 0, 0));
+    }
+
+    /**
+     * Numera un'operazione dai numeri dei suoi operandi.
+     * @return Il numero di valore.
+     */
+    private int number(NodeBinOp op, int l, int r) {
+        if ((op.getOp() == LangOper.PLUS || op.getOp() == LangOper.TIMES) && l > r) {
+            int t = l;
+            l = r;
+            r = t;
+        }
+        int v = lookup(new Key(op.getOp(), l, r));
+        numbers.put(op, v);
+        return v;
+    }
+
+    /**
+     * Ripercorre l'espressione nell'ordine del generatore, contando i riusi di ogni valore.
+     * Uso una pila esplicita: il sottoalbero sinistro viene estratto e completato prima del destro,
+     * come nella traduzione.
+     */
+    private void simulate(NodeExpr expr, int statement) {
+        Deque<NodeExpr> pending = new ArrayDeque<>();
+        pending.push(expr);
+        while (!pending.isEmpty()) {
+            NodeExpr e = unwrap(pending.pop());
+            if (!(e instanceof NodeBinOp)) {
+                continue;
+            }
+            NodeBinOp op = (NodeBinOp) e;
+            int v = numbers.get(op);
+            if (first[v] >= 0) {
+                // Già calcolato: questa occorrenza lo rilegge
+                uses[v]++;
+                last[v] = statement;
+                continue;
+            }
+            first[v] = statement;
+            last[v] = statement;
+            int l = valueOf(op.getLeft());
+            if (l < 0 || l != valueOf(op.getRight())) {
+                pending.push(op.getRight());
+            }
+            pending.push(op.getLeft());
+        }
+    }
+
+    private int lookup(Key key) {
+        Integer v = table.get(key);
+        if (v != null) {
+            return v;
+        }
+        if (count == first.length) {
+            first = Arrays.copyOf(first, count * 2);
+            last = Arrays.copyOf(last, count * 2);
+            uses = Arrays.copyOf(uses, count * 2);
+        }
+        first[count] = -1;
+        last[count] = -1;
+        uses[count] = 0;
+        table.put(key, count);
+        return count++;
+    }
+
+    private static NodeExpr unwrap(NodeExpr expr) {
+        while (expr instanceof NodeConvert) {
+            expr = ((NodeConvert) expr).getExpr();
+        }
+        return expr;
+    }
+
+    /**
+     * Chiave strutturale di un valore: l'operatore (o il testo della costante, o il simbolo
+     * letto) e due numeri (i numeri dei figli, o la versione della variabile).
+     */
+    private static final class Key {
+
+        private final Object kind;
+        private final int a;
+        private final int b;
+
+        Key(Object kind, int a, int b) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return a == k.a && b == k.b && Objects.equals(kind, k.kind);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * kind.hashCode() + a) + b;
+        }
+    }
+}
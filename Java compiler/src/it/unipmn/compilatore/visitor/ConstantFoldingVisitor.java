@@ -0,0 +1,176 @@
+package it.unipmn.compilatore.visitor;
+
+import it.unipmn.compilatore.ast.*;
+import it.unipmn.compilatore.trace.Trace;
+
+import java.math.BigDecimal;
+
+/**
+ * Visitatore che calcola in anticipo le operazioni tra costanti (constant folding).
+ * <p>
+ * Va eseguito dopo il controllo dei tipi e prima della generazione del codice: ogni NodeBinOp
+ * i cui operandi sono costanti, eventualmente racchiuse in una NodeConvert, viene sostituito
+ * da un'unica NodeCost con il risultato. Il calcolo segue l'aritmetica di dc (DcArithmetic)
+ * con la stessa precisione del codice generato, quindi il programma stampa esattamente gli
+ * stessi valori; una divisione per zero viene lasciata a dc, che la segnala.
+ * </p>
+ * <p>
+ * Il visitatore restituisce in result il nodo che deve prendere il posto di quello visitato,
+ * e il padre lo sostituisce con i propri metodi set. Il numero di operazioni dc eliminate dal
+ * codice generato è disponibile con getFolded() e viene annotato sulla traccia.
+ * </p>
+ */
+public class ConstantFoldingVisitor implements IVisitor {
+
+    // La precisione 'k' con cui dc eseguirebbe le operazioni tra float (quelle tra int usano 0)
+    private final int floatScale;
+    private final Trace trace;
+    // Il nodo che sostituisce l'espressione appena visitata (lo stesso nodo se non cambia)
+    private NodeExpr result;
+    // Il numero di operazioni calcolate in anticipo
+    private int folded;
+    // Visita delle operazioni annidate: ogni operazione riceve gli operandi già semplificati
+    private final PostOrderWalk<NodeExpr> operations = new PostOrderWalk<NodeExpr>() {
+        @Override
+        NodeExpr operand(NodeExpr operand) {
+            operand.accept(ConstantFoldingVisitor.this);
+            return result;
+        }
+
+        @Override
+        NodeExpr combine(NodeBinOp node, NodeExpr left, NodeExpr right, NodeExpr newLeft, NodeExpr newRight) {
+            return fold(node, newLeft, newRight);
+        }
+    };
+
+    /**
+     * Costruttore del visitatore con la precisione del codice generato e senza traccia.
+     */
+    public ConstantFoldingVisitor() {
+        this(DcArithmetic.FLOAT_SCALE, Trace.disabled());
+    }
+
+    /**
+     * Costruttore del visitatore con la precisione del codice generato.
+     * @param trace La traccia su cui annotare le operazioni svolte.
+     */
+    public ConstantFoldingVisitor(Trace trace) {
+        this(DcArithmetic.FLOAT_SCALE, trace);
+    }
+
+    /**
+     * Costruttore del visitatore con una precisione a scelta.
+     * @param floatScale La precisione 'k' che il codice generato imposta in dc per le operazioni tra float.
+     * @param trace La traccia su cui annotare le operazioni svolte.
+     */
+    public ConstantFoldingVisitor(int floatScale, Trace trace) {
+        this.floatScale = floatScale;
+        this.trace = trace;
+    }
+
+    /**
+     * Restituisce quante operazioni sono state calcolate in anticipo finora.
+     * @return Il numero di operazioni dc eliminate dal codice generato.
+     */
+    public int getFolded() {
+        return folded;
+    }
+
+    @Override
+    public void visit(NodeProgram node) {
+        for (NodeDecSt stmt : node.getStatements()) {
+            stmt.accept(this);
+        }
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Constant folding: ").append(folded).append(" operazioni calcolate in anticipo.\n");
+        }
+    }
+
+    @Override
+    public void visit(NodeDecl node) {
+        if (node.getInit() != null) {
+            node.getInit().accept(this);
+            node.setInit(result);
+        }
+    }
+
+    @Override
+    public void visit(NodeAssign node) {
+        node.getExpr().accept(this);
+        node.setExpr(result);
+    }
+
+    @Override
+    public void visit(NodePrint node) {
+        // La stampa di una variabile non contiene espressioni
+    }
+
+    /**
+     * Semplifica prima gli operandi; se entrambi diventano costanti calcola l'operazione.
+     * Le operazioni annidate vengono semplificate da PostOrderWalk, senza ricorsione.
+     * @param node Il nodo dell'operazione.
+     */
+    @Override
+    public void visit(NodeBinOp node) {
+        result = operations.walk(node);
+    }
+
+    /**
+     * Sostituisce gli operandi già semplificati e, se sono entrambi costanti, calcola l'operazione.
+     * @return Il nodo che prende il posto dell'operazione.
+     */
+    private NodeExpr fold(NodeBinOp node, NodeExpr left, NodeExpr right) {
+        // Se il nodo è condiviso da più espressioni, le sostituzioni valgono per tutte ed è giusto così
+        node.setLeft(left);
+        node.setRight(right);
+
+        if (left instanceof NodeCost && right instanceof NodeCost) {
+            NodeCost a = (NodeCost) left;
+            NodeCost b = (NodeCost) right;
+            // Dopo il controllo dei tipi gli operandi hanno lo stesso tipo, che è anche quello del risultato
+            LangType type = node.getType() != null ? node.getType() : a.getType();
+            BigDecimal value = DcArithmetic.apply(node.getOp(),
+                    DcArithmetic.parse(a.getValue()), DcArithmetic.parse(b.getValue()), DcArithmetic.scale(type, floatScale));
+            if (value != null) {
+                folded++;
+                if (trace.enabled(Trace.Level.DETAIL)) {
+                    trace.append("Calcolo ").append(a.getValue()).append(' ').append(node.getOp()).append(' ')
+                            .append(b.getValue()).append(" = ").append(DcArithmetic.format(value)).append("\n");
+                }
+                return new NodeCost(type, DcArithmetic.format(value), node.getRiga());
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Una conversione di una costante diventa una costante del tipo di destinazione:
+     * dc non distingue interi e decimali, quindi il valore non cambia.
+     * @param node Il nodo di conversione.
+     */
+    @Override
+    public void visit(NodeConvert node) {
+        node.getExpr().accept(this);
+        if (result instanceof NodeCost) {
+            result = new NodeCost(node.getTargetType(), ((NodeCost) result).getValue(), node.getRiga());
+        } else {
+            node.setExpr(result);
+            result = node;
+        }
+    }
+
+    @Override
+    public void visit(NodeCost node) {
+        result = node;
+    }
+
+    @Override
+    public void visit(NodeId node) {
+        result = node;
+    }
+
+    @Override
+    public void visit(NodeDeref node) {
+        result = node;
+    }
+}
@@ -0,0 +1,141 @@
+package it.unipmn.compilatore.visitor;
+
+import it.unipmn.compilatore.ast.LangOper;
+import it.unipmn.compilatore.ast.LangType;
+import it.unipmn.compilatore.scanner.Scanner;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Aritmetica della calcolatrice 'dc', riprodotta nel compilatore per calcolare in anticipo
+ * le operazioni esattamente come le calcolerebbe dc a tempo di esecuzione.
+ * <p>
+ * In dc ogni numero ha una propria scala, cioè il numero di cifre dopo la virgola, e il
+ * registro 'k' fissa la precisione delle operazioni:
+ * </p>
+ * <ul>
+ *   <li>somma e sottrazione sono esatte, con la scala maggiore tra i due operandi;</li>
+ *   <li>la moltiplicazione tiene min(sa + sb, max(k, sa, sb)) cifre, troncando le altre;</li>
+ *   <li>la divisione tiene esattamente k cifre, troncando verso lo zero.</li>
+ * </ul>
+ * <p>
+ * BigDecimal conserva la scala di ogni valore, quindi il testo prodotto da format() riletto da
+ * dc dà lo stesso numero con la stessa scala, e le operazioni successive restano identiche.
+ * </p>
+ * <p>
+ * Il codice generato non fissa una precisione unica: le operazioni tra int girano con k = 0,
+ * così la divisione tronca all'intero, e quelle tra float con FLOAT_SCALE cifre (vedi scale()).
+ * </p>
+ */
+public final class DcArithmetic {
+
+    /**
+     * La precisione delle operazioni tra float: le costanti del sorgente hanno al massimo
+     * Scanner.MAX_FRACTION_DIGITS cifre decimali, e i risultati ne conservano altrettante.
+     */
+    public static final int FLOAT_SCALE = Scanner.MAX_FRACTION_DIGITS;
+    // Lunghezza delle righe stampate da dc, barra rovesciata compresa
+    private static final int LINE_LENGTH = 70;
+
+    private DcArithmetic() {
+    }
+
+    /**
+     * Legge il testo di una costante del sorgente, con il segno meno scritto come '-' o come '_'.
+     * @param literal Il testo della costante (es. "2.5", "-5").
+     * @return Il valore, con la scala data dalle cifre scritte dopo la virgola.
+     */
+    public static BigDecimal parse(String literal) {
+        if (literal.startsWith("_")) {
+            return new BigDecimal(literal.substring(1)).negate();
+        }
+        return new BigDecimal(literal);
+    }
+
+    /**
+     * Scrive il valore come testo di una costante, conservando tutte le cifre della sua scala.
+     * @param value Il valore da scrivere.
+     * @return Il testo della costante, con '-' per i negativi come nel sorgente.
+     */
+    public static String format(BigDecimal value) {
+        return value.toPlainString();
+    }
+
+    /**
+     * Scrive il valore come numero letterale di dc, con '_' per il segno meno.
+     * @param value Il valore da scrivere.
+     * @return Il testo che dc legge come lo stesso numero, con la stessa scala.
+     */
+    public static String literal(BigDecimal value) {
+        String text = value.toPlainString();
+        return text.startsWith("-") ? "_" + text.substring(1) : text;
+    }
+
+    /**
+     * Scrive il valore come lo stampa il comando 'p' di dc, senza l'a capo finale: lo zero
+     * prima della virgola viene omesso (".5") e le righe più lunghe di 70 caratteri vengono
+     * spezzate dopo 69 caratteri con una barra rovesciata.
+     * @param value Il valore da stampare.
+     * @return Il testo stampato da dc.
+     */
+    public static String printed(BigDecimal value) {
+        if (value.signum() == 0) {
+            return "0";
+        }
+        String text = value.toPlainString();
+        if (text.startsWith("0.")) {
+            text = text.substring(1);
+        } else if (text.startsWith("-0.")) {
+            text = "-" + text.substring(2);
+        }
+        if (text.length() < LINE_LENGTH) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length() + text.length() / (LINE_LENGTH - 1) * 2);
+        int start = 0;
+        while (text.length() - start > LINE_LENGTH - 1) {
+            sb.append(text, start, start + LINE_LENGTH - 1).append("\\\n");
+            start += LINE_LENGTH - 1;
+        }
+        return sb.append(text, start, text.length()).toString();
+    }
+
+    /**
+     * Restituisce la precisione 'k' con cui il codice generato esegue un'operazione del tipo indicato.
+     * @param type Il tipo del risultato dell'operazione.
+     * @param floatScale La precisione delle operazioni tra float.
+     * @return 0 per gli int, floatScale per i float.
+     */
+    public static int scale(LangType type, int floatScale) {
+        return type == LangType.INT ? 0 : floatScale;
+    }
+
+    /**
+     * Applica un operatore come farebbe dc con la precisione indicata.
+     * @param op L'operatore.
+     * @param a L'operando sinistro.
+     * @param b L'operando destro.
+     * @param scale La precisione 'k' in vigore.
+     * @return Il risultato, oppure null per una divisione per zero (che dc segnala senza calcolare nulla).
+     */
+    public static BigDecimal apply(LangOper op, BigDecimal a, BigDecimal b, int scale) {
+        switch (op) {
+            case PLUS:
+                return a.add(b);
+            case MINUS:
+                return a.subtract(b);
+            case TIMES: {
+                int limit = Math.max(scale, Math.max(a.scale(), b.scale()));
+                return a.multiply(b).setScale(Math.min(a.scale() + b.scale(), limit), RoundingMode.DOWN);
+            }
+            case DIVIDE:
+                if (b.signum() == 0) {
+                    return null;
+                }
+                return a.divide(b, scale, RoundingMode.DOWN);
+            default:
+                throw new IllegalArgumentException("Operatore sconosciuto: " + op);
+        }
+    }
+}
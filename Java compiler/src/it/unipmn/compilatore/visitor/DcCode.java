@@ -0,0 +1,304 @@
+package it.unipmn.compilatore.visitor;
+
+import it.unipmn.compilatore.ast.LangOper;
+import it.unipmn.compilatore.symboltable.Symbol;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Sequenza di istruzioni 'dc' in forma tipizzata, prima della scrittura come testo.
+ * <p>
+ * Come AstArena, non uso un oggetto per istruzione ma vettori paralleli: il tipo di istruzione,
+ * un argomento intero (la posizione di memoria per LOAD e STORE) e il testo delle costanti.
+ * Tengo anche la profondità dello stack dopo ogni istruzione, che serve al PeepholeOptimizer
+ * e alla scrittura: il testo va a capo ogni volta che lo stack torna vuoto, cioè alla fine di
+ * ogni istruzione del sorgente, e separa le altre istruzioni con uno spazio.
+ * </p>
+ * <p>
+ * La posizione di memoria è il carattere del registro, oppure -(indice + 1) per una posizione
+ * dell'array di appoggio RegisterAllocator.SPILL. Una LOAD può essere segnata come ultimo uso
+ * della variabile: dopo di essa il valore nel registro non serve più.
+ * </p>
+ * <p>
+ * Per scrivere il codice a pezzi, discard() toglie le istruzioni già scritte dall'inizio della
+ * sequenza; la profondità dello stack delle istruzioni rimaste non cambia.
+ * </p>
+ */
+public final class DcCode {
+
+    private static final DcOp[] OPS = DcOp.values();
+
+    private byte[] ops;
+    private int[] args;
+    private String[] numbers;
+    private int[] depths;
+    private final BitSet lastUse;
+    private int size;
+    // Profondità dello stack prima della prima istruzione (diversa da zero solo dopo discard())
+    private int baseDepth;
+
+    /**
+     * Costruttore di una sequenza vuota.
+     */
+    public DcCode() {
+        this.ops = new byte[64];
+        this.args = new int[64];
+        this.numbers = new String[64];
+        this.depths = new int[64];
+        this.lastUse = new BitSet();
+    }
+
+    /**
+     * Aggiunge una costante.
+     * @param literal Il testo della costante, con '-' o '_' per il segno meno.
+     */
+    public void number(String literal) {
+        add(DcOp.NUMBER, 0, literal.startsWith("-") ? "_" + literal.substring(1) : literal);
+    }
+
+    /**
+     * Aggiunge la lettura di una variabile dalla sua memoria.
+     * @param symbol Il simbolo della variabile, con il registro o la posizione già assegnati.
+     */
+    public void load(Symbol symbol) {
+        add(DcOp.LOAD, location(symbol), null);
+    }
+
+    /**
+     * Aggiunge il salvataggio della cima dello stack nella memoria della variabile.
+     * @param symbol Il simbolo della variabile, con il registro o la posizione già assegnati.
+     */
+    public void store(Symbol symbol) {
+        add(DcOp.STORE, location(symbol), null);
+    }
+
+    /**
+     * Aggiunge il salvataggio della cima dello stack in un registro.
+     * @param register Il carattere del registro.
+     */
+    public void store(char register) {
+        add(DcOp.STORE, register, null);
+    }
+
+    /**
+     * Aggiunge l'operazione aritmetica corrispondente all'operatore.
+     * @param op L'operatore del linguaggio.
+     */
+    public void operation(LangOper op) {
+        switch (op) {
+            case PLUS: add(DcOp.ADD); break;
+            case MINUS: add(DcOp.SUBTRACT); break;
+            case TIMES: add(DcOp.MULTIPLY); break;
+            case DIVIDE: add(DcOp.DIVIDE); break;
+        }
+    }
+
+    /**
+     * Aggiunge un'istruzione senza argomenti (aritmetica, DUPLICATE, PRINT, CLEAR, SCALE).
+     * @param op L'istruzione.
+     */
+    public void add(DcOp op) {
+        add(op, 0, null);
+    }
+
+    /**
+     * Copia in fondo a questa sequenza l'istruzione i di un'altra, compreso il segno di ultimo uso.
+     * @param from La sequenza di origine.
+     * @param i L'indice dell'istruzione da copiare.
+     */
+    public void copy(DcCode from, int i) {
+        add(from.op(i), from.args[i], from.numbers[i]);
+        if (from.isLastUse(i)) {
+            lastUse.set(size - 1);
+        }
+    }
+
+    /**
+     * Aggiunge una LOAD o una STORE nella posizione di memoria indicata.
+     * @param op LOAD o STORE.
+     * @param location La posizione, come restituita da location(int).
+     */
+    public void access(DcOp op, int location) {
+        add(op, location, null);
+    }
+
+    private void add(DcOp op, int arg, String number) {
+        if (size == ops.length) {
+            int capacity = size * 2;
+            ops = Arrays.copyOf(ops, capacity);
+            args = Arrays.copyOf(args, capacity);
+            numbers = Arrays.copyOf(numbers, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+        }
+        ops[size] = (byte) op.ordinal();
+        args[size] = arg;
+        numbers[size] = number;
+        depths[size] = op == DcOp.CLEAR ? 0 : depth() - op.getPops() + op.getPushes();
+        lastUse.clear(size);
+        size++;
+    }
+
+    /**
+     * Segna la LOAD all'indice i come ultima lettura della sua variabile.
+     * @param i L'indice della LOAD.
+     */
+    public void markLastUse(int i) {
+        lastUse.set(i);
+    }
+
+    /**
+     * Rimuove le istruzioni dalla posizione indicata in poi.
+     * @param newSize Il numero di istruzioni da conservare.
+     */
+    public void truncate(int newSize) {
+        Arrays.fill(numbers, newSize, size, null);
+        lastUse.clear(newSize, Math.max(newSize, size));
+        size = newSize;
+    }
+
+    /**
+     * Rimuove tutte le istruzioni: la sequenza riparte con lo stack vuoto.
+     */
+    public void clear() {
+        truncate(0);
+        baseDepth = 0;
+    }
+
+    /**
+     * Rimuove le prime istruzioni, ad esempio perché sono già state scritte, e sposta le altre all'inizio.
+     * @param count Il numero di istruzioni da togliere.
+     */
+    public void discard(int count) {
+        if (count == 0) {
+            return;
+        }
+        baseDepth = depths[count - 1];
+        int rest = size - count;
+        System.arraycopy(ops, count, ops, 0, rest);
+        System.arraycopy(args, count, args, 0, rest);
+        System.arraycopy(numbers, count, numbers, 0, rest);
+        System.arraycopy(depths, count, depths, 0, rest);
+        BitSet marks = lastUse.get(count, Math.max(count, size));
+        lastUse.clear();
+        lastUse.or(marks);
+        Arrays.fill(numbers, rest, size, null);
+        size = rest;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public DcOp op(int i) {
+        return OPS[ops[i]];
+    }
+
+    /**
+     * Restituisce il testo della costante all'indice i.
+     * @param i L'indice di una NUMBER.
+     * @return Il testo della costante, con '_' per il segno meno.
+     */
+    public String number(int i) {
+        return numbers[i];
+    }
+
+    /**
+     * Restituisce la posizione di memoria di una LOAD o di una STORE.
+     * @param i L'indice dell'istruzione.
+     * @return Il carattere del registro, oppure -(indice + 1) per l'array di appoggio.
+     */
+    public int location(int i) {
+        return args[i];
+    }
+
+    /**
+     * Indica se l'istruzione all'indice i è una STORE nel registro indicato.
+     * @return true se è un salvataggio in quel registro.
+     */
+    public boolean isStoreTo(int i, char register) {
+        return op(i) == DcOp.STORE && args[i] == register;
+    }
+
+    public boolean isLastUse(int i) {
+        return lastUse.get(i);
+    }
+
+    /**
+     * Restituisce la profondità dello stack prima dell'istruzione i.
+     * @param i L'indice dell'istruzione.
+     * @return Il numero di valori sullo stack.
+     */
+    public int depthBefore(int i) {
+        return i == 0 ? baseDepth : depths[i - 1];
+    }
+
+    /**
+     * Restituisce la profondità dello stack dopo l'ultima istruzione.
+     * @return Il numero di valori sullo stack.
+     */
+    public int depth() {
+        return size == 0 ? baseDepth : depths[size - 1];
+    }
+
+    /**
+     * Scrive le istruzioni come testo dc: uno spazio tra le istruzioni e un a capo quando lo stack torna vuoto.
+     * @param out La destinazione del testo.
+     * @throws IOException Se la scrittura fallisce.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        writeTo(out, 0, size);
+    }
+
+    /**
+     * Scrive come testo dc solo le istruzioni nell'intervallo indicato.
+     * @param out La destinazione del testo.
+     * @param from L'indice della prima istruzione da scrivere.
+     * @param to L'indice successivo all'ultima istruzione da scrivere.
+     * @throws IOException Se la scrittura fallisce.
+     */
+    public void writeTo(Appendable out, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            switch (op(i)) {
+                case NUMBER: out.append(numbers[i]); break;
+                case LOAD: access(out, 'l', ';', args[i]); break;
+                case STORE: access(out, 's', ':', args[i]); break;
+                case ADD: out.append('+'); break;
+                case SUBTRACT: out.append('-'); break;
+                case MULTIPLY: out.append('*'); break;
+                case DIVIDE: out.append('/'); break;
+                case DUPLICATE: out.append('d'); break;
+                case PRINT: out.append('p'); break;
+                case CLEAR: out.append('c'); break;
+                case SCALE: out.append('k'); break;
+            }
+            out.append(depths[i] == 0 ? '\n' : ' ');
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size * 3);
+        try {
+            writeTo(sb);
+        } catch (IOException e) {
+            // StringBuilder non solleva eccezioni di I/O
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    private static void access(Appendable out, char register, char array, int location) throws IOException {
+        if (location >= 0) {
+            out.append(register).append((char) location);
+        } else {
+            out.append(Integer.toString(-location - 1)).append(' ').append(array).append(RegisterAllocator.SPILL);
+        }
+    }
+
+    private static int location(Symbol symbol) {
+        return symbol.getSlot() < 0 ? symbol.getRegister() : -symbol.getSlot() - 1;
+    }
+}
@@ -0,0 +1,48 @@
+package it.unipmn.compilatore.visitor;
+
+/**
+ * Le istruzioni della calcolatrice 'dc' prodotte dal generatore di codice.
+ * <p>
+ * Ogni istruzione riporta quanti valori toglie e quanti ne rimette sullo stack, così DcCode
+ * può seguire la profondità dello stack lungo il codice e PeepholeOptimizer può controllare
+ * che una riscrittura sia sicura.
+ * </p>
+ */
+public enum DcOp {
+    NUMBER(0, 1),    // costante, con '_' per il segno meno
+    LOAD(0, 1),      // 'l' seguito dal registro, oppure indice e ';' per l'array di appoggio
+    STORE(1, 0),     // 's' seguito dal registro, oppure indice e ':' per l'array di appoggio
+    ADD(2, 1),       // +
+    SUBTRACT(2, 1),  // -
+    MULTIPLY(2, 1),  // *
+    DIVIDE(2, 1),    // /
+    DUPLICATE(1, 2), // d
+    PRINT(1, 1),     // p, stampa la cima senza toglierla
+    CLEAR(0, 0),     // c, svuota tutto lo stack
+    SCALE(1, 0);     // k, imposta la precisione
+
+    // Valori tolti e rimessi sullo stack
+    private final int pops;
+    private final int pushes;
+
+    DcOp(int pops, int pushes) {
+        this.pops = pops;
+        this.pushes = pushes;
+    }
+
+    /**
+     * Restituisce quanti valori l'istruzione toglie dallo stack.
+     * @return Il numero di valori consumati.
+     */
+    public int getPops() {
+        return pops;
+    }
+
+    /**
+     * Restituisce quanti valori l'istruzione mette sullo stack.
+     * @return Il numero di valori prodotti.
+     */
+    public int getPushes() {
+        return pushes;
+    }
+}
@@ -0,0 +1,185 @@
+package it.unipmn.compilatore.visitor;
+
+import it.unipmn.compilatore.ast.*;
+import it.unipmn.compilatore.symboltable.Symbol;
+import it.unipmn.compilatore.trace.Trace;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Eliminazione degli assegnamenti inutili e delle variabili mai usate.
+ * <p>
+ * Il programma è un unico blocco senza salti, quindi basta una passata all'indietro con
+ * l'insieme delle variabili vive, cioè quelle il cui valore attuale verrà ancora letto.
+ * Un assegnamento (o l'inizializzazione di una dichiarazione) a una variabile non viva viene
+ * eliminato insieme alla sua espressione; le letture dell'espressione eliminata non rendono
+ * vive altre variabili, quindi catene intere di calcoli inutili spariscono in una passata.
+ * Una dichiarazione rimasta senza inizializzazione, la cui variabile non compare più in
+ * nessuna istruzione, viene eliminata del tutto.
+ * </p>
+ * <p>
+ * Le espressioni non hanno effetti collaterali, con un'eccezione: una divisione per zero fa
+ * stampare un errore a dc. Per questo un'espressione che divide per qualcosa che non sia una
+ * costante diversa da zero viene sempre conservata. Va eseguito su un albero già controllato,
+ * dopo il constant folding, perché riconosce le variabili attraverso i Symbol legati ai NodeId.
+ * </p>
+ */
+public final class DeadStoreEliminator {
+
+    private final Trace trace;
+    private int removedStores;
+    private int removedDeclarations;
+
+    /**
+     * Crea l'eliminatore.
+     * @param trace La traccia su cui annotare le operazioni svolte.
+     */
+    public DeadStoreEliminator(Trace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Elimina dal programma gli assegnamenti inutili e le dichiarazioni mai usate.
+     * @param program Il programma, già controllato; la lista delle istruzioni viene modificata.
+     */
+    public void eliminate(NodeProgram program) {
+        List<NodeDecSt> statements = program.getStatements();
+        // Variabili il cui valore attuale verrà letto, e variabili che compaiono nelle istruzioni conservate
+        Set<Symbol> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Symbol> referenced = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean[] removed = new boolean[statements.size()];
+
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            NodeDecSt stmt = statements.get(i);
+            if (stmt instanceof NodePrint) {
+                Symbol symbol = ((NodePrint) stmt).getId().getSymbol();
+                live.add(symbol);
+                referenced.add(symbol);
+            } else if (stmt instanceof NodeAssign) {
+                NodeAssign assign = (NodeAssign) stmt;
+                Symbol symbol = assign.getId().getSymbol();
+                if (live.remove(symbol) || !isPure(assign.getExpr())) {
+                    referenced.add(symbol);
+                    reads(assign.getExpr(), live, referenced);
+                } else {
+                    removed[i] = true;
+                    removedStores++;
+                    if (trace.enabled(Trace.Level.DETAIL)) {
+                        trace.append("Elimino l'assegnamento inutile a '").append(assign.getId().getName())
+                                .append("' alla riga ").append(assign.getRiga()).append("\n");
+                    }
+                }
+            } else if (stmt instanceof NodeDecl) {
+                NodeDecl decl = (NodeDecl) stmt;
+                Symbol symbol = decl.getId().getSymbol();
+                if (decl.getInit() != null) {
+                    if (live.contains(symbol) || !isPure(decl.getInit())) {
+                        referenced.add(symbol);
+                        reads(decl.getInit(), live, referenced);
+                    } else {
+                        decl.setInit(null);
+                        removedStores++;
+                        if (trace.enabled(Trace.Level.DETAIL)) {
+                            trace.append("Elimino l'inizializzazione inutile di '").append(decl.getId().getName())
+                                    .append("' alla riga ").append(decl.getRiga()).append("\n");
+                        }
+                    }
+                }
+                // Prima della dichiarazione la variabile non esiste
+                live.remove(symbol);
+                if (decl.getInit() == null && !referenced.contains(symbol)) {
+                    removed[i] = true;
+                    removedDeclarations++;
+                }
+            }
+        }
+
+        // Compatto la lista delle istruzioni conservando l'ordine
+        int kept = 0;
+        for (int i = 0; i < removed.length; i++) {
+            if (!removed[i]) {
+                statements.set(kept++, statements.get(i));
+            }
+        }
+        statements.subList(kept, statements.size()).clear();
+
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Codice morto: eliminati ").append(removedStores).append(" assegnamenti e ")
+                    .append(removedDeclarations).append(" dichiarazioni.\n");
+        }
+    }
+
+    /**
+     * Restituisce quanti assegnamenti e inizializzazioni sono stati eliminati.
+     * @return Il numero di assegnamenti eliminati.
+     */
+    public int getRemovedStores() {
+        return removedStores;
+    }
+
+    /**
+     * Restituisce quante dichiarazioni sono state eliminate del tutto.
+     * @return Il numero di dichiarazioni eliminate.
+     */
+    public int getRemovedDeclarations() {
+        return removedDeclarations;
+    }
+
+    /**
+     * Aggiunge alle variabili vive (e a quelle usate) le variabili lette dall'espressione.
+     * L'ordine delle letture non conta: i nodi da visitare restano su una pila esplicita,
+     * quindi un'espressione molto profonda non esaurisce lo stack delle chiamate.
+     */
+    private static void reads(NodeExpr expr, Set<Symbol> live, Set<Symbol> referenced) {
+        Deque<NodeExpr> pending = new ArrayDeque<>();
+        pending.push(expr);
+        while (!pending.isEmpty()) {
+            NodeExpr e = pending.pop();
+            if (e instanceof NodeBinOp) {
+                pending.push(((NodeBinOp) e).getRight());
+                pending.push(((NodeBinOp) e).getLeft());
+            } else if (e instanceof NodeConvert) {
+                pending.push(((NodeConvert) e).getExpr());
+            } else if (e instanceof NodeDeref) {
+                Symbol symbol = ((NodeDeref) e).getId().getSymbol();
+                live.add(symbol);
+                referenced.add(symbol);
+            }
+        }
+    }
+
+    /**
+     * Un'espressione si può eliminare se non contiene divisioni che potrebbero essere per zero.
+     * Come reads(), scorre l'espressione con una pila esplicita.
+     */
+    private static boolean isPure(NodeExpr expr) {
+        Deque<NodeExpr> pending = new ArrayDeque<>();
+        pending.push(expr);
+        while (!pending.isEmpty()) {
+            NodeExpr e = pending.pop();
+            if (e instanceof NodeBinOp) {
+                NodeBinOp op = (NodeBinOp) e;
+                if (op.getOp() == LangOper.DIVIDE && !isNonZeroConstant(op.getRight())) {
+                    return false;
+                }
+                pending.push(op.getRight());
+                pending.push(op.getLeft());
+            } else if (e instanceof NodeConvert) {
+                pending.push(((NodeConvert) e).getExpr());
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNonZeroConstant(NodeExpr expr) {
+        while (expr instanceof NodeConvert) {
+            expr = ((NodeConvert) expr).getExpr();
+        }
+        return expr instanceof NodeCost && DcArithmetic.parse(((NodeCost) expr).getValue()).signum() != 0;
+    }
+}
@@ -0,0 +1,29 @@
+package it.unipmn.compilatore.visitor;
+
+import it.unipmn.compilatore.ast.AstArena;
+
+/**
+ * Interfaccia del pattern Visitor per l'AST compatto (AstArena).
+ * <p>
+ * Come IVisitor, ma ogni nodo è identificato dal suo indice nell'arena invece che da un oggetto.
+ * I figli si visitano con ast.accept(indice, this).
+ * </p>
+ */
+public interface IArenaVisitor {
+
+    void visitProgram(AstArena ast);
+
+    void visitDecl(AstArena ast, int node);
+
+    void visitAssign(AstArena ast, int node);
+
+    void visitPrint(AstArena ast, int node);
+
+    void visitBinOp(AstArena ast, int node);
+
+    void visitCost(AstArena ast, int node);
+
+    void visitDeref(AstArena ast, int node);
+
+    void visitConvert(AstArena ast, int node);
+}
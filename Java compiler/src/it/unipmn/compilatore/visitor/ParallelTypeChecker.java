@@ -0,0 +1,211 @@
+package it.unipmn.compilatore.visitor;
+
+import it.unipmn.compilatore.ast.NodeAssign;
+import it.unipmn.compilatore.ast.NodeDecSt;
+import it.unipmn.compilatore.ast.NodeDecl;
+import it.unipmn.compilatore.ast.NodeProgram;
+import it.unipmn.compilatore.exceptions.SyntacticException;
+import it.unipmn.compilatore.symboltable.Symbol;
+import it.unipmn.compilatore.symboltable.SymbolTable;
+import it.unipmn.compilatore.trace.Trace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Controllo dei tipi in due fasi, con la seconda eseguita in parallelo.
+ * <p>
+ * Il linguaggio non ha scope annidati e i tipi di tutte le variabili sono fissati dalle
+ * dichiarazioni. Una prima passata sequenziale scorre solo le NodeDecl e costruisce la
+ * SymbolTable; ogni volta che raggiunge l'inizio di una porzione di programma ne salva una
+ * copia, che contiene esattamente le variabili dichiarate prima di quella porzione, insieme
+ * all'insieme delle variabili già assegnate (dalle inizializzazioni e dagli assegnamenti).
+ * Poi ogni porzione viene controllata da un TypeCheckVisitor indipendente, partendo dalla
+ * sua copia, su un ForkJoinPool.
+ * </p>
+ * <p>
+ * Ogni istruzione riceve quindi gli stessi controlli e le stesse NodeConvert della visita
+ * sequenziale. Se più porzioni falliscono viene segnalato l'errore della prima in ordine di
+ * programma, che è quello in cui si sarebbe fermata la visita sequenziale, e la traccia
+ * riporta in ordine i messaggi delle porzioni fino a quella.
+ * </p>
+ * <p>
+ * Un programma costruito con la condivisione delle sottoespressioni (NodeProgram.isShared())
+ * viene sempre controllato in sequenza: un nodo condiviso da due porzioni riceverebbe le
+ * NodeConvert da due thread contemporaneamente.
+ * </p>
+ */
+public final class ParallelTypeChecker {
+
+    /**
+     * Numero minimo di istruzioni per porzione: sotto questa soglia non conviene dividere.
+     */
+    public static final int MIN_CHUNK = 4096;
+    // Porzioni per thread, per bilanciare il carico quando alcune porzioni sono più lente
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final Trace trace;
+
+    /**
+     * Crea un controllore che usa il pool comune della JVM.
+     * @param trace La traccia su cui annotare le operazioni svolte.
+     */
+    public ParallelTypeChecker(Trace trace) {
+        this(ForkJoinPool.commonPool(), trace);
+    }
+
+    /**
+     * Crea un controllore che usa il pool indicato (ad esempio per limitare i thread).
+     * @param pool Il pool su cui controllare le porzioni.
+     * @param trace La traccia su cui annotare le operazioni svolte.
+     */
+    public ParallelTypeChecker(ForkJoinPool pool, Trace trace) {
+        this.pool = pool;
+        this.trace = trace;
+    }
+
+    /**
+     * Controlla i tipi dell'intero programma, inserendo le conversioni implicite.
+     * @param program Il programma da controllare.
+     * @throws SyntacticException Il primo errore di tipo in ordine di programma.
+     */
+    public void check(NodeProgram program) throws SyntacticException {
+        List<NodeDecSt> statements = program.getStatements();
+        int[] bounds = split(statements.size());
+        if (bounds.length == 2 || program.isShared()) {
+            program.accept(new TypeCheckVisitor(trace));
+            return;
+        }
+
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Inizio visita del Programma.\n");
+        }
+
+        // Prima fase: raccolgo le dichiarazioni e fotografo la tabella all'inizio di ogni porzione
+        SymbolTable[] declared = new SymbolTable[bounds.length - 1];
+        List<Set<Symbol>> assignedBefore = new ArrayList<>();
+        SymbolTable table = new SymbolTable();
+        Set<Symbol> assigned = Collections.newSetFromMap(new IdentityHashMap<>());
+        int chunk = 0;
+        for (int i = 0; i < statements.size() && chunk < declared.length; i++) {
+            if (i == bounds[chunk]) {
+                declared[chunk++] = table.copy();
+                Set<Symbol> copy = Collections.newSetFromMap(new IdentityHashMap<>());
+                copy.addAll(assigned);
+                assignedBefore.add(copy);
+            }
+            NodeDecSt stmt = statements.get(i);
+            if (stmt instanceof NodeDecl) {
+                NodeDecl decl = (NodeDecl) stmt;
+                // Lego subito il nome al simbolo, che le porzioni riuseranno per la dichiarazione;
+                // una ridichiarazione viene ignorata qui e segnalata dalla sua porzione
+                Symbol symbol = new Symbol(decl.getType());
+                if (table.insert(decl.getId(), symbol)) {
+                    decl.getId().bind(symbol);
+                    if (decl.getInit() != null) {
+                        assigned.add(symbol);
+                    }
+                }
+            } else if (stmt instanceof NodeAssign) {
+                // Un assegnamento a una variabile non dichiarata viene segnalato dalla sua porzione
+                Symbol symbol = table.lookup(((NodeAssign) stmt).getId());
+                if (symbol != null) {
+                    assigned.add(symbol);
+                }
+            }
+        }
+
+        // Seconda fase: ogni porzione viene controllata a partire dalle proprie dichiarazioni
+        Trace.Level level = trace.enabled(Trace.Level.ERROR) ? trace.level() : Trace.Level.OFF;
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int k = 0; k < declared.length; k++) {
+            List<NodeDecSt> part = statements.subList(bounds[k], bounds[k + 1]);
+            SymbolTable start = declared[k];
+            Set<Symbol> startAssigned = assignedBefore.get(k);
+            tasks.add(() -> Chunk.check(part, start, startAssigned, level));
+        }
+        List<Future<Chunk>> futures = pool.invokeAll(tasks);
+
+        // Ricompongo la traccia in ordine e mi fermo alla prima porzione con un errore
+        for (Future<Chunk> future : futures) {
+            Chunk result = get(future);
+            if (result.log != null) {
+                trace.append(result.log);
+            }
+            if (result.error != null) {
+                throw result.error;
+            }
+        }
+
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Fine visita del Programma.\n");
+        }
+    }
+
+    /**
+     * Calcola i confini delle porzioni.
+     * @param count Il numero di istruzioni del programma.
+     * @return Gli indici di inizio delle porzioni, seguiti dal numero di istruzioni.
+     */
+    private int[] split(int count) {
+        if (pool.getParallelism() == 1) {
+            // Con un solo thread la prima fase sarebbe solo lavoro in più
+            return new int[] {0, count};
+        }
+        int chunks = Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, Math.max(1, count / MIN_CHUNK));
+        int[] bounds = new int[chunks + 1];
+        for (int k = 0; k <= chunks; k++) {
+            bounds[k] = (int) ((long) count * k / chunks);
+        }
+        return bounds;
+    }
+
+    private static Chunk get(Future<Chunk> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Controllo dei tipi interrotto", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Risultato del controllo di una porzione: la sua traccia e il primo errore trovato.
+     */
+    private static final class Chunk {
+
+        private String log;
+        private SyntacticException error;
+
+        static Chunk check(List<NodeDecSt> statements, SymbolTable declared, Set<Symbol> assigned, Trace.Level level) {
+            Chunk chunk = new Chunk();
+            Trace local = Trace.inMemory(level);
+            TypeCheckVisitor checker = new TypeCheckVisitor(declared, assigned, local);
+            try {
+                for (NodeDecSt stmt : statements) {
+                    stmt.accept(checker);
+                }
+            } catch (SyntacticException e) {
+                chunk.error = e;
+            }
+            if (local.memory() != null) {
+                chunk.log = local.toString();
+            }
+            return chunk;
+        }
+    }
+}
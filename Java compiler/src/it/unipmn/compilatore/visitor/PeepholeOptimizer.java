@@ -0,0 +1,221 @@
+package it.unipmn.compilatore.visitor;
+
+import it.unipmn.compilatore.trace.Trace;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Ottimizzatore a finestra (peephole) sul codice 'dc' generato, prima della scrittura come testo.
+ * <p>
+ * Le istruzioni vengono copiate una alla volta in una nuova sequenza; dopo ogni copia provo le
+ * regole abilitate sulle ultime istruzioni copiate, finché nessuna si applica più. Così una
+ * riscrittura può far scattare un'altra regola su ciò che la precede, senza rileggere il codice.
+ * Ogni regola conta quante volte si è applicata e quante istruzioni ha eliminato.
+ * </p>
+ * <p>
+ * Le regole controllano la profondità dello stack tenuta da DcCode, e STORE_LOAD usa i segni di
+ * ultimo uso messi dal generatore: senza di essi (nella compilazione a flusso) si limita alla
+ * forma che conserva il valore nel registro.
+ * </p>
+ */
+public final class PeepholeOptimizer {
+
+    /**
+     * Le regole di riscrittura.
+     */
+    public enum Rule {
+        /**
+         * "s<i>x</i> l<i>x</i>": il valore è ancora sullo stack. Se la lettura è l'ultimo uso di x
+         * le due istruzioni spariscono, altrimenti diventano "d s<i>x</i>".
+         */
+        STORE_LOAD,
+        /**
+         * "p sz" con il solo valore stampato sullo stack: diventa "p c", senza scrivere il registro cestino.
+         */
+        PRINT_CLEAR,
+        /**
+         * Un valore appena messo sullo stack (costante, lettura, 'd') e subito scartato nel registro cestino.
+         */
+        DEAD_PUSH,
+        /**
+         * "l<i>x</i> s<i>x</i>": rimette nella variabile il valore che contiene già.
+         */
+        SELF_STORE
+    }
+
+    /**
+     * Quante istruzioni finali guarda una regola: chi scrive il codice a pezzi ne tiene da parte
+     * altrettante, così le regole si applicano anche a cavallo tra due pezzi.
+     */
+    public static final int WINDOW = 2;
+
+    private static final Rule[] RULES = Rule.values();
+
+    private final Trace trace;
+    private final Set<Rule> rules;
+    // Per ogni regola: quante volte si è applicata e quante istruzioni ha eliminato
+    private final long[] applied;
+    private final long[] removed;
+
+    /**
+     * Crea l'ottimizzatore con tutte le regole abilitate.
+     * @param trace La traccia su cui scrivere il resoconto.
+     */
+    public PeepholeOptimizer(Trace trace) {
+        this(EnumSet.allOf(Rule.class), trace);
+    }
+
+    /**
+     * Crea l'ottimizzatore con le sole regole indicate.
+     * @param rules Le regole da applicare.
+     * @param trace La traccia su cui scrivere il resoconto.
+     */
+    public PeepholeOptimizer(Set<Rule> rules, Trace trace) {
+        this.rules = rules.isEmpty() ? EnumSet.noneOf(Rule.class) : EnumSet.copyOf(rules);
+        this.trace = trace;
+        this.applied = new long[RULES.length];
+        this.removed = new long[RULES.length];
+    }
+
+    /**
+     * Copia il codice in fondo a out applicando le regole.
+     * @param in Il codice da ottimizzare, che non viene modificato.
+     * @param out La sequenza a cui aggiungere il codice ottimizzato.
+     */
+    public void optimize(DcCode in, DcCode out) {
+        for (int i = 0; i < in.size(); i++) {
+            out.copy(in, i);
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (Rule rule : rules) {
+                    int before = out.size();
+                    if (rewrite(rule, out)) {
+                        applied[rule.ordinal()]++;
+                        removed[rule.ordinal()] += before - out.size();
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Prova una regola sulle ultime istruzioni della sequenza.
+     * @return true se la regola si è applicata e la sequenza è cambiata.
+     */
+    private static boolean rewrite(Rule rule, DcCode code) {
+        int n = code.size();
+        if (n < 2) {
+            return false;
+        }
+        DcOp first = code.op(n - 2);
+        DcOp second = code.op(n - 1);
+        switch (rule) {
+            case STORE_LOAD:
+                if (first != DcOp.STORE || second != DcOp.LOAD || code.location(n - 2) != code.location(n - 1)) {
+                    return false;
+                }
+                if (code.isLastUse(n - 1)) {
+                    code.truncate(n - 2);
+                } else {
+                    int location = code.location(n - 2);
+                    code.truncate(n - 2);
+                    code.add(DcOp.DUPLICATE);
+                    code.access(DcOp.STORE, location);
+                }
+                return true;
+            case PRINT_CLEAR:
+                // 'c' svuota tutto lo stack: lo uso solo se sotto il valore stampato non c'è altro
+                if (first != DcOp.PRINT || !code.isStoreTo(n - 1, RegisterAllocator.SCRATCH) || code.depthBefore(n - 2) != 1) {
+                    return false;
+                }
+                code.truncate(n - 1);
+                code.add(DcOp.CLEAR);
+                return true;
+            case DEAD_PUSH:
+                if ((first != DcOp.NUMBER && first != DcOp.LOAD && first != DcOp.DUPLICATE)
+                        || !code.isStoreTo(n - 1, RegisterAllocator.SCRATCH)) {
+                    return false;
+                }
+                code.truncate(n - 2);
+                return true;
+            case SELF_STORE:
+                if (first != DcOp.LOAD || second != DcOp.STORE || code.location(n - 2) != code.location(n - 1)) {
+                    return false;
+                }
+                code.truncate(n - 2);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Restituisce quante volte la regola si è applicata.
+     * @param rule La regola.
+     * @return Il numero di riscritture.
+     */
+    public long getApplied(Rule rule) {
+        return applied[rule.ordinal()];
+    }
+
+    /**
+     * Restituisce quante istruzioni la regola ha eliminato (zero per le regole che sostituiscono soltanto).
+     * @param rule La regola.
+     * @return Il numero di istruzioni eliminate.
+     */
+    public long getRemoved(Rule rule) {
+        return removed[rule.ordinal()];
+    }
+
+    /**
+     * Restituisce quante istruzioni sono state eliminate in tutto.
+     * @return La somma delle istruzioni eliminate da tutte le regole.
+     */
+    public long getRemovedTotal() {
+        long total = 0;
+        for (long r : removed) {
+            total += r;
+        }
+        return total;
+    }
+
+    /**
+     * Scrive sulla traccia il resoconto delle regole applicate finora.
+     */
+    public void report() {
+        if (!trace.enabled(Trace.Level.PHASE)) {
+            return;
+        }
+        trace.append("Peephole: eliminate ").append(getRemovedTotal()).append(" istruzioni.\n");
+        for (Rule rule : rules) {
+            trace.append("  ").append(rule.name()).append(": ").append(applied[rule.ordinal()])
+                    .append(" applicazioni, ").append(removed[rule.ordinal()]).append(" istruzioni eliminate\n");
+        }
+    }
+
+    /**
+     * Interpreta un elenco di regole scritto come sulla riga di comando: "all", "off",
+     * oppure i nomi delle regole separati da virgole, senza distinguere maiuscole e minuscole.
+     * @param names L'elenco delle regole.
+     * @return L'insieme delle regole.
+     * @throws IllegalArgumentException Se un nome non corrisponde a nessuna regola.
+     */
+    public static Set<Rule> parseRules(String names) {
+        String list = names.trim();
+        if (list.equalsIgnoreCase("all")) {
+            return EnumSet.allOf(Rule.class);
+        }
+        Set<Rule> result = EnumSet.noneOf(Rule.class);
+        if (list.equalsIgnoreCase("off")) {
+            return result;
+        }
+        for (String name : list.split(",")) {
+            result.add(Rule.valueOf(name.trim().toUpperCase()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,122 @@
+package it.unipmn.compilatore.visitor;
+
+import it.unipmn.compilatore.ast.NodeBinOp;
+import it.unipmn.compilatore.ast.NodeExpr;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Visita in ordine posticipato di un'operazione binaria e delle operazioni annidate nei suoi
+ * operandi, senza ricorsione: un valore per ogni espressione, calcolato dai valori degli operandi.
+ * <p>
+ * Come gli operatori in Parser.parseExpression(), le operazioni aperte aspettano i propri operandi
+ * su una pila esplicita, quindi la profondità delle parentesi è limitata solo dalla memoria.
+ * Gli operandi che non sono operazioni (costanti, letture, conversioni) vengono passati a operand();
+ * una conversione racchiude solo un'espressione int, senza altre conversioni, quindi visitarla
+ * ricorsivamente aggiunge al più un livello di chiamate.
+ * </p>
+ * <p>
+ * I figli di ogni operazione vengono letti una volta sola, all'ingresso: se il nodo è condiviso
+ * e un altro thread li sostituisce nel frattempo, combine() riceve comunque quelli originali.
+ * </p>
+ * @param <T> Il tipo del valore calcolato per ogni espressione.
+ */
+abstract class PostOrderWalk<T> {
+
+    /**
+     * Visita l'operazione e le operazioni annidate, dagli operandi verso la radice.
+     * @param root L'operazione da cui partire.
+     * @return Il valore calcolato per root.
+     */
+    final T walk(NodeBinOp root) {
+        T value = known(root);
+        if (value != null) {
+            return value;
+        }
+        Deque<Operation<T>> stack = new ArrayDeque<>();
+        stack.push(open(root));
+        while (true) {
+            Operation<T> current = stack.peek();
+            NodeExpr operand;
+            if (current.phase == 0) {
+                operand = current.left;
+            } else if (current.phase == 1) {
+                current.leftValue = value;
+                operand = current.right;
+            } else {
+                stack.pop();
+                value = combine(current.node, current.left, current.right, current.leftValue, value);
+                if (stack.isEmpty()) {
+                    return value;
+                }
+                continue;
+            }
+            current.phase++;
+            if (!(operand instanceof NodeBinOp)) {
+                value = operand(operand);
+            } else if ((value = known((NodeBinOp) operand)) == null) {
+                stack.push(open((NodeBinOp) operand));
+            }
+        }
+    }
+
+    private Operation<T> open(NodeBinOp node) {
+        enter(node);
+        return new Operation<>(node);
+    }
+
+    /**
+     * Restituisce il valore di un'operazione già visitata, ad esempio perché il nodo è condiviso:
+     * l'operazione e i suoi operandi non vengono visitati di nuovo.
+     * @param node L'operazione.
+     * @return Il valore noto, oppure null per visitare l'operazione.
+     */
+    T known(NodeBinOp node) {
+        return null;
+    }
+
+    /**
+     * Chiamato all'ingresso in un'operazione, prima di visitarne gli operandi.
+     * @param node L'operazione.
+     */
+    void enter(NodeBinOp node) {
+    }
+
+    /**
+     * Calcola il valore di un operando che non è un'operazione.
+     * @param operand La costante, la lettura o la conversione.
+     * @return Il suo valore.
+     */
+    abstract T operand(NodeExpr operand);
+
+    /**
+     * Calcola il valore di un'operazione da quelli dei suoi operandi.
+     * @param node L'operazione.
+     * @param left L'operando sinistro letto all'ingresso.
+     * @param right L'operando destro letto all'ingresso.
+     * @param leftValue Il valore dell'operando sinistro.
+     * @param rightValue Il valore dell'operando destro.
+     * @return Il valore dell'operazione.
+     */
+    abstract T combine(NodeBinOp node, NodeExpr left, NodeExpr right, T leftValue, T rightValue);
+
+    /**
+     * Un'operazione di cui si stanno visitando gli operandi.
+     */
+    private static final class Operation<T> {
+
+        private final NodeBinOp node;
+        private final NodeExpr left;
+        private final NodeExpr right;
+        private T leftValue;
+        // 0: manca l'operando sinistro, 1: manca il destro, 2: operandi visitati
+        private int phase;
+
+        Operation(NodeBinOp node) {
+            this.node = node;
+            this.left = node.getLeft();
+            this.right = node.getRight();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package it.unipmn.compilatore.visitor;
+
+import it.unipmn.compilatore.ast.*;
+import it.unipmn.compilatore.exceptions.SyntacticException;
+import it.unipmn.compilatore.symboltable.Symbol;
+import it.unipmn.compilatore.trace.Trace;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Visitatore che esegue l'intero programma nel compilatore (valutazione parziale completa).
+ * <p>
+ * Il linguaggio non legge nessun input, quindi ogni valore è noto durante la compilazione e
+ * l'uscita del programma dipende solo dal sorgente. Questo visitatore calcola ogni istruzione
+ * con l'aritmetica di dc (DcArithmetic) alla precisione del codice generato e raccoglie i
+ * valori stampati, che poi restituisce come programma dc minimo (solo costanti da stampare,
+ * nessun registro e nessuna operazione) oppure direttamente come testo, identico a quello
+ * che stamperebbe dc.
+ * </p>
+ * <p>
+ * Va eseguito su un albero già controllato, perché legge i valori delle variabili attraverso
+ * i Symbol legati ai NodeId. I casi in cui dc segnalerebbe un errore a tempo di esecuzione
+ * (lettura di una variabile mai assegnata, divisione per zero) sollevano una SyntacticException.
+ * </p>
+ */
+public class PrecomputeVisitor implements IVisitor {
+
+    // La precisione 'k' con cui dc eseguirebbe le operazioni tra float (quelle tra int usano 0)
+    private final int floatScale;
+    private final Trace trace;
+    // Il valore attuale di ogni variabile
+    private final Map<Symbol, BigDecimal> values;
+    // I valori stampati, nell'ordine delle print
+    private final List<BigDecimal> printed;
+    // Il valore dell'ultima espressione visitata
+    private BigDecimal result;
+    // Visita delle operazioni annidate: ogni operazione riceve i valori dei suoi operandi
+    private final PostOrderWalk<BigDecimal> operations = new PostOrderWalk<BigDecimal>() {
+        @Override
+        BigDecimal operand(NodeExpr operand) {
+            operand.accept(PrecomputeVisitor.this);
+            return result;
+        }
+
+        @Override
+        BigDecimal combine(NodeBinOp node, NodeExpr left, NodeExpr right, BigDecimal leftValue, BigDecimal rightValue) {
+            return apply(node, leftValue, rightValue);
+        }
+    };
+
+    /**
+     * Costruttore del visitatore con la precisione del codice generato e senza traccia.
+     */
+    public PrecomputeVisitor() {
+        this(DcArithmetic.FLOAT_SCALE, Trace.disabled());
+    }
+
+    /**
+     * Costruttore del visitatore con la precisione del codice generato.
+     * @param trace La traccia su cui annotare le operazioni svolte.
+     */
+    public PrecomputeVisitor(Trace trace) {
+        this(DcArithmetic.FLOAT_SCALE, trace);
+    }
+
+    /**
+     * Costruttore del visitatore con una precisione a scelta.
+     * @param floatScale La precisione 'k' con cui calcolare le operazioni tra float.
+     * @param trace La traccia su cui annotare le operazioni svolte.
+     */
+    public PrecomputeVisitor(int floatScale, Trace trace) {
+        this.floatScale = floatScale;
+        this.trace = trace;
+        this.values = new IdentityHashMap<>();
+        this.printed = new ArrayList<>();
+    }
+
+    /**
+     * Restituisce il programma dc che stampa i valori calcolati: una costante per print,
+     * stampata con 'p' e tolta dallo stack con 'c'.
+     * @return Il codice dc minimo equivalente al programma.
+     */
+    public String getCode() {
+        StringBuilder sb = new StringBuilder();
+        for (BigDecimal value : printed) {
+            sb.append(DcArithmetic.literal(value)).append("pc\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Restituisce il testo che il programma stamperebbe eseguito da dc.
+     * @return L'uscita del programma, una riga per print.
+     */
+    public String getOutput() {
+        StringBuilder sb = new StringBuilder();
+        for (BigDecimal value : printed) {
+            sb.append(DcArithmetic.printed(value)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void visit(NodeProgram node) {
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Inizio esecuzione anticipata del programma.\n");
+        }
+        for (NodeDecSt stmt : node.getStatements()) {
+            stmt.accept(this);
+        }
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Esecuzione anticipata completata: ").append(printed.size()).append(" valori stampati.\n");
+        }
+    }
+
+    @Override
+    public void visit(NodeDecl node) {
+        if (node.getInit() != null) {
+            node.getInit().accept(this);
+            values.put(symbolOf(node.getId()), result);
+        } else {
+            // Una nuova dichiarazione non ha ancora un valore
+            values.remove(symbolOf(node.getId()));
+        }
+    }
+
+    @Override
+    public void visit(NodeAssign node) {
+        node.getExpr().accept(this);
+        values.put(symbolOf(node.getId()), result);
+    }
+
+    @Override
+    public void visit(NodePrint node) {
+        BigDecimal value = valueOf(node.getId(), node.getRiga());
+        printed.add(value);
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("print ").append(node.getId().getName()).append(" = ").append(DcArithmetic.format(value)).append("\n");
+        }
+    }
+
+    @Override
+    public void visit(NodeBinOp node) {
+        // Le operazioni annidate vengono calcolate da PostOrderWalk, senza ricorsione
+        result = operations.walk(node);
+    }
+
+    private BigDecimal apply(NodeBinOp node, BigDecimal left, BigDecimal right) {
+        BigDecimal value = DcArithmetic.apply(node.getOp(), left, right, DcArithmetic.scale(node.getType(), floatScale));
+        if (value == null) {
+            throw new SyntacticException("Errore: Divisione per zero alla riga " + node.getRiga());
+        }
+        return value;
+    }
+
+    @Override
+    public void visit(NodeCost node) {
+        result = DcArithmetic.parse(node.getValue());
+    }
+
+    @Override
+    public void visit(NodeId node) {
+        result = valueOf(node, node.getRiga());
+    }
+
+    @Override
+    public void visit(NodeConvert node) {
+        // dc non distingue interi e decimali: il valore resta lo stesso
+        node.getExpr().accept(this);
+    }
+
+    @Override
+    public void visit(NodeDeref node) {
+        result = valueOf(node.getId(), node.getRiga());
+    }
+
+    private BigDecimal valueOf(NodeId id, int riga) {
+        BigDecimal value = values.get(symbolOf(id));
+        if (value == null) {
+            throw new SyntacticException("Errore: Variabile '" + id.getName() + "' letta prima di essere assegnata alla riga " + riga);
+        }
+        return value;
+    }
+
+    private static Symbol symbolOf(NodeId id) {
+        Symbol symbol = id.getSymbol();
+        if (symbol == null) {
+            throw new IllegalStateException("Variabile '" + id.getName() + "' non risolta: manca il controllo dei tipi");
+        }
+        return symbol;
+    }
+}
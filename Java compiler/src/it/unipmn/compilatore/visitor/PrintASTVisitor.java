@@ -2,6 +2,9 @@ package it.unipmn.compilatore.visitor;
 
 import it.unipmn.compilatore.ast.*;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 /**
  * Classe che implementa un visitatore per la formattazione testuale dell'AST.
  * Visita i nodi dell'albero e ricostruisce il programma sotto forma di stringa, 
@@ -42,23 +45,31 @@ public class PrintASTVisitor implements IVisitor {
 
     /**
      * Visita un'operazione matematica binaria.
+     * Le operazioni annidate non vengono visitate ricorsivamente: restano su una pila insieme
+     * ai pezzi di testo che le seguono, così un'espressione profonda non esaurisce lo stack delle chiamate.
      * @param node Il nodo dell'operazione.
      */
     @Override
     public void visit(NodeBinOp node) {
-        // Racchiudo l'operazione tra parentesi per evidenziare la precedenza nell'albero
-        sb.append("(");
-        
-        // Visito la parte sinistra dell'espressione (ricorsione)
-        node.getLeft().accept(this);
-        
-        // Aggiungo il simbolo dell'operatore staccato da spazi
-        sb.append(" ").append(node.getOp()).append(" ");
-        
-        // Visito la parte destra dell'espressione (ricorsione)
-        node.getRight().accept(this);
-        
-        sb.append(")");
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            Object item = pending.pop();
+            if (item instanceof NodeBinOp) {
+                NodeBinOp op = (NodeBinOp) item;
+                // Racchiudo l'operazione tra parentesi per evidenziare la precedenza nell'albero
+                sb.append("(");
+                // Inserisco nella pila in ordine inverso: sinistra, operatore staccato da spazi, destra, parentesi
+                pending.push(")");
+                pending.push(op.getRight());
+                pending.push(" " + op.getOp() + " ");
+                pending.push(op.getLeft());
+            } else if (item instanceof NodeExpr) {
+                ((NodeExpr) item).accept(this);
+            } else {
+                sb.append((String) item);
+            }
+        }
     }
 
     /**
@@ -0,0 +1,266 @@
+package it.unipmn.compilatore.visitor;
+
+import it.unipmn.compilatore.ast.*;
+import it.unipmn.compilatore.symboltable.Symbol;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assegna alle variabili i registri della calcolatrice 'dc', riusandoli quando una variabile è morta.
+ * <p>
+ * Il programma è una sequenza di istruzioni senza salti, quindi la vita di una variabile va dalla
+ * sua dichiarazione all'ultima istruzione che la legge o la assegna. Con analyze() calcolo per ogni
+ * simbolo questa ultima istruzione; poi, all'inizio di ogni istruzione, startStatement() rimette a
+ * disposizione i registri delle variabili morte nelle istruzioni precedenti, e le dichiarazioni
+ * successive li riusano. Senza analyze() (ad esempio nella compilazione a flusso, che non vede le
+ * istruzioni future) nessun registro viene liberato.
+ * </p>
+ * <p>
+ * Uso come registri le lettere minuscole e maiuscole, tranne due: SCRATCH, in cui la print scarta il
+ * valore stampato, e SPILL, il cui array ospita le variabili quando i registri sono finiti. Anche le
+ * posizioni dell'array vengono riusate quando la loro variabile muore.
+ * </p>
+ * <p>
+ * dc accetterebbe come nome di registro qualunque carattere, ma mi limito di proposito alle lettere:
+ * una cifra o un '_' dopo 's' o 'l' si confonde con i numeri vicini, uno spazio o un a capo
+ * sparirebbe appena il codice viene riformattato, e un carattere non ASCII diventa più byte in
+ * UTF-8. Poiché i registri delle variabili morte vengono riusati, 50 registri bastano a quasi
+ * tutti i programmi; gli altri finiscono nell'array SPILL.
+ * </p>
+ */
+public final class RegisterAllocator {
+
+    /**
+     * Registro riservato ai valori da scartare, mai assegnato a una variabile.
+     */
+    public static final char SCRATCH = 'z';
+    /**
+     * Registro il cui array contiene le variabili rimaste senza registro (comandi ':' e ';').
+     */
+    public static final char SPILL = 'Z';
+    // I registri assegnabili, nell'ordine in cui vengono usati la prima volta
+    private static final String REGISTERS = "abcdefghijklmnopqrstuvwxyABCDEFGHIJKLMNOPQRSTUVWXY";
+
+    // Registri liberi, come pila: in cima c'è il prossimo da assegnare
+    private final char[] freeRegisters;
+    private int freeTop;
+    // Posizioni dell'array già usate e ora libere, e numero di posizioni create finora
+    private int[] freeSlots;
+    private int freeSlotTop;
+    private int slots;
+
+    // Simboli ordinati per ultima istruzione in cui compaiono, e il prossimo da liberare
+    private Symbol[] dying;
+    private int[] ends;
+    private int nextDying;
+    // Ultima istruzione di ciascun simbolo, per rispondere a diesAt()
+    private Map<Symbol, Integer> lastStatements;
+
+    /**
+     * Costruttore di un allocatore con tutti i registri liberi.
+     */
+    public RegisterAllocator() {
+        this.freeRegisters = new char[REGISTERS.length()];
+        for (int i = 0; i < freeRegisters.length; i++) {
+            freeRegisters[i] = REGISTERS.charAt(freeRegisters.length - 1 - i);
+        }
+        this.freeTop = freeRegisters.length;
+        this.freeSlots = new int[16];
+        this.dying = new Symbol[0];
+        this.ends = new int[0];
+        this.lastStatements = Map.of();
+    }
+
+    /**
+     * Calcola l'ultima istruzione in cui compare ciascuna variabile già legata al suo simbolo.
+     * @param statements Le istruzioni del programma, nell'ordine in cui verranno tradotte.
+     */
+    public void analyze(List<NodeDecSt> statements) {
+        analyze(statements, Map.of());
+    }
+
+    /**
+     * Calcola la vita delle variabili come analyze(List), aggiungendo dei valori temporanei
+     * di cui il chiamante conosce già l'ultima istruzione che li usa.
+     * @param statements Le istruzioni del programma, nell'ordine in cui verranno tradotte.
+     * @param temporaries Per ogni temporaneo, l'indice dell'ultima istruzione che lo legge.
+     */
+    public void analyze(List<NodeDecSt> statements, Map<Symbol, Integer> temporaries) {
+        Liveness liveness = new Liveness();
+        for (int i = 0; i < statements.size(); i++) {
+            liveness.statement = i;
+            statements.get(i).accept(liveness);
+        }
+        liveness.ends.putAll(temporaries);
+        this.lastStatements = liveness.ends;
+
+        // Ordino i simboli per fine della vita: impacchetto fine e posizione in un long e ordino quelli
+        int n = liveness.ends.size();
+        Symbol[] symbols = new Symbol[n];
+        long[] order = new long[n];
+        int k = 0;
+        for (Map.Entry<Symbol, Integer> e : liveness.ends.entrySet()) {
+            symbols[k] = e.getKey();
+            order[k] = ((long) e.getValue() << 32) | k;
+            k++;
+        }
+        Arrays.sort(order);
+        this.dying = new Symbol[n];
+        this.ends = new int[n];
+        for (int i = 0; i < n; i++) {
+            dying[i] = symbols[(int) order[i]];
+            ends[i] = (int) (order[i] >>> 32);
+        }
+        this.nextDying = 0;
+    }
+
+    /**
+     * Segnala l'inizio di un'istruzione: le variabili morte nelle istruzioni precedenti
+     * restituiscono il loro registro o la loro posizione nell'array.
+     * @param index L'indice dell'istruzione, come in analyze().
+     */
+    public void startStatement(int index) {
+        while (nextDying < dying.length && ends[nextDying] < index) {
+            release(dying[nextDying++]);
+        }
+    }
+
+    /**
+     * Indica se l'istruzione è l'ultima in cui compare la variabile, così il generatore può
+     * segnare la sua ultima lettura. Senza analyze() nessuna variabile muore.
+     * @param symbol Il simbolo della variabile o del temporaneo.
+     * @param statement L'indice dell'istruzione, come in analyze().
+     * @return true se dopo questa istruzione la variabile non viene più usata.
+     */
+    public boolean diesAt(Symbol symbol, int statement) {
+        Integer end = lastStatements.get(symbol);
+        return end != null && end == statement;
+    }
+
+    /**
+     * Assegna alla variabile un registro libero o, se non ce ne sono, una posizione dell'array SPILL.
+     * @param symbol Il simbolo della variabile appena dichiarata, o di un temporaneo.
+     */
+    public void allocate(Symbol symbol) {
+        if (freeTop > 0) {
+            symbol.setRegister(freeRegisters[--freeTop]);
+        } else if (freeSlotTop > 0) {
+            symbol.setSlot(freeSlots[--freeSlotTop]);
+        } else {
+            symbol.setSlot(slots++);
+        }
+    }
+
+    /**
+     * Restituisce quante posizioni dell'array SPILL sono state usate al massimo contemporaneamente.
+     * @return Il numero di posizioni create.
+     */
+    public int spillSlots() {
+        return slots;
+    }
+
+    /**
+     * Restituisce il numero di registri assegnabili alle variabili.
+     * @return I registri a disposizione, esclusi SCRATCH e SPILL.
+     */
+    public static int registerCount() {
+        return REGISTERS.length();
+    }
+
+    private void release(Symbol symbol) {
+        if (symbol.getSlot() >= 0) {
+            if (freeSlotTop == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlotTop * 2);
+            }
+            freeSlots[freeSlotTop++] = symbol.getSlot();
+        } else if (symbol.getRegister() != '\0') {
+            freeRegisters[freeTop++] = symbol.getRegister();
+        }
+    }
+
+    /**
+     * Registra per ogni simbolo l'indice dell'ultima istruzione in cui compare.
+     * Le istruzioni sono visitate in ordine, quindi basta sovrascrivere il valore.
+     */
+    private static final class Liveness implements IVisitor {
+
+        private final Map<Symbol, Integer> ends = new IdentityHashMap<>();
+        private int statement;
+
+        private void use(NodeId id) {
+            // Un albero non controllato non ha simboli: quelle variabili non verranno liberate
+            if (id.getSymbol() != null) {
+                ends.put(id.getSymbol(), statement);
+            }
+        }
+
+        @Override
+        public void visit(NodeProgram node) {
+            for (NodeDecSt stmt : node.getStatements()) {
+                stmt.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(NodeDecl node) {
+            use(node.getId());
+            if (node.getInit() != null) {
+                node.getInit().accept(this);
+            }
+        }
+
+        @Override
+        public void visit(NodeAssign node) {
+            use(node.getId());
+            node.getExpr().accept(this);
+        }
+
+        @Override
+        public void visit(NodePrint node) {
+            use(node.getId());
+        }
+
+        @Override
+        public void visit(NodeBinOp node) {
+            // Tutte le letture di un'istruzione hanno lo stesso indice, quindi l'ordine non conta:
+            // scorro gli operandi con una pila invece di visitarli ricorsivamente
+            Deque<NodeExpr> pending = new ArrayDeque<>();
+            pending.push(node);
+            while (!pending.isEmpty()) {
+                NodeExpr e = pending.pop();
+                if (e instanceof NodeBinOp) {
+                    pending.push(((NodeBinOp) e).getRight());
+                    pending.push(((NodeBinOp) e).getLeft());
+                } else if (e instanceof NodeConvert) {
+                    pending.push(((NodeConvert) e).getExpr());
+                } else {
+                    e.accept(this);
+                }
+            }
+        }
+
+        @Override
+        public void visit(NodeCost node) {
+        }
+
+        @Override
+        public void visit(NodeId node) {
+            use(node);
+        }
+
+        @Override
+        public void visit(NodeConvert node) {
+            node.getExpr().accept(this);
+        }
+
+        @Override
+        public void visit(NodeDeref node) {
+            use(node.getId());
+        }
+    }
+}
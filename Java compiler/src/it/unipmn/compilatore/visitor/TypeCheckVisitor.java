@@ -4,38 +4,90 @@ import it.unipmn.compilatore.ast.*;
 import it.unipmn.compilatore.exceptions.SyntacticException;
 import it.unipmn.compilatore.symboltable.Symbol;
 import it.unipmn.compilatore.symboltable.SymbolTable;
+import it.unipmn.compilatore.trace.Trace;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 /**
  * Classe che implementa il visitatore semantico per il controllo dei tipi.
  * Naviga l'albero sintattico (AST) per verificare che le operazioni
  * rispettino le regole di tipo del linguaggio e gestisce le conversioni
  * implicite da intero a decimale.
- * Mantiene un log delle operazioni svolte e degli errori riscontrati.
+ * Ogni NodeId incontrato viene legato al proprio Symbol, così le fasi successive
+ * non devono più risolvere i nomi.
+ * Una variabile letta (o stampata) prima di ricevere un valore è un errore: dc la troverebbe
+ * vuota, oppure, se il suo registro è stato riusato, con il valore di un'altra variabile.
+ * Le operazioni svolte e gli errori riscontrati vengono annotati su una Trace.
  */
 public class TypeCheckVisitor implements IVisitor {
 
     // Tabella dei simboli per memorizzare le variabili dichiarate e i loro tipi
     private SymbolTable scopes;
+    // Le variabili che hanno già ricevuto un valore
+    private final Set<Symbol> assigned;
     // Variabile di appoggio per propagare il tipo calcolato dal basso verso l'alto nell'albero
     private LangType lastType;
-    // StringBuilder per accumulare i log delle operazioni e degli errori
-    private StringBuilder log;
+    // Traccia su cui annotare le operazioni e gli errori
+    private final Trace trace;
+    // Visita delle operazioni annidate: gli operandi prima, poi il tipo dell'operazione
+    private final PostOrderWalk<LangType> operations = new PostOrderWalk<LangType>() {
+        @Override
+        void enter(NodeBinOp node) {
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                trace.append("Controllo operazione binaria: ").append(node.getOp()).append("\n");
+            }
+        }
+
+        @Override
+        LangType operand(NodeExpr operand) {
+            operand.accept(TypeCheckVisitor.this);
+            return lastType;
+        }
+
+        @Override
+        LangType combine(NodeBinOp node, NodeExpr left, NodeExpr right, LangType leftType, LangType rightType) {
+            return checkOperation(node, left, right, leftType, rightType);
+        }
+    };
 
     /**
      * Costruttore del visitatore per il controllo dei tipi.
-     * Inizializza una nuova tabella dei simboli vuota e il log.
+     * Inizializza una nuova tabella dei simboli vuota.
      */
     public TypeCheckVisitor() {
-        this.scopes = new SymbolTable();
-        this.log = new StringBuilder();
+        this(Trace.disabled());
+    }
+
+    /**
+     * Costruttore del visitatore per il controllo dei tipi.
+     * Inizializza una nuova tabella dei simboli vuota e collega la traccia.
+     * @param trace La traccia su cui annotare le operazioni svolte.
+     */
+    public TypeCheckVisitor(Trace trace) {
+        this(new SymbolTable(), Collections.newSetFromMap(new IdentityHashMap<>()), trace);
     }
 
     /**
-     * Restituisce il contenuto del log accumulato durante la visita.
+     * Costruttore del visitatore a partire da variabili già dichiarate, usato dal
+     * ParallelTypeChecker per controllare una porzione di programma che non parte dall'inizio.
+     * @param declared La tabella con le dichiarazioni che precedono le istruzioni da visitare.
+     * @param assigned Le variabili assegnate dalle istruzioni precedenti; l'insieme viene aggiornato.
+     * @param trace La traccia su cui annotare le operazioni svolte.
+     */
+    TypeCheckVisitor(SymbolTable declared, Set<Symbol> assigned, Trace trace) {
+        this.scopes = declared;
+        this.assigned = assigned;
+        this.trace = trace;
+    }
+
+    /**
+     * Restituisce il contenuto della traccia, se è tenuta in memoria.
      * @return La stringa con la cronologia delle operazioni ed eventuali errori.
      */
     public String getLog() {
-        return log.toString();
+        return trace.toString();
     }
 
     /**
@@ -44,12 +96,16 @@ public class TypeCheckVisitor implements IVisitor {
      */
     @Override
     public void visit(NodeProgram node) {
-        log.append("Inizio visita del Programma.\n");
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Inizio visita del Programma.\n");
+        }
         // Itero su tutte le istruzioni del programma per controllarne la semantica
         for (NodeDecSt stmt : node.getStatements()) {
             stmt.accept(this);
         }
-        log.append("Fine visita del Programma.\n");
+        if (trace.enabled(Trace.Level.PHASE)) {
+            trace.append("Fine visita del Programma.\n");
+        }
     }
 
     /**
@@ -59,18 +115,30 @@ public class TypeCheckVisitor implements IVisitor {
     @Override
     public void visit(NodeDecl node) {
         String varName = node.getId().getName();
-        log.append("Controllo dichiarazione variabile: ").append(varName).append("\n");
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Controllo dichiarazione variabile: ").append(varName).append("\n");
+        }
 
         // Verifico se la variabile che si sta dichiarando esiste già nella tabella dei simboli
-        if (scopes.lookup(varName) != null) {
+        if (scopes.lookup(node.getId()) != null) {
             String errorMsg = "Errore: Variabile '" + varName + "' già dichiarata.";
-            log.append(errorMsg).append("\n");
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append(errorMsg).append("\n");
+            }
             throw new SyntacticException(errorMsg);
         }
 
         // Inserisco la nuova variabile e il suo tipo all'interno della tabella dei simboli
-        scopes.insert(varName, new Symbol(node.getType()));
-        log.append("Variabile '").append(varName).append("' inserita nella Symbol Table.\n");
+        // e lego il nome al simbolo (se la pre-passata del controllo parallelo l'ha già creato, lo riuso)
+        Symbol declared = node.getId().getSymbol();
+        if (declared == null) {
+            declared = new Symbol(node.getType());
+            node.getId().bind(declared);
+        }
+        scopes.insert(node.getId(), declared);
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Variabile '").append(varName).append("' inserita nella Symbol Table.\n");
+        }
 
         // Se c'è un'espressione di inizializzazione associata, la analizzo
         if (node.getInit() != null) {
@@ -78,15 +146,21 @@ public class TypeCheckVisitor implements IVisitor {
 
             // Verifico se serve una conversione implicita da intero a decimale
             if (node.getType() == LangType.FLOAT && lastType == LangType.INT) {
-                log.append("Conversione implicita (Cast) da INT a FLOAT per: ").append(varName).append("\n");
+                if (trace.enabled(Trace.Level.DETAIL)) {
+                    trace.append("Conversione implicita (Cast) da INT a FLOAT per: ").append(varName).append("\n");
+                }
                 // Creo un nodo di conversione e lo sostituisco all'espressione originale
                 NodeConvert convert = new NodeConvert(node.getInit(), LangType.FLOAT);
                 node.setInit(convert);
             } else if (node.getType() != lastType) {
                 String errorMsg = "Errore: Tipo non compatibile nell'inizializzazione di " + varName;
-                log.append(errorMsg).append("\n");
+                if (trace.enabled(Trace.Level.ERROR)) {
+                    trace.append(errorMsg).append("\n");
+                }
                 throw new SyntacticException(errorMsg);
             }
+            // Il valore vale solo dopo il calcolo dell'inizializzazione, che non può leggere la variabile
+            assigned.add(declared);
         }
     }
 
@@ -97,22 +171,29 @@ public class TypeCheckVisitor implements IVisitor {
     @Override
     public void visit(NodeAssign node) {
         String varName = node.getId().getName();
-        log.append("Controllo assegnamento a: ").append(varName).append("\n");
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Controllo assegnamento a: ").append(varName).append("\n");
+        }
 
         // Cerco la variabile nella tabella dei simboli per estrarre il suo tipo
-        Symbol symbol = scopes.lookup(varName);
+        Symbol symbol = scopes.lookup(node.getId());
         if (symbol == null) {
             String errorMsg = "Errore: Variabile non dichiarata: " + varName;
-            log.append(errorMsg).append("\n");
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append(errorMsg).append("\n");
+            }
             throw new SyntacticException(errorMsg);
         }
+        node.getId().bind(symbol);
 
         // Analizzo l'espressione a destra dell'uguale per calcolarne il tipo
         node.getExpr().accept(this);
 
         // Controllo se il tipo della variabile e quello dell'espressione combaciano
         if (symbol.getType() == LangType.FLOAT && lastType == LangType.INT) {
-            log.append("Conversione implicita (Cast) da INT a FLOAT nell'assegnamento a: ").append(varName).append("\n");
+            if (trace.enabled(Trace.Level.DETAIL)) {
+                trace.append("Conversione implicita (Cast) da INT a FLOAT nell'assegnamento a: ").append(varName).append("\n");
+            }
             // Inserisco il nodo di conversione nell'albero per trasformare l'intero in decimale
             NodeConvert convert = new NodeConvert(node.getExpr(), LangType.FLOAT);
             node.setExpr(convert);
@@ -120,47 +201,59 @@ public class TypeCheckVisitor implements IVisitor {
             lastType = LangType.FLOAT;
         } else if (symbol.getType() != lastType) {
             String errorMsg = "Errore: Assegnazione non compatibile per " + varName;
-            log.append(errorMsg).append("\n");
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append(errorMsg).append("\n");
+            }
             throw new SyntacticException(errorMsg);
         }
+        assigned.add(symbol);
     }
 
     /**
      * Analizza le operazioni binarie (somma, sottrazione, moltiplicazione, divisione).
+     * Le operazioni annidate negli operandi vengono visitate da PostOrderWalk senza ricorsione.
      * @param node Il nodo dell'operazione matematica.
      */
     @Override
     public void visit(NodeBinOp node) {
-        log.append("Controllo operazione binaria: ").append(node.getOp()).append("\n");
-
-        // Visito il figlio sinistro e mi salvo il tipo che restituisce
-        node.getLeft().accept(this);
-        LangType leftType = lastType;
-
-        // Visito il figlio destro e mi salvo il tipo che restituisce
-        node.getRight().accept(this);
-        LangType rightType = lastType;
+        lastType = operations.walk(node);
+    }
 
+    /**
+     * Conclude il controllo di un'operazione di cui sono noti i tipi dei due operandi.
+     * @return Il tipo del risultato.
+     */
+    private LangType checkOperation(NodeBinOp node, NodeExpr left, NodeExpr right, LangType leftType, LangType rightType) {
+        LangType type;
         // Calcolo il tipo finale dell'operazione matematica
         if (leftType == LangType.INT && rightType == LangType.INT) {
             // Una operazione tra interi restituisce sempre un intero
-            lastType = LangType.INT;
+            type = LangType.INT;
         } else {
             // Se c'è almeno un operando decimale, il risultato totale diventa decimale
-            lastType = LangType.FLOAT;
+            type = LangType.FLOAT;
 
             // Converto esplicitamente il sotto-albero sinistro se era intero
             if (leftType == LangType.INT) {
-                log.append("Cast operando sinistro a FLOAT.\n");
-                node.setLeft(new NodeConvert(node.getLeft(), LangType.FLOAT));
+                if (trace.enabled(Trace.Level.DETAIL)) {
+                    trace.append("Cast operando sinistro a FLOAT.\n");
+                }
+                node.setLeft(new NodeConvert(left, LangType.FLOAT));
             }
             // Converto esplicitamente il sotto-albero destro se era intero
             if (rightType == LangType.INT) {
-                log.append("Cast operando destro a FLOAT.\n");
-                node.setRight(new NodeConvert(node.getRight(), LangType.FLOAT));
+                if (trace.enabled(Trace.Level.DETAIL)) {
+                    trace.append("Cast operando destro a FLOAT.\n");
+                }
+                node.setRight(new NodeConvert(right, LangType.FLOAT));
             }
         }
-        log.append("Tipo risultante operazione: ").append(lastType).append("\n");
+        // Salvo il tipo sul nodo: il generatore di codice ne ricava la precisione dell'operazione
+        node.setType(type);
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Tipo risultante operazione: ").append(type).append("\n");
+        }
+        return type;
     }
 
     /**
@@ -171,12 +264,16 @@ public class TypeCheckVisitor implements IVisitor {
     public void visit(NodeDeref node) {
         String varName = node.getId().getName();
         // Cerco la variabile per assicurarmi che sia stata dichiarata in precedenza
-        Symbol symbol = scopes.lookup(varName);
+        Symbol symbol = scopes.lookup(node.getId());
         if (symbol == null) {
             String errorMsg = "Errore: Uso di variabile non dichiarata: " + varName;
-            log.append(errorMsg).append("\n");
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append(errorMsg).append("\n");
+            }
             throw new SyntacticException(errorMsg);
         }
+        node.getId().bind(symbol);
+        checkAssigned(symbol, node.getId(), node.getRiga());
         // Imposto il tipo della variabile come tipo corrente per passarlo alle operazioni superiori
         lastType = symbol.getType();
     }
@@ -207,11 +304,32 @@ public class TypeCheckVisitor implements IVisitor {
     @Override
     public void visit(NodePrint node) {
         String varName = node.getId().getName();
-        log.append("Controllo istruzione Print per: ").append(varName).append("\n");
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Controllo istruzione Print per: ").append(varName).append("\n");
+        }
         // Verifico solo che la variabile che si vuole stampare esista nella tabella dei simboli
-        if (scopes.lookup(varName) == null) {
+        Symbol symbol = scopes.lookup(node.getId());
+        if (symbol == null) {
             String errorMsg = "Errore: Tentativo di stampa di variabile non dichiarata '" + varName + "'";
-            log.append(errorMsg).append("\n");
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append(errorMsg).append("\n");
+            }
+            throw new SyntacticException(errorMsg);
+        }
+        node.getId().bind(symbol);
+        checkAssigned(symbol, node.getId(), node.getRiga());
+    }
+
+    /**
+     * Segnala la lettura di una variabile che non ha ancora ricevuto un valore,
+     * con lo stesso messaggio dell'esecuzione anticipata (PrecomputeVisitor).
+     */
+    private void checkAssigned(Symbol symbol, NodeId id, int riga) {
+        if (!assigned.contains(symbol)) {
+            String errorMsg = "Errore: Variabile '" + id.getName() + "' letta prima di essere assegnata alla riga " + riga;
+            if (trace.enabled(Trace.Level.ERROR)) {
+                trace.append(errorMsg).append("\n");
+            }
             throw new SyntacticException(errorMsg);
         }
     }
@@ -222,10 +340,12 @@ public class TypeCheckVisitor implements IVisitor {
      */
     @Override
     public void visit(NodeConvert node) {
-        log.append("Controllo nodo conversione esplicita.\n");
+        if (trace.enabled(Trace.Level.DETAIL)) {
+            trace.append("Controllo nodo conversione esplicita.\n");
+        }
         // Analizzo l'espressione racchiusa nel nodo di conversione
         node.getExpr().accept(this);
         // Il tipo risultante è forzato al tipo destinazione della conversione
         lastType = node.getTargetType();
     }
-}
\ No newline at end of file
+}